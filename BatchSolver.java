@@ -0,0 +1,532 @@
+package SudokuSolver;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Solves a stream of puzzles in the standard line format (see PuzzleReader).
+ * Each solution is written as one line in the same format. A puzzle that
+ * cannot be solved is written back unchanged, with its blank cells as '0'.
+ * Results can instead be given to any ResultSink, such as a CSV file with
+ * the statistics of each puzzle, or a sink that verifies each solution.
+ * With a SolvedPuzzleIndex set, puzzles solved by earlier runs are answered
+ * from the index without solving, and new puzzles are added to it.
+ *
+ * Input is parsed directly from a byte buffer into one reusable Grid, so no
+ * String, int[][], or other object is created per puzzle.
+ *
+ * Files in the packed binary format (see PackedPuzzleFile) are solved
+ * straight out of a mapping of the input file, with each solution packed
+ * into a mapping of the output file.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class BatchSolver
+{
+    private final Grid grid;             // reused for every puzzle
+    private BitboardSolver bitboard;     // used instead of grid when word-parallel
+                                         // solving is on (null until first used)
+    private final byte[] puzzle;         // cell values (0 to 9) of the current line
+    private final byte[] solution;       // cell values of the current solution
+    private final SolveStatistics puzzleStatistics;  // statistics of the current puzzle
+    private final StatisticsHistogram statistics;    // statistics of every puzzle of the batch
+    private final SolveStatistics knownStatistics;   // statistics of a puzzle found in the index
+    private SolvedPuzzleIndex index;                 // puzzles already solved (null if none)
+
+    private boolean wordParallel;  // true to solve with bitboard instead of grid
+
+    private long puzzleCount;   // puzzles read by the last solve call
+    private long solvedCount;   // puzzles solved by the last solve call
+    private long knownCount;    // puzzles found in the index by the last solve call
+    private long elapsedNanos;  // wall time of the last solve call
+
+    /**
+     * Constructor for a batch solver using the propagation strategy.
+     */
+    public BatchSolver()
+    {
+        this(SolveStrategy.PROPAGATION);
+    } // end constructor
+
+    /**
+     * Constructor for a batch solver using the given strategy.
+     * @param strategy  the solve strategy used for every puzzle
+     */
+    public BatchSolver(SolveStrategy strategy)
+    {
+        grid = new Grid();
+        grid.setStrategy(strategy);
+        puzzle = new byte[81];
+        solution = new byte[81];
+        puzzleStatistics = new SolveStatistics();
+        statistics = new StatisticsHistogram();
+        knownStatistics = new SolveStatistics();
+    } // end constructor
+
+
+    /**
+     * Turns the collection of per-puzzle search statistics on or off. It is
+     * off by default.
+     * @param enabled  true to collect statistics in subsequent solve calls
+     */
+    public void setStatisticsEnabled(boolean enabled)
+    {
+        grid.setStatisticsEnabled(enabled);
+    } // end setStatisticsEnabled
+
+
+    /**
+     * Turns the word-parallel engine (BitboardSolver) on or off. When on,
+     * puzzles are solved on packed candidate words instead of by the grid's
+     * strategy, and no search statistics are collected. It is off by default.
+     * @param enabled  true to solve subsequent batches with BitboardSolver
+     */
+    public void setWordParallel(boolean enabled)
+    {
+        if (enabled  &&  bitboard == null)
+        {
+            bitboard = new BitboardSolver();
+        }
+        wordParallel = enabled;
+    } // end setWordParallel
+
+
+    /**
+     * Sets the index of puzzles already solved. Each puzzle of later solve
+     * calls (except the mapped packed-to-packed one) is first looked up in
+     * the index; a puzzle found there is not solved again, and its stored
+     * result is used. Each puzzle not found is solved and added, and the
+     * index is flushed at the end of each solve call. It is not closed.
+     * @param newIndex  the index, or null to solve every puzzle
+     */
+    public void setIndex(SolvedPuzzleIndex newIndex)
+    {
+        index = newIndex;
+    } // end setIndex
+
+
+    /**
+     * Reads every puzzle from the input stream, solves it, and writes its
+     * solution line to the output stream. Empty lines are skipped. Neither
+     * stream is closed; the output stream is flushed.
+     * @param in   the stream of puzzle lines
+     * @param out  the stream the solution lines are written to
+     * @return  the number of puzzles read
+     * @throws IOException  if a stream fails, or a line is not an 81-character puzzle
+     */
+    public long solve(InputStream in, OutputStream out) throws IOException
+    {
+        return solve(in, new TextResultSink(out, false));
+    } // end solve
+
+
+    /**
+     * Reads every puzzle from the input stream, solves it, and gives the
+     * result to the sink, with its statistics if they are enabled. Empty
+     * lines are skipped. The stream is not closed; the sink is flushed but
+     * not closed.
+     * @param in    the stream of puzzle lines
+     * @param sink  the sink the results are given to
+     * @return  the number of puzzles read
+     * @throws IOException  if the stream or sink fails, or a line is not an 81-character puzzle
+     */
+    public long solve(InputStream in, ResultSink sink) throws IOException
+    {
+        long startTime = System.nanoTime();
+        puzzleCount = 0;
+        solvedCount = 0;
+        knownCount = 0;
+        statistics.clear();
+
+        PuzzleReader reader = new PuzzleReader(in);
+        while (reader.next(puzzle, 0))
+        {
+            solvePuzzle(sink);
+        } // end while (exited at end of input stream)
+
+        sink.flush();
+        if (index != null)
+        {
+            index.flush();
+        }
+        elapsedNanos = System.nanoTime() - startTime;
+        return puzzleCount;
+    } // end solve
+
+
+    /**
+     * Solves every record of a packed puzzle file (see PackedPuzzleFile),
+     * read a chunk at a time from a mapping of the file, and gives the
+     * results to the sink as solve(InputStream, ResultSink) does. The sink
+     * is flushed but not closed.
+     * @param input  the packed puzzle file
+     * @param sink   the sink the results are given to
+     * @return  the number of puzzles read
+     * @throws IOException  if the file or sink fails, or the input is not a valid packed file
+     */
+    public long solve(Path input, ResultSink sink) throws IOException
+    {
+        long startTime = System.nanoTime();
+        puzzleCount = 0;
+        solvedCount = 0;
+        knownCount = 0;
+        statistics.clear();
+        int recordSize = PackedPuzzleFile.RECORD_SIZE;
+
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ))
+        {
+            long count = PackedPuzzleFile.readHeader(in);
+            for (long first = 0; first < count; first += PackedPuzzleFile.CHUNK_RECORDS)
+            {
+                int records = (int) Math.min(PackedPuzzleFile.CHUNK_RECORDS, count - first);
+                MappedByteBuffer source = in.map(FileChannel.MapMode.READ_ONLY,
+                    PackedPuzzleFile.HEADER_SIZE + first * recordSize, (long) records * recordSize);
+                for (int position = 0; position < records * recordSize; position += recordSize)
+                {
+                    PackedPuzzleFile.unpack(source, position, puzzle, 0);
+                    solvePuzzle(sink);
+                } // end for
+            } // end for
+        }
+
+        sink.flush();
+        if (index != null)
+        {
+            index.flush();
+        }
+        elapsedNanos = System.nanoTime() - startTime;
+        return puzzleCount;
+    } // end solve
+
+
+    // Private method solving the puzzle in the puzzle array (or finding it
+    // in the index) and giving the result to the sink
+    private void solvePuzzle(ResultSink sink) throws IOException
+    {
+        boolean collectStatistics = grid.isStatisticsEnabled()  &&  !wordParallel;
+        boolean solved;
+        SolveStatistics solveStatistics = null;
+        if (index != null  &&  index.lookup(puzzle, 0, solution, 0, knownStatistics))
+        {
+            solved = knownStatistics.isSolved();
+            knownCount++;
+            if (collectStatistics)
+            {
+                solveStatistics = knownStatistics;
+            }
+        }
+        else
+        {
+            if (wordParallel)
+            {
+                bitboard.load(puzzle, 0);
+                solved = bitboard.solveInto(solution, 0);
+            }
+            else
+            {
+                grid.load(puzzle, 0);
+                solved = grid.solveInto(solution, 0);
+            }
+            if (collectStatistics)
+            {
+                grid.getStatistics(puzzleStatistics);
+                statistics.record(puzzleStatistics);
+                solveStatistics = puzzleStatistics;
+            }
+            if (index != null)
+            {
+                index.add(puzzle, 0, solution, 0, solved, solveStatistics);
+            }
+        }
+        if (solved)
+        {
+            solvedCount++;
+        }
+        puzzleCount++;
+        sink.accept(puzzle, 0, solution, 0, solved, solveStatistics);
+    } // end solvePuzzle
+
+
+    /**
+     * Solves every record of a packed puzzle file (see PackedPuzzleFile) and
+     * writes a packed file of the solutions, with FLAG_SOLUTIONS set. Both
+     * files are mapped a chunk at a time: each puzzle is loaded from the input
+     * mapping and its solution packed into the output mapping. A puzzle that
+     * cannot be solved is copied unchanged.
+     * @param input   the packed puzzle file
+     * @param output  the packed file to create or replace
+     * @return  the number of puzzles read
+     * @throws IOException  if a file fails, or the input is not a valid packed file
+     */
+    public long solve(Path input, Path output) throws IOException
+    {
+        long startTime = System.nanoTime();
+        puzzleCount = 0;
+        solvedCount = 0;
+        knownCount = 0;
+        statistics.clear();
+        boolean statisticsEnabled = grid.isStatisticsEnabled()  &&  !wordParallel;
+        int recordSize = PackedPuzzleFile.RECORD_SIZE;
+
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.READ,
+                 StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            long count = PackedPuzzleFile.readHeader(in);
+            PackedPuzzleFile.writeHeader(out, PackedPuzzleFile.FLAG_SOLUTIONS, count);
+            for (long first = 0; first < count; first += PackedPuzzleFile.CHUNK_RECORDS)
+            {
+                int records = (int) Math.min(PackedPuzzleFile.CHUNK_RECORDS, count - first);
+                long start = PackedPuzzleFile.HEADER_SIZE + first * recordSize;
+                MappedByteBuffer source = in.map(FileChannel.MapMode.READ_ONLY,
+                                                 start, (long) records * recordSize);
+                MappedByteBuffer target = out.map(FileChannel.MapMode.READ_WRITE,
+                                                  start, (long) records * recordSize);
+                for (int position = 0; position < records * recordSize; position += recordSize)
+                {
+                    boolean solved;
+                    if (wordParallel)
+                    {
+                        PackedPuzzleFile.unpack(source, position, puzzle, 0);
+                        bitboard.load(puzzle, 0);
+                        solved = bitboard.solveInto(solution, 0);
+                    }
+                    else
+                    {
+                        grid.loadPacked(source, position);
+                        solved = grid.solveInto(solution, 0);
+                    }
+                    if (solved)
+                    {
+                        PackedPuzzleFile.pack(solution, 0, target, position);
+                        solvedCount++;
+                    }
+                    else
+                    {
+                        for (int k = 0; k < recordSize; k++)
+                        {
+                            target.put(position + k, source.get(position + k));
+                        } // end for
+                    }
+                    puzzleCount++;
+                    if (statisticsEnabled)
+                    {
+                        grid.getStatistics(puzzleStatistics);
+                        statistics.record(puzzleStatistics);
+                    }
+                } // end for
+            } // end for
+        }
+        elapsedNanos = System.nanoTime() - startTime;
+        return puzzleCount;
+    } // end solve
+
+
+    /**
+     * Returns the number of puzzles read by the last call to solve().
+     * @return  the puzzle count
+     */
+    public long getPuzzleCount()
+    {
+        return puzzleCount;
+    } // end getPuzzleCount
+
+
+    /**
+     * Returns the number of puzzles successfully solved by the last call to solve().
+     * @return  the solved puzzle count
+     */
+    public long getSolvedCount()
+    {
+        return solvedCount;
+    } // end getSolvedCount
+
+
+    /**
+     * Returns the number of puzzles the last call to solve() found in the
+     * index instead of solving. These are included in the puzzle and solved
+     * counts, but not in the statistics histogram.
+     * @return  the count of puzzles found in the index
+     */
+    public long getKnownCount()
+    {
+        return knownCount;
+    } // end getKnownCount
+
+
+    /**
+     * Returns the wall time taken by the last call to solve().
+     * @return  the elapsed time in nanoseconds
+     */
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    } // end getElapsedNanos
+
+
+    /**
+     * Returns the statistics of every puzzle of the last call to solve(). The
+     * histogram is empty unless statistics are enabled, and is reused by the
+     * next call.
+     * @return  the batch statistics
+     */
+    public StatisticsHistogram getStatistics()
+    {
+        return statistics;
+    } // end getStatistics
+
+
+    /**
+     * Returns the throughput of the last call to solve().
+     * @return  puzzles read per second of wall time
+     */
+    public double getPuzzlesPerSecond()
+    {
+        double result = 0.0;
+        if (elapsedNanos > 0)
+        {
+            result = puzzleCount * 1e9 / elapsedNanos;
+        }
+        return result;
+    } // end getPuzzlesPerSecond
+
+
+    /**
+     * Command-line entry point. Reads puzzles from the input file (or standard
+     * input) and writes solutions to the output file (or standard output).
+     * An input file ending in PackedPuzzleFile.EXTENSION is read as a packed
+     * file. The output format follows the output file name: packed for that
+     * extension, CSV with per-puzzle statistics for ".csv", and text lines
+     * otherwise. A packed file solved into a packed file is mapped on both
+     * sides (see solve(Path, Path)).
+     * A summary with the puzzles/sec rate and the search statistics is printed
+     * to standard error. An option of "bitboard" turns on the word-parallel
+     * engine (and so collects no search statistics); "verify" checks every
+     * solution on a separate thread and prints the number found invalid;
+     * "index=FILE" skips the puzzles found in the solved puzzle index in that
+     * log file (created if needed) and adds the others to it.
+     * Usage: BatchSolver [input-file [output-file [bitboard] [verify] [index=FILE]]]
+     * @param args  optional input and output file names and options
+     * @throws IOException  if a file cannot be read or written, or a line is malformed
+     */
+    public static void main(String[] args) throws IOException
+    {
+        boolean wordParallel = false;
+        boolean verify = false;
+        String indexFile = null;
+        for (int k = 2; k < args.length; k++)
+        {
+            wordParallel |= args[k].equals("bitboard");
+            verify |= args[k].equals("verify");
+            if (args[k].startsWith("index="))
+            {
+                indexFile = args[k].substring("index=".length());
+            }
+        } // end for
+        boolean packedInput = args.length > 0  &&  args[0].endsWith(PackedPuzzleFile.EXTENSION);
+        boolean packedOutput = args.length > 1  &&  args[1].endsWith(PackedPuzzleFile.EXTENSION);
+        boolean csvOutput = args.length > 1  &&  args[1].endsWith(".csv");
+
+        BatchSolver batchSolver = new BatchSolver();
+        batchSolver.setStatisticsEnabled(true);
+        batchSolver.setWordParallel(wordParallel);
+        VerifyingResultSink verifier = null;
+        SolvedPuzzleIndex index = null;
+        if (indexFile != null)
+        {
+            index = new SolvedPuzzleIndex(Paths.get(indexFile));
+            batchSolver.setIndex(index);
+            if (index.getDroppedBytes() > 0)
+            {
+                System.err.println("Dropped " + index.getDroppedBytes()
+                                   + " bytes of a damaged record from the end of the index log");
+            }
+            if (index.getSkippedCount() > 0)
+            {
+                System.err.println("Skipped " + index.getSkippedCount()
+                                   + " damaged records of the index log; their puzzles will be solved again");
+            }
+        }
+        if (packedInput  &&  packedOutput  &&  !verify  &&  index == null)
+        {
+            batchSolver.solve(Paths.get(args[0]), Paths.get(args[1]));
+        }
+        else
+        {
+            ResultSink sink;
+            if (packedOutput)
+            {
+                sink = new PackedResultSink(Paths.get(args[1]));
+            }
+            else if (csvOutput)
+            {
+                sink = new CsvResultSink(new FileOutputStream(args[1]));
+            }
+            else if (args.length > 1)
+            {
+                sink = new TextResultSink(new FileOutputStream(args[1]));
+            }
+            else
+            {
+                sink = new TextResultSink(System.out, false);
+            }
+            if (verify)
+            {
+                verifier = new VerifyingResultSink(sink);
+                sink = verifier;
+            }
+
+            InputStream in = null;
+            try
+            {
+                if (packedInput)
+                {
+                    batchSolver.solve(Paths.get(args[0]), sink);
+                }
+                else
+                {
+                    in = (args.length > 0) ? new FileInputStream(args[0]) : System.in;
+                    batchSolver.solve(in, sink);
+                }
+            }
+            finally
+            {
+                sink.close();
+                if (in != null  &&  args.length > 0)
+                {
+                    in.close();
+                }
+                if (index != null)
+                {
+                    index.close();
+                }
+            }
+        }
+        System.err.printf("Solved %d of %d puzzles in %.1f ms (%.0f puzzles/sec)%n",
+                          batchSolver.getSolvedCount(), batchSolver.getPuzzleCount(),
+                          batchSolver.getElapsedNanos() / 1e6,
+                          batchSolver.getPuzzlesPerSecond());
+        if (index != null)
+        {
+            System.err.println("Found " + batchSolver.getKnownCount() + " puzzles in the index, which now holds "
+                               + index.size());
+        }
+        if (verifier != null)
+        {
+            System.err.println("Verified " + verifier.getVerifiedCount() + " solutions, "
+                               + verifier.getInvalidCount() + " invalid");
+        }
+        if (!wordParallel)
+        {
+            System.err.println(batchSolver.getStatistics());
+        }
+    } // end main
+
+} // end BatchSolver
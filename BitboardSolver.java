@@ -0,0 +1,634 @@
+package SudokuSolver;
+
+/**
+ * A 9 x 9 sudoku solver that keeps the candidates of the whole grid as
+ * bitboards and works on every cell of a band (three rows) at once. For each
+ * value there is one 27-bit word per band with a bit set for every cell the
+ * value may still go in, so every row, column, and block is a constant mask:
+ * placing a value clears its row, column, and block with a few AND-NOTs, and
+ * naked singles, empty cells, hidden singles, and the cell with the fewest
+ * candidates are found with word operations instead of per-cell loops.
+ *
+ * Search branches on the blank cell with the fewest candidates, and the whole
+ * state (54 words) is copied before each guess, so nothing has to be undone.
+ * A BitboardSolver can be reloaded with new puzzles, so one instance can
+ * solve a whole stream without allocating.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class BitboardSolver implements Solver
+{
+    private static final int BAND_CELLS = (1 << 27) - 1;  // every cell of a band
+    private static final int ROW_CELLS = 0x1FF;           // the cells of row 0 of a band
+    private static final int COLUMN_CELLS = 0x40201;      // the cells of column 0 of a band
+    private static final int BLOCK_CELLS = 0x1C0E07;      // the cells of block 0 of a band
+    private static final int STATE_SIZE = 54;             // candidate and placed words
+
+    // Cell bit b of band word w is cell (w * 3 + b / 9, b % 9). Entry value * 3 + band
+    // is the word for value + 1 in that band.
+    private final int[] candidates;  // cells each value may still go in (blank cells only)
+    private final int[] placed;      // cells holding each value
+    private int filledCount;         // cells holding a value
+    private int numberOfBlankCells;  // blank cells of the puzzle as loaded
+    private boolean givensConflict;  // true if two givens share a row, column, or block
+
+    private final int[] savedStates;  // STATE_SIZE words saved before the guesses at each depth
+    private final int[] savedFilledCounts;
+    private final int[] foundPlaced;  // placed words of the first solution found
+    private int solutionCount;        // solutions found by the current search
+
+    /**
+     * Constructor for an empty (all blank) solver, intended to be reused for a
+     * stream of puzzles through load(byte[], int).
+     */
+    public BitboardSolver()
+    {
+        candidates = new int[27];
+        placed = new int[27];
+        savedStates = new int[82 * STATE_SIZE];
+        savedFilledCounts = new int[82];
+        foundPlaced = new int[27];
+        clear();
+    } // end constructor
+
+    /**
+     * Constructor takes a 2-dimensional integer array representing the sudoku
+     * grid's initial values. Blank cells should be represented by 0 values.
+     * @param newGrid  The 9 x 9 integer array containing the grid's initial values.
+     */
+    public BitboardSolver(int[][] newGrid)
+    {
+        this();
+        if (newGrid.length != 9)
+        {
+            throw new IllegalArgumentException("Grid with invalid dimensions provided to constructor");
+        }
+        for (int i = 0; i < 9; i++)
+        {
+            if (newGrid[i].length != 9)
+            {
+                throw new IllegalArgumentException("Grid with invalid dimensions provided to constructor");
+            }
+            for (int j = 0; j < 9; j++)
+            {
+                if (newGrid[i][j] < 0  ||  newGrid[i][j] > 9)
+                {
+                    throw new IllegalArgumentException("Cell value out of range (0 to 9): "
+                                                       + newGrid[i][j]);
+                }
+                addGiven(i * 9 + j, newGrid[i][j]);
+            } // end inner for
+        } // end outer for
+    } // end constructor
+
+
+    /**
+     * Replaces the puzzle with 81 values (0 for blank cells) read in
+     * row-major order from the given buffer.
+     * @param puzzle  the buffer holding the cell values
+     * @param offset  index in the buffer of the first cell's value
+     */
+    public void load(byte[] puzzle, int offset)
+    {
+        clear();
+        for (int index = 0; index < 81; index++)
+        {
+            int value = puzzle[offset + index];
+            if (value < 0  ||  value > 9)
+            {
+                throw new IllegalArgumentException("Cell value out of range (0 to 9): " + value);
+            }
+            addGiven(index, value);
+        } // end for
+    } // end load
+
+
+    // Private method to make every cell blank with every candidate
+    private void clear()
+    {
+        for (int word = 0; word < 27; word++)
+        {
+            candidates[word] = BAND_CELLS;
+            placed[word] = 0;
+        } // end for
+        filledCount = 0;
+        numberOfBlankCells = 81;
+        givensConflict = false;
+    } // end clear
+
+
+    // Private method to place a given, noting a conflict if a peer already
+    // has the same value
+    private void addGiven(int index, int value)
+    {
+        if (value != 0)
+        {
+            int band = index / 27;
+            int bit = index % 27;
+            if ((candidates[(value - 1) * 3 + band] & (1 << bit)) == 0)
+            {
+                givensConflict = true;
+            }
+            else
+            {
+                place(value - 1, band, bit);
+            }
+            numberOfBlankCells--;
+        }
+    } // end addGiven
+
+
+    /**
+     * Returns the initial number of blank cells in the grid to be solved.
+     * @return  the integer number of initial blank cells
+     */
+    @Override public int getNumberOfBlankCells()
+    {
+        return numberOfBlankCells;
+    } // end getNumberOfBlankCells
+
+
+    /**
+     * Attempts to solve the grid based on the initial values provided.
+     * @return  True if the puzzle is successfully solved; false otherwise
+     *          (i.e., if puzzle cannot be solved based on initial values provided)
+     */
+    @Override public boolean solveGrid()
+    {
+        boolean solved = false;
+        if (countSolutions(1) == 1)
+        {
+            System.arraycopy(foundPlaced, 0, placed, 0, 27);
+            for (int word = 0; word < 27; word++)
+            {
+                candidates[word] = 0;
+            } // end for
+            filledCount = 81;
+            solved = true;
+        }
+        return solved;
+    } // end solveGrid
+
+
+    /**
+     * Attempts to solve the grid and copies the resulting 81 values into the
+     * given buffer, so a stream of puzzles can be solved without allocating.
+     * The buffer is written even if the puzzle cannot be solved.
+     * @param destination  the array to copy the values into
+     * @param offset       index in the array for the first cell's value
+     * @return  True if the puzzle is successfully solved; false otherwise
+     */
+    public boolean solveInto(byte[] destination, int offset)
+    {
+        boolean solved = solveGrid();
+        copyValues(destination, offset);
+        return solved;
+    } // end solveInto
+
+
+    /**
+     * Counts the solutions of the puzzle, stopping as soon as the given limit
+     * is reached. The grid's values are not changed.
+     * @param limit  the maximum number of solutions to count (at least 1)
+     * @return  the number of solutions found, between 0 and limit
+     */
+    @Override public int countSolutions(int limit)
+    {
+        if (limit < 1)
+        {
+            throw new IllegalArgumentException("Solution limit must be at least 1");
+        }
+        solutionCount = 0;
+        if (!givensConflict)
+        {
+            saveState(0);
+            search(0, limit);
+            restoreState(0);
+        }
+        return solutionCount;
+    } // end countSolutions
+
+
+    /**
+     * Determines whether the puzzle has exactly one solution. The search stops
+     * as soon as a second solution is found. The grid's values are not changed.
+     * @return  True if the puzzle has a unique solution, False otherwise.
+     */
+    @Override public boolean hasUniqueSolution()
+    {
+        return countSolutions(2) == 1;
+    } // end hasUniqueSolution
+
+
+    // Private recursive method that fills every single, then guesses each
+    // candidate of the blank cell with the fewest in turn. The state is saved
+    // at depth + 1 before the guesses and restored from it after each one.
+    private void search(int depth, int limit)
+    {
+        if (!propagate())
+        {
+            return;
+        }
+        if (filledCount == 81)
+        {
+            if (solutionCount == 0)
+            {
+                System.arraycopy(placed, 0, foundPlaced, 0, 27);
+            }
+            solutionCount++;
+            return;
+        }
+
+        int cell = selectBranchCell();
+        int band = cell / 27;
+        int bit = cell % 27;
+        saveState(depth + 1);
+        for (int value = 0; value < 9  &&  solutionCount < limit; value++)
+        {
+            if ((candidates[value * 3 + band] & (1 << bit)) != 0)
+            {
+                place(value, band, bit);
+                search(depth + 1, limit);
+                restoreState(depth + 1);
+            }
+        } // end for
+    } // end search
+
+
+    // Private method that fills naked and hidden singles until none are
+    // left. Returns false if a blank cell has no candidates or a value has
+    // no possible cell in some row, column, or block.
+    private boolean propagate()
+    {
+        boolean progress = true;
+        while (progress)
+        {
+            int placements = placeNakedSingles();
+            for (int value = 0; value < 9  &&  placements >= 0; value++)
+            {
+                int found = placeHiddenSingles(value);
+                placements = (found < 0) ? -1 : placements + found;
+            } // end for
+            if (placements < 0)
+            {
+                return false;
+            }
+            progress = placements > 0  &&  filledCount < 81;
+        } // end while
+        return true;
+    } // end propagate
+
+
+    // Private method that fills every cell with one candidate, a band at a
+    // time: adding up the value words bit by bit marks the cells with one
+    // candidate and those with two or more. Returns the number of cells
+    // filled, or -1 if a blank cell has no candidates.
+    private int placeNakedSingles()
+    {
+        int placements = 0;
+        for (int band = 0; band < 3; band++)
+        {
+            int once = 0;    // cells with at least one candidate
+            int twice = 0;   // cells with at least two candidates
+            int filled = 0;  // cells holding a value
+            for (int value = 0; value < 9; value++)
+            {
+                int word = candidates[value * 3 + band];
+                twice |= once & word;
+                once |= word;
+                filled |= placed[value * 3 + band];
+            } // end for
+            if ((once | filled) != BAND_CELLS)
+            {
+                return -1;
+            }
+
+            for (int singles = once & ~twice; singles != 0; singles &= singles - 1)
+            {
+                int bit = Integer.numberOfTrailingZeros(singles);
+                int value = 0;
+                while (value < 9  &&  (candidates[value * 3 + band] & (1 << bit)) == 0)
+                {
+                    value++;
+                } // end while
+                if (value == 9)  // a single filled just now took its last candidate
+                {
+                    return -1;
+                }
+                place(value, band, bit);
+                placements++;
+            } // end for
+        } // end for
+        return placements;
+    } // end placeNakedSingles
+
+
+    // Private method that fills every cell that is the only possible place
+    // for the value in its row, column, or block. Rows are 9-bit fields of
+    // the band words; columns and blocks are found by adding up the rows
+    // bit by bit as for naked singles. Returns the number of cells filled,
+    // or -1 if the value has no possible cell in a unit that lacks it.
+    private int placeHiddenSingles(int value)
+    {
+        int placements = 0;
+        int first = value * 3;
+
+        // Rows
+        for (int band = 0; band < 3; band++)
+        {
+            for (int row = 0; row < 3; row++)
+            {
+                int cells = (candidates[first + band] >>> (row * 9)) & ROW_CELLS;
+                if (cells == 0)
+                {
+                    if (((placed[first + band] >>> (row * 9)) & ROW_CELLS) == 0)
+                    {
+                        return -1;
+                    }
+                }
+                else if ((cells & (cells - 1)) == 0)
+                {
+                    place(value, band, row * 9 + Integer.numberOfTrailingZeros(cells));
+                    placements++;
+                }
+            } // end for
+        } // end for
+
+        // Columns: add up the nine rows
+        int once = 0;
+        int twice = 0;
+        int filled = 0;
+        for (int band = 0; band < 3; band++)
+        {
+            for (int row = 0; row < 3; row++)
+            {
+                int cells = (candidates[first + band] >>> (row * 9)) & ROW_CELLS;
+                twice |= once & cells;
+                once |= cells;
+                filled |= (placed[first + band] >>> (row * 9)) & ROW_CELLS;
+            } // end for
+        } // end for
+        if ((once | filled) != ROW_CELLS)
+        {
+            return -1;
+        }
+        for (int singles = once & ~twice; singles != 0; singles &= singles - 1)
+        {
+            int column = Integer.numberOfTrailingZeros(singles);
+            for (int band = 0; band < 3; band++)
+            {
+                int cells = candidates[first + band] & (COLUMN_CELLS << column);
+                if (cells != 0)  // may have been taken by a single filled just now
+                {
+                    place(value, band, Integer.numberOfTrailingZeros(cells));
+                    placements++;
+                }
+            } // end for
+        } // end for
+
+        // Blocks: add up the three rows of each band, then look at each
+        // three-column stack
+        for (int band = 0; band < 3; band++)
+        {
+            int word = candidates[first + band];
+            int rows = placed[first + band];
+            once = 0;
+            twice = 0;
+            filled = 0;
+            for (int row = 0; row < 3; row++)
+            {
+                int cells = (word >>> (row * 9)) & ROW_CELLS;
+                twice |= once & cells;
+                once |= cells;
+                filled |= (rows >>> (row * 9)) & ROW_CELLS;
+            } // end for
+            for (int stack = 0; stack < 3; stack++)
+            {
+                int columns = (once >>> (stack * 3)) & 7;
+                if (columns == 0)
+                {
+                    if (((filled >>> (stack * 3)) & 7) == 0)
+                    {
+                        return -1;
+                    }
+                }
+                else if (((twice >>> (stack * 3)) & 7) == 0  &&  (columns & (columns - 1)) == 0)
+                {
+                    int cells = candidates[first + band] & (BLOCK_CELLS << (stack * 3));
+                    if (cells != 0)  // may have been taken by a single filled just now
+                    {
+                        place(value, band, Integer.numberOfTrailingZeros(cells));
+                        placements++;
+                    }
+                }
+            } // end for
+        } // end for
+        return placements;
+    } // end placeHiddenSingles
+
+
+    // Private method returning the index of the blank cell with the fewest
+    // candidates. The value words of each band are added into a 4-bit count
+    // per cell, held as four bit planes, so the cells with exactly n
+    // candidates are found with one AND per plane.
+    private int selectBranchCell()
+    {
+        int bestCell = -1;
+        int bestCount = 10;
+        for (int band = 0; band < 3  &&  bestCount > 2; band++)
+        {
+            int count0 = 0;
+            int count1 = 0;
+            int count2 = 0;
+            int count3 = 0;
+            for (int value = 0; value < 9; value++)
+            {
+                int carry = candidates[value * 3 + band];
+                int next = count0 & carry;
+                count0 ^= carry;
+                carry = next;
+                next = count1 & carry;
+                count1 ^= carry;
+                carry = next;
+                next = count2 & carry;
+                count2 ^= carry;
+                count3 |= next;
+            } // end for
+            for (int count = 2; count < bestCount; count++)
+            {
+                int cells = (((count & 1) != 0) ? count0 : ~count0)
+                            & (((count & 2) != 0) ? count1 : ~count1)
+                            & (((count & 4) != 0) ? count2 : ~count2)
+                            & (((count & 8) != 0) ? count3 : ~count3)
+                            & BAND_CELLS;
+                if (cells != 0)
+                {
+                    bestCell = band * 27 + Integer.numberOfTrailingZeros(cells);
+                    bestCount = count;
+                }
+            } // end for
+        } // end for
+        return bestCell;
+    } // end selectBranchCell
+
+
+    // Private method to fill a cell and remove the value from the candidates
+    // of its row, column, and block
+    private void place(int value, int band, int bit)
+    {
+        int cellBit = 1 << bit;
+        int row = bit / 9;
+        int column = bit % 9;
+        placed[value * 3 + band] |= cellBit;
+        for (int other = 0; other < 9; other++)
+        {
+            candidates[other * 3 + band] &= ~cellBit;
+        } // end for
+        candidates[value * 3 + band] &= ~((ROW_CELLS << (row * 9)) | (BLOCK_CELLS << ((column / 3) * 3)));
+        for (int other = 0; other < 3; other++)
+        {
+            candidates[value * 3 + other] &= ~(COLUMN_CELLS << column);
+        } // end for
+        filledCount++;
+    } // end place
+
+
+    // Private method to save the candidate and placed words at a depth
+    private void saveState(int depth)
+    {
+        int start = depth * STATE_SIZE;
+        System.arraycopy(candidates, 0, savedStates, start, 27);
+        System.arraycopy(placed, 0, savedStates, start + 27, 27);
+        savedFilledCounts[depth] = filledCount;
+    } // end saveState
+
+
+    // Private method to restore the words saved at a depth
+    private void restoreState(int depth)
+    {
+        int start = depth * STATE_SIZE;
+        System.arraycopy(savedStates, start, candidates, 0, 27);
+        System.arraycopy(savedStates, start + 27, placed, 0, 27);
+        filledCount = savedFilledCounts[depth];
+    } // end restoreState
+
+
+    /**
+     * Determines whether the values currently set for the grid cells
+     * constitute a valid grid according to the rules of sudoku: every cell
+     * holds one value, and each value is in every row, column, and block once.
+     * @return  True if the grid is valid, False otherwise.
+     */
+    @Override public boolean isValidGrid()
+    {
+        boolean result = !givensConflict  &&  filledCount == 81;
+        for (int value = 0; value < 9  &&  result; value++)
+        {
+            int columns = 0;
+            for (int band = 0; band < 3  &&  result; band++)
+            {
+                int word = placed[value * 3 + band];
+                for (int row = 0; row < 3; row++)
+                {
+                    int cells = (word >>> (row * 9)) & ROW_CELLS;
+                    result &= Integer.bitCount(cells) == 1  &&  (columns & cells) == 0;
+                    columns |= cells;
+                } // end for
+                for (int stack = 0; stack < 3; stack++)
+                {
+                    result &= Integer.bitCount(word & (BLOCK_CELLS << (stack * 3))) == 1;
+                } // end for
+            } // end for
+        } // end for
+        return result;
+    } // end isValidGrid
+
+
+    /**
+     * Returns a copy of the values currently set for the grid cells.
+     * @return  a new 9 x 9 integer array of cell values (0 for blank cells)
+     */
+    @Override public int[][] getValues()
+    {
+        byte[] cells = new byte[81];
+        copyValues(cells, 0);
+        int[][] result = new int[9][9];
+        for (int index = 0; index < 81; index++)
+        {
+            result[index / 9][index % 9] = cells[index];
+        } // end for
+        return result;
+    } // end getValues
+
+
+    /**
+     * Copies the 81 cell values (0 for blank cells) in row-major order into
+     * the given buffer.
+     * @param destination  the array to copy the values into
+     * @param offset       index in the array for the first cell's value
+     */
+    public void copyValues(byte[] destination, int offset)
+    {
+        for (int index = 0; index < 81; index++)
+        {
+            destination[offset + index] = 0;
+        } // end for
+        for (int word = 0; word < 27; word++)
+        {
+            int band = word % 3;
+            for (int cells = placed[word]; cells != 0; cells &= cells - 1)
+            {
+                destination[offset + band * 27 + Integer.numberOfTrailingZeros(cells)]
+                    = (byte) (word / 3 + 1);
+            } // end for
+        } // end for
+    } // end copyValues
+
+
+
+    // Test stub for BitboardSolver class
+    public static void main(String[] args)
+    {
+        // Solve puzzles of each kind and compare with the Grid engine
+        String[] lines = {
+            "200006754007904180384007020500082070038700400009600005005370090870060001013058000",  // easy
+            "800000000003600000070090200050007000000045700000100030001000068008500010090000400",  // hard
+            "000000010400000000020000000000050407008000300001090000300400200050100000000806000",  // 17 givens
+            "000000000000003085001020000000507000004000100090000000500000073002010000000040009"   // top row 9 to 1
+        };
+        for (String line : lines)
+        {
+            int[][] puzzle = new int[9][9];
+            for (int index = 0; index < 81; index++)
+            {
+                puzzle[index / 9][index % 9] = line.charAt(index) - '0';
+            } // end for
+            BitboardSolver solver = new BitboardSolver(puzzle);
+            Grid grid = new Grid(puzzle);
+            grid.setStrategy(SolveStrategy.PROPAGATION);
+            boolean solved = solver.solveGrid();
+            grid.solveGrid();
+            System.out.println(line + ": solved? " + solved + ", valid? " + solver.isValidGrid()
+                               + ", same as Grid? "
+                               + java.util.Arrays.deepEquals(solver.getValues(), grid.getValues()));
+        } // end for
+
+        // Test a puzzle with conflicting givens (two 2s in the top row)
+        int[][] intGrid4 = { {0,0,0,2,2,6,7,5,4},
+                             {0,0,7,9,0,4,1,8,0},
+                             {3,8,4,0,0,7,0,2,0},
+                             {5,0,0,0,8,2,0,7,0},
+                             {0,3,8,7,0,0,4,0,0},
+                             {0,0,9,6,0,0,0,0,5},
+                             {0,0,5,3,7,0,0,9,0},
+                             {8,7,0,0,6,0,0,0,1},
+                             {0,1,3,0,5,8,0,0,0} };
+        System.out.println("\nSuccessfully solved grid with conflicting givens? "
+                           + new BitboardSolver(intGrid4).solveGrid());
+
+        // Test solution counting on an empty grid
+        BitboardSolver emptySolver = new BitboardSolver(new int[9][9]);
+        System.out.println("Empty grid has at least 1000 solutions? "
+                           + (emptySolver.countSolutions(1000) == 1000));
+    } // end test main
+
+} // end BitboardSolver
@@ -0,0 +1,31 @@
+package SudokuSolver;
+
+/**
+ * Lets one thread stop a bounded solve running on another. The solving grid
+ * checks the token while it searches, and returns
+ * SolveResult.BUDGET_EXCEEDED soon after cancel() is called. A token stays
+ * cancelled; use a new token for each request.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class CancellationToken
+{
+    private volatile boolean cancelled;
+
+    /**
+     * Asks every solve using this token to stop.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    } // end cancel
+
+    /**
+     * Returns whether cancel() has been called.
+     * @return  true if the token is cancelled
+     */
+    public boolean isCancelled()
+    {
+        return cancelled;
+    } // end isCancelled
+
+} // end CancellationToken
@@ -0,0 +1,510 @@
+package SudokuSolver;
+import java.util.Arrays;
+
+/**
+ * Maps a 9 x 9 puzzle to a canonical form shared by all of its symmetric
+ * variants: puzzles that differ only by relabeling the digits, reordering
+ * bands (groups of three rows), rows within a band, stacks (groups of three
+ * columns), or columns within a stack, and by transposition. The canonical
+ * form is the variant whose cell values, read in row-major order with digits
+ * numbered by first appearance, come first in lexicographic order, with
+ * blank cells after every digit (so the rows with the most givens, which
+ * tell transforms apart soonest, come first). Blank cells are still written
+ * as 0.
+ *
+ * The form is built one output row at a time, keeping only the partial
+ * transforms that give the smallest rows so far, so most of the 3,359,232
+ * geometric transforms are never looked at. The first row is found from the
+ * given cells alone, so only the column orders that can give it are tried.
+ * The transform found last is kept, so values such as a solution can be mapped to and from the
+ * canonical form. A Canonicalizer keeps working storage and is not
+ * thread-safe; use one per thread.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class Canonicalizer
+{
+    // Sort key of a blank cell, after every digit label
+    private static final int BLANK_KEY = 10;
+
+    // Partial transforms kept at once before a puzzle is treated as too
+    // symmetric (nearly empty) to be worth canonicalizing
+    private static final int MAX_STATES = 1 << 16;
+
+    // Every column order that keeps stacks together: entry p * 9 + j is the
+    // input column placed at output column j by order p
+    private static final int COLUMN_ORDERS = 1296;
+    private static final byte[] COLUMN_ORDER = new byte[COLUMN_ORDERS * 9];
+
+    // The 6 orders of three things
+    private static final int[][] PERMUTATIONS_OF_3 = { {0,1,2}, {0,2,1}, {1,0,2},
+                                                       {1,2,0}, {2,0,1}, {2,1,0} };
+    static
+    {
+        int order = 0;
+        for (int[] stacks : PERMUTATIONS_OF_3)
+        {
+            for (int[] first : PERMUTATIONS_OF_3)
+            {
+                for (int[] second : PERMUTATIONS_OF_3)
+                {
+                    for (int[] third : PERMUTATIONS_OF_3)
+                    {
+                        int[][] within = { first, second, third };
+                        for (int j = 0; j < 9; j++)
+                        {
+                            int stack = stacks[j / 3];
+                            COLUMN_ORDER[order * 9 + j] = (byte) (stack * 3 + within[j / 3][j % 3]);
+                        } // end for
+                        order++;
+                    } // end for
+                } // end for
+            } // end for
+        } // end for
+    } // end static initializer
+
+    private final byte[][] oriented;  // the puzzle as given [0] and transposed [1]
+
+    // Partial transforms, one per index: orientation, column order, the input
+    // rows used so far (4 bits per output row), and the digit labels so far
+    // (4 bits per digit, 0 if not yet labeled) with the next free label
+    private int[] stateOrientation;
+    private int[] stateColumnOrder;
+    private long[] stateRows;
+    private long[] stateLabels;
+    private int[] stateNextLabel;
+    private int stateCount;
+
+    // Partial transforms extended by one row, built from the above
+    private int[] nextOrientation;
+    private int[] nextColumnOrder;
+    private long[] nextRows;
+    private long[] nextLabels;
+    private int[] nextNextLabel;
+    private int nextCount;
+
+    private final int[] rowMasks;       // smallest first row each input row can give
+    private final byte[] bestRow;       // smallest output row found for the current level, as sort keys
+    private final byte[] candidateRow;  // output row being compared with it, as sort keys
+
+    // The transform found by the last successful canonicalize call
+    private final int[] sourceCell;      // input cell placed at each canonical cell
+    private final byte[] toCanonical;    // canonical label of each input digit (index 0 unused)
+    private final byte[] fromCanonical;  // input digit of each canonical label (index 0 unused)
+
+    public Canonicalizer()
+    {
+        oriented = new byte[2][81];
+        stateOrientation = new int[COLUMN_ORDERS * 2];
+        stateColumnOrder = new int[COLUMN_ORDERS * 2];
+        stateRows = new long[COLUMN_ORDERS * 2];
+        stateLabels = new long[COLUMN_ORDERS * 2];
+        stateNextLabel = new int[COLUMN_ORDERS * 2];
+        nextOrientation = new int[COLUMN_ORDERS * 2];
+        nextColumnOrder = new int[COLUMN_ORDERS * 2];
+        nextRows = new long[COLUMN_ORDERS * 2];
+        nextLabels = new long[COLUMN_ORDERS * 2];
+        nextNextLabel = new int[COLUMN_ORDERS * 2];
+        rowMasks = new int[18];
+        bestRow = new byte[9];
+        candidateRow = new byte[9];
+        sourceCell = new int[81];
+        toCanonical = new byte[10];
+        fromCanonical = new byte[10];
+    } // end constructor
+
+
+    /**
+     * Finds the canonical form of a puzzle and keeps the transform that maps
+     * the puzzle to it.
+     * @param puzzle       81 cell values (0 for blank cells) in row-major order
+     * @param offset       index in the puzzle array of the first cell's value
+     * @param destination  the array the canonical puzzle's 81 values are written to
+     * @param destOffset   index in the destination for the first cell's value
+     * @return  true if the canonical form was found; false if the puzzle has
+     *          so few givens that too many transforms tie (nothing is written)
+     */
+    public boolean canonicalize(byte[] puzzle, int offset, byte[] destination, int destOffset)
+    {
+        for (int index = 0; index < 81; index++)
+        {
+            oriented[0][index] = puzzle[offset + index];
+            oriented[1][(index % 9) * 9 + index / 9] = puzzle[offset + index];
+        } // end for
+
+        seedStates();
+
+        // Choose the other output rows in turn, keeping the transforms that give the smallest row
+        boolean tooMany = false;
+        for (int level = 1; level < 9  &&  !tooMany; level++)
+        {
+            tooMany = !extendStates(level);
+        } // end for
+        if (tooMany)
+        {
+            return false;
+        }
+
+        // All remaining transforms give the same form: keep the first
+        int orientation = stateOrientation[0];
+        int order = stateColumnOrder[0];
+        long rows = stateRows[0];
+        long labels = stateLabels[0];
+        int nextLabel = stateNextLabel[0];
+        for (int digit = 1; digit <= 9; digit++)  // digits missing from the puzzle get the last labels
+        {
+            if (((labels >>> (digit * 4)) & 15) == 0)
+            {
+                labels |= (long) nextLabel << (digit * 4);
+                nextLabel++;
+            }
+        } // end for
+        for (int digit = 1; digit <= 9; digit++)
+        {
+            toCanonical[digit] = (byte) ((labels >>> (digit * 4)) & 15);
+            fromCanonical[toCanonical[digit]] = (byte) digit;
+        } // end for
+        for (int row = 0; row < 9; row++)
+        {
+            int inputRow = (int) ((rows >>> (row * 4)) & 15);
+            for (int column = 0; column < 9; column++)
+            {
+                int inputColumn = COLUMN_ORDER[order * 9 + column];
+                sourceCell[row * 9 + column] = (orientation == 0) ? inputRow * 9 + inputColumn
+                                                                   : inputColumn * 9 + inputRow;
+            } // end for
+        } // end for
+        toCanonical(puzzle, offset, destination, destOffset);
+        return true;
+    } // end canonicalize
+
+
+    /**
+     * Applies the transform found by the last canonicalize call to 81 cell
+     * values of the same puzzle, for example its solution.
+     * @param values       the values, in row-major order
+     * @param offset       index in the values array of the first cell's value
+     * @param destination  the array the transformed values are written to
+     * @param destOffset   index in the destination for the first cell's value
+     */
+    public void toCanonical(byte[] values, int offset, byte[] destination, int destOffset)
+    {
+        for (int index = 0; index < 81; index++)
+        {
+            destination[destOffset + index] = toCanonical[values[offset + sourceCell[index]]];
+        } // end for
+    } // end toCanonical
+
+
+    /**
+     * Applies the inverse of the transform found by the last canonicalize
+     * call, mapping values in canonical form (such as the canonical puzzle's
+     * solution) back to the original puzzle.
+     * @param values       the values in canonical form, in row-major order
+     * @param offset       index in the values array of the first cell's value
+     * @param destination  the array the original values are written to
+     * @param destOffset   index in the destination for the first cell's value
+     */
+    public void fromCanonical(byte[] values, int offset, byte[] destination, int destOffset)
+    {
+        for (int index = 0; index < 81; index++)
+        {
+            destination[destOffset + sourceCell[index]] = fromCanonical[values[offset + index]];
+        } // end for
+    } // end fromCanonical
+
+
+    // Private method that starts the search with the orientations, column
+    // orders, and input rows that give the smallest first row. A
+    // first row's digits are all different, so once relabeled it depends only
+    // on which of its cells are given: the smallest puts the stacks with the
+    // most givens first and the given cells of each stack first.
+    private void seedStates()
+    {
+        // Find the smallest first row each input row can give, as a 9-bit
+        // mask of its given cells with output column 0 as the highest bit
+        // (a larger mask is a smaller row)
+        int[] stackGivens = new int[3];
+        int[] givenFirstOrders = new int[3];
+        int bestMask = -1;
+        for (int orientation = 0; orientation < 2; orientation++)
+        {
+            for (int row = 0; row < 9; row++)
+            {
+                countStackGivens(oriented[orientation], row, stackGivens);
+                Arrays.sort(stackGivens);
+                int mask = 0;
+                for (int stack = 2; stack >= 0; stack--)
+                {
+                    mask = (mask << 3) | (0b111000 >>> stackGivens[stack] & 7);
+                } // end for
+                rowMasks[orientation * 9 + row] = mask;
+                bestMask = Math.max(bestMask, mask);
+            } // end for
+        } // end for
+
+        // Seed every input row that can give it with every column order that does
+        stateCount = 0;
+        for (int orientation = 0; orientation < 2; orientation++)
+        {
+            byte[] values = oriented[orientation];
+            for (int row = 0; row < 9; row++)
+            {
+                if (rowMasks[orientation * 9 + row] != bestMask)
+                {
+                    continue;
+                }
+                countStackGivens(values, row, stackGivens);
+                for (int stack = 0; stack < 3; stack++)
+                {
+                    givenFirstOrders[stack] = getGivenFirstOrders(values, row, stack);
+                } // end for
+                for (int stackOrder = 0; stackOrder < 6; stackOrder++)
+                {
+                    int[] stacks = PERMUTATIONS_OF_3[stackOrder];
+                    if (stackGivens[stacks[0]] < stackGivens[stacks[1]]
+                        ||  stackGivens[stacks[1]] < stackGivens[stacks[2]])
+                    {
+                        continue;
+                    }
+                    for (int first = 0; first < 6; first++)
+                    {
+                        for (int second = 0; second < 6; second++)
+                        {
+                            for (int third = 0; third < 6; third++)
+                            {
+                                if ((givenFirstOrders[stacks[0]] & (1 << first)) != 0
+                                    &&  (givenFirstOrders[stacks[1]] & (1 << second)) != 0
+                                    &&  (givenFirstOrders[stacks[2]] & (1 << third)) != 0)
+                                {
+                                    seed(orientation, stackOrder * 216 + first * 36 + second * 6 + third, row);
+                                }
+                            } // end for
+                        } // end for
+                    } // end for
+                } // end for
+            } // end for
+        } // end for
+    } // end seedStates
+
+
+    // Private method to count the givens of a row in each stack
+    private static void countStackGivens(byte[] values, int row, int[] stackGivens)
+    {
+        for (int stack = 0; stack < 3; stack++)
+        {
+            stackGivens[stack] = 0;
+            for (int column = stack * 3; column < stack * 3 + 3; column++)
+            {
+                if (values[row * 9 + column] != 0)
+                {
+                    stackGivens[stack]++;
+                }
+            } // end for
+        } // end for
+    } // end countStackGivens
+
+
+    // Private method returning a mask of the orders of three columns (bit p
+    // for PERMUTATIONS_OF_3[p]) that put the given cells of a row's stack
+    // before its blank cells
+    private static int getGivenFirstOrders(byte[] values, int row, int stack)
+    {
+        int orders = 0;
+        for (int order = 0; order < 6; order++)
+        {
+            int[] columns = PERMUTATIONS_OF_3[order];
+            boolean givenFirst = true;
+            for (int k = 1; k < 3; k++)
+            {
+                givenFirst &= values[row * 9 + stack * 3 + columns[k - 1]] != 0
+                              ||  values[row * 9 + stack * 3 + columns[k]] == 0;
+            } // end for
+            if (givenFirst)
+            {
+                orders |= 1 << order;
+            }
+        } // end for
+        return orders;
+    } // end getGivenFirstOrders
+
+
+    // Private method that adds a partial transform with the given input row
+    // as the first row, labeling its digits in output column order
+    private void seed(int orientation, int order, int row)
+    {
+        if (stateCount == stateOrientation.length)
+        {
+            growStates();
+        }
+        byte[] values = oriented[orientation];
+        long labels = 0;
+        int nextLabel = 1;
+        for (int column = 0; column < 9; column++)
+        {
+            int value = values[row * 9 + COLUMN_ORDER[order * 9 + column]];
+            if (value != 0  &&  ((labels >>> (value * 4)) & 15) == 0)  // repeats only in invalid puzzles
+            {
+                labels |= (long) nextLabel << (value * 4);
+                nextLabel++;
+            }
+        } // end for
+        stateOrientation[stateCount] = orientation;
+        stateColumnOrder[stateCount] = order;
+        stateRows[stateCount] = row;
+        stateLabels[stateCount] = labels;
+        stateNextLabel[stateCount] = nextLabel;
+        stateCount++;
+    } // end seed
+
+
+    // Private method that extends every partial transform by one output row,
+    // trying each input row allowed by the band structure, and keeps only the
+    // extensions giving the smallest row. Returns false if too many tie.
+    private boolean extendStates(int level)
+    {
+        nextCount = 0;
+        bestRow[0] = Byte.MAX_VALUE;  // larger than any row
+        for (int state = 0; state < stateCount; state++)
+        {
+            long rows = stateRows[state];
+            int firstRow;
+            int lastRow;
+            if (level % 3 == 0)  // any row of a band not used yet
+            {
+                firstRow = 0;
+                lastRow = 8;
+            }
+            else  // another row of the current band
+            {
+                int band = (int) ((rows >>> ((level - 1) * 4)) & 15) / 3;
+                firstRow = band * 3;
+                lastRow = band * 3 + 2;
+            }
+            for (int row = firstRow; row <= lastRow; row++)
+            {
+                if (!isRowUsed(rows, level, row))
+                {
+                    tryRow(state, level, row);
+                }
+            } // end for
+            if (nextCount > MAX_STATES)
+            {
+                return false;
+            }
+        } // end for
+
+        // The extended transforms become the current ones
+        int[] swapInts = stateOrientation;
+        stateOrientation = nextOrientation;
+        nextOrientation = swapInts;
+        swapInts = stateColumnOrder;
+        stateColumnOrder = nextColumnOrder;
+        nextColumnOrder = swapInts;
+        swapInts = stateNextLabel;
+        stateNextLabel = nextNextLabel;
+        nextNextLabel = swapInts;
+        long[] swapLongs = stateRows;
+        stateRows = nextRows;
+        nextRows = swapLongs;
+        swapLongs = stateLabels;
+        stateLabels = nextLabels;
+        nextLabels = swapLongs;
+        stateCount = nextCount;
+        return true;
+    } // end extendStates
+
+
+    // Private method returning true if the input row (or, at the start of a
+    // band, any row of its band) is among the first level rows chosen
+    private static boolean isRowUsed(long rows, int level, int row)
+    {
+        boolean used = false;
+        for (int k = 0; k < level  &&  !used; k++)
+        {
+            int usedRow = (int) ((rows >>> (k * 4)) & 15);
+            used = (level % 3 == 0) ? usedRow / 3 == row / 3 : usedRow == row;
+        } // end for
+        return used;
+    } // end isRowUsed
+
+
+    // Private method that builds the output row given by placing an input row
+    // at the given level of a partial transform, and keeps the extension if
+    // the row is no larger than the smallest found so far
+    private void tryRow(int state, int level, int row)
+    {
+        byte[] values = oriented[stateOrientation[state]];
+        int orderStart = stateColumnOrder[state] * 9;
+        long labels = stateLabels[state];
+        int nextLabel = stateNextLabel[state];
+
+        // Compare with the best row while building, stopping once larger
+        int comparison = (bestRow[0] == Byte.MAX_VALUE) ? -1 : 0;
+        for (int column = 0; column < 9; column++)
+        {
+            int value = values[row * 9 + COLUMN_ORDER[orderStart + column]];
+            int label = 0;
+            if (value != 0)
+            {
+                label = (int) ((labels >>> (value * 4)) & 15);
+                if (label == 0)
+                {
+                    label = nextLabel;
+                    labels |= (long) label << (value * 4);
+                    nextLabel++;
+                }
+            }
+            int key = (label == 0) ? BLANK_KEY : label;
+            candidateRow[column] = (byte) key;
+            if (comparison == 0)
+            {
+                comparison = key - bestRow[column];
+                if (comparison > 0)
+                {
+                    return;
+                }
+            }
+        } // end for
+
+        if (comparison < 0)  // a new smallest row: drop the extensions kept so far
+        {
+            System.arraycopy(candidateRow, 0, bestRow, 0, 9);
+            nextCount = 0;
+        }
+        if (nextCount == nextOrientation.length)
+        {
+            growNext();
+        }
+        nextOrientation[nextCount] = stateOrientation[state];
+        nextColumnOrder[nextCount] = stateColumnOrder[state];
+        nextRows[nextCount] = stateRows[state] | ((long) row << (level * 4));
+        nextLabels[nextCount] = labels;
+        nextNextLabel[nextCount] = nextLabel;
+        nextCount++;
+    } // end tryRow
+
+
+    // Private method to double the room for partial transforms
+    private void growStates()
+    {
+        int capacity = stateOrientation.length * 2;
+        stateOrientation = Arrays.copyOf(stateOrientation, capacity);
+        stateColumnOrder = Arrays.copyOf(stateColumnOrder, capacity);
+        stateRows = Arrays.copyOf(stateRows, capacity);
+        stateLabels = Arrays.copyOf(stateLabels, capacity);
+        stateNextLabel = Arrays.copyOf(stateNextLabel, capacity);
+    } // end growStates
+
+
+    // Private method to double the room for extended transforms
+    private void growNext()
+    {
+        int capacity = nextOrientation.length * 2;
+        nextOrientation = Arrays.copyOf(nextOrientation, capacity);
+        nextColumnOrder = Arrays.copyOf(nextColumnOrder, capacity);
+        nextRows = Arrays.copyOf(nextRows, capacity);
+        nextLabels = Arrays.copyOf(nextLabels, capacity);
+        nextNextLabel = Arrays.copyOf(nextNextLabel, capacity);
+    } // end growNext
+
+} // end Canonicalizer
@@ -2,16 +2,19 @@
 package SudokuSolver;
 
 /**
- * A class representing one grid cell in a sudoku puzzle.
+ * A class representing one grid cell in a sudoku puzzle. A Cell either holds
+ * its own value, or is a view of one cell of a Grid (see Grid.getCell), in
+ * which case its value is read from and written to the Grid.
  * @author Tze-Hei "Zee" Yong
  */
 public class Cell 
 {
-    private int value;              // can be 0 (blank) to 9
+    private int value;              // can be 0 (blank) to the grid size (9 for a 9 x 9 grid)
     private final boolean fixed;    // whether value is fixed (set initially)
-    private final int row;          // specifies array index for row (0 to 8)
-    private final int column;       // specifies array index for column (0 to 8)
-    private final int block;        // range: 1 to 9
+    private final int row;          // specifies array index for row (from 0)
+    private final int column;       // specifies array index for column (from 0)
+    private final int block;        // range: 1 to the grid size
+    private final Grid grid;        // grid this cell is a view of (null if standalone)
     
     public Cell(int value, boolean fixed, int row, int column, int block)
     {
@@ -20,10 +23,26 @@ public class Cell
         this.row = row;
         this.column = column;
         this.block = block;
+        this.grid = null;
+    } // end constructor
+    
+    // Constructor for a view of one cell of a grid, used by Grid.getCell
+    Cell(Grid grid, int row, int column, int block)
+    {
+        this.value = 0;  // unused; the value is kept by the grid
+        this.fixed = grid.isFixed(row, column);
+        this.row = row;
+        this.column = column;
+        this.block = block;
+        this.grid = grid;
     } // end constructor
     
     public int getValue()
     {
+        if (grid != null)
+        {
+            return grid.getValue(row, column);
+        }
         return value;
     } // end getValue
     
@@ -53,7 +72,14 @@ public class Cell
         {
             throw new UnsupportedOperationException("Cannot change fixed cell value");
         }   
-        value = newValue;    
+        if (grid != null)
+        {
+            grid.setValue(row, column, newValue);
+        }
+        else
+        {
+            value = newValue;
+        }
     } // end setValue
     
     @Override public String toString()
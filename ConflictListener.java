@@ -0,0 +1,29 @@
+package SudokuSolver;
+
+/**
+ * Receives the conflicts made and removed as values are entered into a Grid
+ * with setValue, so an interactive front end can highlight them as they
+ * appear (see Grid.setConflictListener).
+ * @author Tze-Hei "Zee" Yong
+ */
+public interface ConflictListener
+{
+    /**
+     * Called when a value is entered that already appears in the same row,
+     * column, or block. Called once for each unit the value is repeated in.
+     * @param conflict  the unit and value, of kind DUPLICATE_VALUE
+     * @param row       the row of the cell just changed (0 to 8)
+     * @param column    the column of the cell just changed (0 to 8)
+     */
+    void conflictFound(Contradiction conflict, int row, int column);
+
+    /**
+     * Called when a value is changed or cleared so that a unit no longer
+     * holds the value twice.
+     * @param conflict  the unit and value, of kind DUPLICATE_VALUE
+     * @param row       the row of the cell just changed (0 to 8)
+     * @param column    the column of the cell just changed (0 to 8)
+     */
+    void conflictResolved(Contradiction conflict, int row, int column);
+
+} // end ConflictListener
@@ -0,0 +1,115 @@
+package SudokuSolver;
+
+/**
+ * Describes why a puzzle cannot be solved, when this can be shown without
+ * searching: two givens share a unit, a blank cell has no possible value, or
+ * a value has no possible cell in a unit. Also describes a conflict made by
+ * entering a value that repeats another in the same unit.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class Contradiction
+{
+    /**
+     * The kinds of contradiction that can be detected before searching, and
+     * the conflict reported while values are entered.
+     */
+    public enum Kind
+    {
+        /** The same value is given twice in a row, column, or block. */
+        DUPLICATE_GIVEN,
+        /** A blank cell has no value that its row, column, and block allow. */
+        NO_CANDIDATES,
+        /** A value missing from a row, column, or block has no cell it can go in. */
+        VALUE_HAS_NO_CELL,
+        /** The same value has been entered twice in a row, column, or block. */
+        DUPLICATE_VALUE
+    } // end Kind
+
+    /**
+     * The kinds of unit a contradiction can be found in.
+     */
+    public enum UnitType { ROW, COLUMN, BLOCK, CELL }
+
+    private final Kind kind;
+    private final UnitType unitType;
+    private final int unitIndex;  // row or column (from 0), block (from 1), or cell index
+    private final int value;      // value involved (from 1), or 0 for NO_CANDIDATES
+    private final int gridSize;   // rows in the grid, used to number cells
+
+    // Constructor for a contradiction in a 9 x 9 grid
+    public Contradiction(Kind kind, UnitType unitType, int unitIndex, int value)
+    {
+        this(kind, unitType, unitIndex, value, 9);
+    } // end constructor
+
+    // Constructor for a contradiction in a grid with the given number of rows
+    public Contradiction(Kind kind, UnitType unitType, int unitIndex, int value, int gridSize)
+    {
+        this.kind = kind;
+        this.unitType = unitType;
+        this.unitIndex = unitIndex;
+        this.value = value;
+        this.gridSize = gridSize;
+    } // end constructor
+
+    public Kind getKind()
+    {
+        return kind;
+    } // end getKind
+
+    public UnitType getUnitType()
+    {
+        return unitType;
+    } // end getUnitType
+
+    /**
+     * Returns the index of the unit, numbered as in Cell: rows and columns
+     * from 0, blocks from 1 (0 to 8 and 1 to 9 in a 9 x 9 grid). For a CELL
+     * unit this is row * N + column, where N is the number of rows.
+     * @return  the unit's index
+     */
+    public int getUnitIndex()
+    {
+        return unitIndex;
+    } // end getUnitIndex
+
+    /**
+     * Returns the value involved in the contradiction.
+     * @return  the value (from 1), or 0 for NO_CANDIDATES
+     */
+    public int getValue()
+    {
+        return value;
+    } // end getValue
+
+    @Override public String toString()
+    {
+        String unit;
+        if (unitType == UnitType.CELL)
+        {
+            unit = "cell (" + unitIndex / gridSize + "," + unitIndex % gridSize + ")";
+        }
+        else
+        {
+            unit = unitType.toString().toLowerCase() + " " + unitIndex;
+        }
+
+        String result;
+        switch (kind)
+        {
+            case DUPLICATE_GIVEN:
+                result = "value " + value + " is given more than once in " + unit;
+                break;
+            case DUPLICATE_VALUE:
+                result = "value " + value + " appears more than once in " + unit;
+                break;
+            case NO_CANDIDATES:
+                result = "no value can be placed in " + unit;
+                break;
+            default:  // VALUE_HAS_NO_CELL
+                result = "value " + value + " cannot be placed anywhere in " + unit;
+        } // end switch
+        return result;
+    } // end toString
+
+} // end Contradiction
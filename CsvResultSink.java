@@ -0,0 +1,128 @@
+package SudokuSolver;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes each result as one line of comma-separated values, after a header
+ * line naming the columns:
+ * <pre>
+ * index,puzzle,solution,solved,nodes,backtracks,max_depth,elapsed_ns
+ * </pre>
+ * The index counts from 0, the puzzle and solution are 81 digits ('0' for
+ * blank cells; the solution is empty if the puzzle was not solved), and the
+ * statistics columns are empty for results received without statistics.
+ * Lines are formatted straight into a byte buffer, so no String is created
+ * per result.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class CsvResultSink implements ResultSink
+{
+    private static final int BUFFER_SIZE = 256 * 512;  // bytes written at a time
+    private static final int MAX_LINE = 256;            // longest possible line
+    private static final String HEADER =
+        "index,puzzle,solution,solved,nodes,backtracks,max_depth,elapsed_ns\n";
+
+    private final OutputStream out;
+    private final byte[] buffer;  // lines waiting to be written
+    private int bufferSize;       // number of bytes in buffer
+    private long index;           // index of the next result
+
+    /**
+     * Constructor for a sink writing to the given stream, which close also
+     * closes. The header line is written first.
+     * @param out  the stream the lines are written to
+     */
+    public CsvResultSink(OutputStream out)
+    {
+        this.out = out;
+        buffer = new byte[BUFFER_SIZE];
+        for (int i = 0; i < HEADER.length(); i++)
+        {
+            buffer[bufferSize++] = (byte) HEADER.charAt(i);
+        } // end for
+    } // end constructor
+
+
+    @Override public void accept(byte[] puzzle, int puzzleOffset, byte[] solution, int solutionOffset,
+                                 boolean solved, SolveStatistics statistics) throws IOException
+    {
+        if (bufferSize + MAX_LINE > buffer.length)
+        {
+            out.write(buffer, 0, bufferSize);
+            bufferSize = 0;
+        }
+        appendNumber(index);
+        index++;
+        buffer[bufferSize++] = ',';
+        appendCells(puzzle, puzzleOffset);
+        buffer[bufferSize++] = ',';
+        if (solved)
+        {
+            appendCells(solution, solutionOffset);
+        }
+        buffer[bufferSize++] = ',';
+        buffer[bufferSize++] = (byte) (solved ? '1' : '0');
+        if (statistics != null)
+        {
+            buffer[bufferSize++] = ',';
+            appendNumber(statistics.getNodeCount());
+            buffer[bufferSize++] = ',';
+            appendNumber(statistics.getBacktrackCount());
+            buffer[bufferSize++] = ',';
+            appendNumber(statistics.getMaxDepth());
+            buffer[bufferSize++] = ',';
+            appendNumber(statistics.getElapsedNanos());
+        }
+        else
+        {
+            for (int k = 0; k < 4; k++)
+            {
+                buffer[bufferSize++] = ',';
+            } // end for
+        }
+        buffer[bufferSize++] = '\n';
+    } // end accept
+
+
+    // Private method appending 81 cell values as digits
+    private void appendCells(byte[] values, int offset)
+    {
+        for (int k = 0; k < 81; k++)
+        {
+            buffer[bufferSize++] = (byte) ('0' + values[offset + k]);
+        } // end for
+    } // end appendCells
+
+
+    // Private method appending a non-negative number in decimal
+    private void appendNumber(long number)
+    {
+        int digits = 1;
+        for (long rest = number / 10; rest > 0; rest /= 10)
+        {
+            digits++;
+        } // end for
+        for (int k = digits - 1; k >= 0; k--)
+        {
+            buffer[bufferSize + k] = (byte) ('0' + number % 10);
+            number /= 10;
+        } // end for
+        bufferSize += digits;
+    } // end appendNumber
+
+
+    @Override public void flush() throws IOException
+    {
+        out.write(buffer, 0, bufferSize);
+        bufferSize = 0;
+        out.flush();
+    } // end flush
+
+
+    @Override public void close() throws IOException
+    {
+        flush();
+        out.close();
+    } // end close
+
+} // end CsvResultSink
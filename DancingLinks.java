@@ -0,0 +1,453 @@
+package SudokuSolver;
+
+/**
+ * A sudoku solver that encodes the 9 x 9 grid as an exact-cover problem and
+ * solves it with Dancing Links (Knuth's Algorithm X).
+ *
+ * Each of the 729 possible placements (row, column, value) is a row of the
+ * exact-cover matrix, and each of the 324 constraints is a column:
+ * every cell holds one value, and every row, column, and block holds each
+ * value once. A solution is a set of 81 placements covering every constraint
+ * exactly once. The matrix is stored as circular doubly-linked lists in
+ * parallel int arrays, so covering and uncovering a constraint is a handful
+ * of array writes.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class DancingLinks implements Solver
+{
+    private static final int CONSTRAINTS = 324;  // number of matrix columns
+    private static final int PLACEMENTS = 729;   // number of matrix rows
+    private static final int ROOT = 0;           // index of the root header node
+    private static final int[] BLOCK_OF = Topology.of(3).blockOf;  // block of each cell index
+
+    private final int[][] values;  // current cell values (0 for blank cells)
+    private final int numberOfBlankCells;
+    private boolean givensConflict;  // true if two givens share a constraint
+
+    // Node links. Nodes 1 to 324 are the column headers; the four nodes of
+    // each placement row follow them.
+    private final int[] left;
+    private final int[] right;
+    private final int[] up;
+    private final int[] down;
+    private final int[] columnOf;     // column header of each node
+    private final int[] placementOf;  // placement row of each node
+    private final int[] columnSize;   // number of nodes in each column, by header
+
+    private final int[] solution;   // placement rows chosen during search
+    private final int[] foundRows;  // placement rows of the first solution found
+    private int solutionCount;      // solutions found by the current search
+
+    /**
+     * Constructor takes a 2-dimensional integer array representing the sudoku
+     * grid's initial values. Blank cells should be represented by 0 values.
+     * @param newGrid  The 9 x 9 integer array containing the grid's initial values.
+     */
+    public DancingLinks(int[][] newGrid)
+    {
+        if (!isGridSizeValid(newGrid))
+        {
+            throw new IllegalArgumentException("Grid with invalid dimensions provided to constructor");
+        }
+
+        // Copy initial values and count blank cells
+        values = new int[9][9];
+        int blanks = 0;
+        for (int i = 0; i < 9; i++)
+        {
+            for (int j = 0; j < 9; j++)
+            {
+                if (newGrid[i][j] < 0  ||  newGrid[i][j] > 9)
+                {
+                    throw new IllegalArgumentException("Cell value out of range (0 to 9): "
+                                                       + newGrid[i][j]);
+                }
+                values[i][j] = newGrid[i][j];
+                if (newGrid[i][j] == 0)
+                {
+                    blanks++;
+                }
+            } // end inner for
+        } // end outer for
+        numberOfBlankCells = blanks;
+
+        int nodeCount = 1 + CONSTRAINTS + PLACEMENTS * 4;
+        left = new int[nodeCount];
+        right = new int[nodeCount];
+        up = new int[nodeCount];
+        down = new int[nodeCount];
+        columnOf = new int[nodeCount];
+        placementOf = new int[nodeCount];
+        columnSize = new int[CONSTRAINTS + 1];
+        solution = new int[81];
+        foundRows = new int[81];
+
+        buildMatrix();
+        coverGivens();
+    } // end constructor
+
+    // Private method to check that grid supplied as argument to constructor
+    // has the correct number of rows and columns
+    private boolean isGridSizeValid(int[][] newGrid)
+    {
+        boolean result = (newGrid.length == 9);
+        for (int i = 0; result && i < 9; i++)
+        {
+            if (newGrid[i].length != 9)
+            {
+                result = false;
+            }
+        } // end for
+        return result;
+    } // end isGridSizeValid
+
+
+    // Private method to build the full exact-cover matrix of 729 placements
+    // against 324 constraints
+    private void buildMatrix()
+    {
+        // Link the root and column headers into one horizontal list
+        for (int header = ROOT; header <= CONSTRAINTS; header++)
+        {
+            left[header] = (header == ROOT) ? CONSTRAINTS : header - 1;
+            right[header] = (header == CONSTRAINTS) ? ROOT : header + 1;
+            up[header] = header;
+            down[header] = header;
+            columnOf[header] = header;
+        } // end for
+
+        // Add one row of four nodes for every placement
+        int node = CONSTRAINTS + 1;
+        for (int placement = 0; placement < PLACEMENTS; placement++)
+        {
+            int row = placement / 81;
+            int column = (placement / 9) % 9;
+            int valueIndex = placement % 9;  // value - 1
+            int block = BLOCK_OF[row * 9 + column];
+
+            int[] headers = {
+                1 + row * 9 + column,                // cell (row, column) has a value
+                1 + 81 + row * 9 + valueIndex,       // row has the value
+                1 + 162 + column * 9 + valueIndex,   // column has the value
+                1 + 243 + block * 9 + valueIndex };  // block has the value
+
+            int first = node;
+            for (int k = 0; k < 4; k++)
+            {
+                int header = headers[k];
+
+                // Append node to the bottom of its column
+                columnOf[node] = header;
+                placementOf[node] = placement;
+                up[node] = up[header];
+                down[node] = header;
+                down[up[header]] = node;
+                up[header] = node;
+                columnSize[header]++;
+
+                // Append node to the end of its placement row
+                left[node] = (k == 0) ? node : node - 1;
+                right[node] = first;
+                right[left[node]] = node;
+                left[first] = node;
+                node++;
+            } // end inner for
+        } // end outer for
+    } // end buildMatrix
+
+
+    // Private method to select the placement for every given value by covering
+    // its four constraints. If two givens share a constraint the puzzle has
+    // no solution and givensConflict is set.
+    private void coverGivens()
+    {
+        boolean[] covered = new boolean[CONSTRAINTS + 1];
+        givensConflict = false;
+        for (int i = 0; i < 9  &&  !givensConflict; i++)
+        {
+            for (int j = 0; j < 9  &&  !givensConflict; j++)
+            {
+                int value = values[i][j];
+                if (value != 0)
+                {
+                    int firstNode = CONSTRAINTS + 1 + (i * 81 + j * 9 + value - 1) * 4;
+                    int node = firstNode;
+                    do
+                    {
+                        if (covered[columnOf[node]])
+                        {
+                            givensConflict = true;
+                        }
+                        else
+                        {
+                            covered[columnOf[node]] = true;
+                            cover(columnOf[node]);
+                        }
+                        node = right[node];
+                    } while (node != firstNode  &&  !givensConflict);
+                }
+            } // end inner for
+        } // end outer for
+    } // end coverGivens
+
+
+    /**
+     * Returns the initial number of blank cells in the grid to be solved.
+     * @return  the integer number of initial blank cells
+     */
+    @Override public int getNumberOfBlankCells()
+    {
+        return numberOfBlankCells;
+    } // end getNumberOfBlankCells
+
+
+    /**
+     * Attempts to solve the grid based on the initial values provided.
+     * @return  True if the puzzle is successfully solved; false otherwise
+     *          (i.e., if puzzle cannot be solved based on initial values provided)
+     */
+    @Override public boolean solveGrid()
+    {
+        boolean solved = false;
+        if (countSolutions(1) == 1)
+        {
+            // Fill in the blank cells from the placements of the solution
+            for (int depth = 0; depth < numberOfBlankCells; depth++)
+            {
+                int placement = foundRows[depth];
+                values[placement / 81][(placement / 9) % 9] = placement % 9 + 1;
+            } // end for
+            solved = isValidGrid();
+        }
+        return solved;
+    } // end solveGrid
+
+
+    /**
+     * Counts the solutions of the puzzle, stopping as soon as the given limit
+     * is reached. The grid's values are not changed.
+     * @param limit  the maximum number of solutions to count (at least 1)
+     * @return  the number of solutions found, between 0 and limit
+     */
+    @Override public int countSolutions(int limit)
+    {
+        if (limit < 1)
+        {
+            throw new IllegalArgumentException("Solution limit must be at least 1");
+        }
+        solutionCount = 0;
+        if (!givensConflict)
+        {
+            search(0, limit);
+        }
+        return solutionCount;
+    } // end countSolutions
+
+
+    /**
+     * Determines whether the puzzle has exactly one solution. The search stops
+     * as soon as a second solution is found. The grid's values are not changed.
+     * @return  True if the puzzle has a unique solution, False otherwise.
+     */
+    @Override public boolean hasUniqueSolution()
+    {
+        return countSolutions(2) == 1;
+    } // end hasUniqueSolution
+
+
+    // Private recursive method implementing Algorithm X. Chooses the constraint
+    // with the fewest remaining placements, and tries each of them in turn.
+    // The matrix is always restored before returning.
+    private void search(int depth, int limit)
+    {
+        if (right[ROOT] == ROOT)  // every constraint is covered
+        {
+            if (solutionCount == 0)
+            {
+                System.arraycopy(solution, 0, foundRows, 0, depth);
+            }
+            solutionCount++;
+            return;
+        }
+
+        // Choose the column with the fewest nodes
+        int chosen = right[ROOT];
+        for (int header = right[chosen]; header != ROOT; header = right[header])
+        {
+            if (columnSize[header] < columnSize[chosen])
+            {
+                chosen = header;
+            }
+        } // end for
+        if (columnSize[chosen] == 0)
+        {
+            return;  // a constraint can no longer be satisfied
+        }
+
+        cover(chosen);
+        for (int rowNode = down[chosen]; rowNode != chosen && solutionCount < limit;
+             rowNode = down[rowNode])
+        {
+            solution[depth] = placementOf[rowNode];
+            for (int node = right[rowNode]; node != rowNode; node = right[node])
+            {
+                cover(columnOf[node]);
+            }
+
+            search(depth + 1, limit);
+
+            for (int node = left[rowNode]; node != rowNode; node = left[node])
+            {
+                uncover(columnOf[node]);
+            }
+        } // end for
+        uncover(chosen);
+    } // end search
+
+
+    // Private method to remove a column from the header list, and every row
+    // that has a node in that column from the other columns it belongs to
+    private void cover(int header)
+    {
+        right[left[header]] = right[header];
+        left[right[header]] = left[header];
+        for (int rowNode = down[header]; rowNode != header; rowNode = down[rowNode])
+        {
+            for (int node = right[rowNode]; node != rowNode; node = right[node])
+            {
+                down[up[node]] = down[node];
+                up[down[node]] = up[node];
+                columnSize[columnOf[node]]--;
+            } // end inner for
+        } // end outer for
+    } // end cover
+
+
+    // Private method to undo cover(), relinking nodes in exactly the reverse order
+    private void uncover(int header)
+    {
+        for (int rowNode = up[header]; rowNode != header; rowNode = up[rowNode])
+        {
+            for (int node = left[rowNode]; node != rowNode; node = left[node])
+            {
+                columnSize[columnOf[node]]++;
+                down[up[node]] = node;
+                up[down[node]] = node;
+            } // end inner for
+        } // end outer for
+        right[left[header]] = header;
+        left[right[header]] = header;
+    } // end uncover
+
+
+    /**
+     * Determines whether the values currently set for the grid cells
+     * constitute a valid grid according to the rules of sudoku.
+     * @return  True if the grid is valid, False otherwise.
+     */
+    @Override public boolean isValidGrid()
+    {
+        boolean result = true;
+        int[] rowMasks = new int[9];
+        int[] columnMasks = new int[9];
+        int[] blockMasks = new int[9];
+        for (int i = 0; i < 9  &&  result; i++)
+        {
+            for (int j = 0; j < 9  &&  result; j++)
+            {
+                int value = values[i][j];
+                int block = BLOCK_OF[i * 9 + j];
+                if (value < 1  ||  value > 9)  // check for valid numeric range
+                {
+                    result = false;
+                }
+                else
+                {
+                    int bit = 1 << value;
+                    if (((rowMasks[i] | columnMasks[j] | blockMasks[block]) & bit) != 0)
+                    {
+                        result = false;  // value repeated in row, column, or block
+                    }
+                    rowMasks[i] |= bit;
+                    columnMasks[j] |= bit;
+                    blockMasks[block] |= bit;
+                }
+            } // end inner for
+        } // end outer for
+        return result;
+    } // end isValidGrid
+
+
+    /**
+     * Returns a copy of the values currently set for the grid cells.
+     * @return  a new 9 x 9 integer array of cell values (0 for blank cells)
+     */
+    @Override public int[][] getValues()
+    {
+        int[][] result = new int[9][];
+        for (int i = 0; i < 9; i++)
+        {
+            result[i] = values[i].clone();
+        }
+        return result;
+    } // end getValues
+
+
+
+    // Test stub for DancingLinks class
+    public static void main(String[] args)
+    {
+        // Create a 9 x 9 integer grid with some values filled in
+        int[][] intGrid = { {2,0,0,0,0,6,7,5,4},
+                            {0,0,7,9,0,4,1,8,0},
+                            {3,8,4,0,0,7,0,2,0},
+                            {5,0,0,0,8,2,0,7,0},
+                            {0,3,8,7,0,0,4,0,0},
+                            {0,0,9,6,0,0,0,0,5},
+                            {0,0,5,3,7,0,0,9,0},
+                            {8,7,0,0,6,0,0,0,1},
+                            {0,1,3,0,5,8,0,0,0} };
+
+        System.out.println("Creating a new Dancing Links solver with some blank values...");
+        DancingLinks testSolver = new DancingLinks(intGrid);
+        System.out.println("Number of blank cells: " + testSolver.getNumberOfBlankCells());
+        System.out.println("Number of solutions: " + testSolver.countSolutions(10));
+        System.out.println("Successfully solved? " + testSolver.solveGrid());
+
+        // Solve the same puzzle through each engine and compare the results
+        for (SolverEngine engine : SolverEngine.values())
+        {
+            Solver solver = engine.createSolver(intGrid);
+            System.out.println("\n" + engine + " solved? " + solver.solveGrid());
+            int[][] result = solver.getValues();
+            for (int i = 0; i < 9; i++)
+            {
+                for (int j = 0; j < 9; j++)
+                {
+                    System.out.print(result[i][j] + " ");
+                } // end inner for
+                System.out.println();
+            } // end outer for
+        } // end for
+
+        // Test a puzzle with conflicting givens (two 2s in the top row)
+        int[][] intGrid4 = { {0,0,0,2,2,6,7,5,4},
+                             {0,0,7,9,0,4,1,8,0},
+                             {3,8,4,0,0,7,0,2,0},
+                             {5,0,0,0,8,2,0,7,0},
+                             {0,3,8,7,0,0,4,0,0},
+                             {0,0,9,6,0,0,0,0,5},
+                             {0,0,5,3,7,0,0,9,0},
+                             {8,7,0,0,6,0,0,0,1},
+                             {0,1,3,0,5,8,0,0,0} };
+        DancingLinks testSolver4 = new DancingLinks(intGrid4);
+        System.out.println("\nSuccessfully solved grid with conflicting givens? "
+                           + testSolver4.solveGrid());
+
+        // Test solution counting on an empty grid
+        DancingLinks emptySolver = new DancingLinks(new int[9][9]);
+        System.out.println("Empty grid has at least 1000 solutions? "
+                           + (emptySolver.countSolutions(1000) == 1000));
+    } // end test main
+
+} // end DancingLinks
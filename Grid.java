@@ -1,407 +1,1874 @@
-
 package SudokuSolver;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 
 /**
- * A class representing a sudoku 9 x 9 grid with 9 rows and 9 columns,
- * possible cell values 1 through 9, and 9 blocks with 9 cells each.
- * A Grid knows how to 'solve itself' and how to check whether it is a valid
- * complete (solved) sudoku grid.
+ * A class representing a sudoku grid of N x N cells, where N is the square
+ * of the block size: 4 x 4, 9 x 9 (the standard grid), 16 x 16, or 25 x 25.
+ * A grid has N rows, N columns, and N blocks, with possible cell values 1
+ * through N. A Grid knows how to 'solve itself' and how to check whether it
+ * is a valid complete (solved) sudoku grid.
+ *
+ * Cells are identified by index (row * N + column) and their values are kept
+ * in a flat byte array, so solving allocates nothing. A Grid can be reloaded
+ * with a new puzzle and solved into a caller's buffer, so one instance can
+ * solve a whole stream of puzzles. Cell objects are available as views.
  * @author Tze-Hei "Zee" Yong
  */
-public class Grid
+public class Grid implements Solver
 {
-    private final Cell[][] grid; // 2-dimensional array to store grid of all Cells
-    private final ArrayList<Cell> blankCellList; // stores initial list of blank cells
+    private final Topology topology;  // layout shared by all grids of this size
+    private final int boxSize;     // rows (and columns) of cells in one block
+    private final int size;        // rows, columns, blocks, and values: boxSize squared
+    private final int cellCount;   // size squared
+    private final int peerCount;   // cells sharing a row, column, or block with a cell
+    private final int allValues;   // mask with bits 1 to size set
+    
+    // Lookup tables of the topology, indexed by cell index
+    private final int[] rowOf;     // row of each cell (0 to size - 1)
+    private final int[] columnOf;  // column of each cell (0 to size - 1)
+    private final int[] blockOf;   // block of each cell (0 to size - 1)
+    private final int[] peers;     // the peers of cell i are at i * peerCount
+    private final int[] units;     // the cells of unit u are at u * size; rows are units
+                                   // 0 to size - 1, then columns, then blocks
+    
+    private final byte[] values;      // value of each cell: 0 (blank) to size
+    private final long[] fixedMask;   // bit (index % 64) of word (index / 64) is set
+                                      // when the cell's value is fixed (set initially)
+    private final int[] blankCells;   // indexes of the initial blank cells, in row-major order
+    private int numberOfBlankCells;   // number of entries in blankCells
+    
+    // Occupancy bitmasks: bit v is set when value v is used in that unit.
+    // Updated incrementally as values are set and unset during solving, so a
+    // legality check is a single AND instead of a scan over the cell's peers.
+    private final int[] rowMasks;     // index = row
+    private final int[] columnMasks;  // index = column
+    private final int[] blockMasks;   // index = block
+    
+    private final Trail trail;         // cells filled during search, undone on backtracking
+    private final Trail editTrail;     // changes made by setValue, undone by restore
+    private boolean recordingEdits;    // true once snapshot is called, until the next load or solve
+    private final byte[] savedValues;  // values kept aside while counting solutions
+    private final int[] cellCounts;    // possible cells of each value in one unit, used
+                                       // while choosing a branch
+    
+    private SolveStrategy strategy;  // algorithm used by solveGrid
+    private long nodeCount;          // number of values guessed by the last solveGrid call
+    
+    // Search statistics of the last solve, kept only when enabled
+    private boolean statisticsEnabled;
+    private long backtrackCount;     // guesses undone because they led to no solution
+    private int searchDepth;         // guesses on the current search path
+    private int maxSearchDepth;      // deepest search path so far
+    private long elapsedNanos;       // wall time of the last solve
+    private boolean lastSolved;      // result of the last solve
+    
+    private int solutionLimit;       // search stops once this many solutions are found
+    private int solutionCount;       // solutions found by the current search
+    private SearchControl control;   // shared by threads searching parts of the
+                                     // same puzzle (null for a normal search)
+    
+    // Limits of a bounded solve (bounded is false for an unlimited search)
+    private static final int LIMIT_CHECK_INTERVAL = 256;  // search steps between clock checks
+    private boolean bounded;
+    private long nodeBudget;                 // most values the search may guess
+    private long timeoutNanos;               // most time the search may take
+    private long searchStartTime;            // System.nanoTime() when the search started
+    private CancellationToken cancellation;  // null if the solve cannot be cancelled
+    private int stepsUntilLimitCheck;        // search steps until the clock is read again
+    private boolean limitReached;            // true once a limit has stopped the search
+    
+    // Contradiction found in the givens or before the first guess, kept as
+    // primitives so detecting one allocates nothing (kind is null if none)
+    private boolean duplicateGiven;            // true if two givens share a unit
+    private Contradiction.Kind contradictionKind;
+    private int contradictionUnit;             // unit (as in units), or -1 for a cell
+    private int contradictionCell;             // cell index, or -1 for a unit
+    private int contradictionValue;            // value involved, or 0
+    
+    // Number of times each value appears in each unit (index unit * (size + 1) + value,
+    // units numbered as in units), kept up to date by setValue so conflicts and
+    // completeness are known without scanning. Solving and loading change
+    // values without updating the counts; they are then rebuilt on next use.
+    private final byte[] unitCounts;
+    private boolean countsValid;     // false if values changed since the counts were built
+    private int filledCount;         // cells with a value
+    private int conflictCount;       // (unit, value) pairs where the value appears more than once
+    private ConflictListener conflictListener;  // told about conflicts made by setValue
     
     /**
      * Constructor takes a 2-dimensional integer array representing the sudoku
      * grid's initial values. Blank cells should be represented by 0 values.
-     * @param newGrid  The 9 x 9 integer array containing the grid's initial values.
+     * @param newGrid  The N x N integer array containing the grid's initial
+     *                 values, where N is 4, 9, 16, or 25.
      */
     public Grid(int[][] newGrid)
     {
-        grid = new Cell[9][9];
+        this(getBoxSize(newGrid));
+        load(newGrid);
+    } // end constructor
+    
+    /**
+     * Constructor for an empty (all blank) 9 x 9 grid, intended to be reused
+     * for a stream of puzzles through the load methods.
+     */
+    public Grid()
+    {
+        this(3);
+    } // end constructor
+    
+    /**
+     * Constructor for a 9 x 9 grid loaded from one packed record (see
+     * PackedPuzzleFile), such as a record of a mapped puzzle file, without
+     * building an int[][] first.
+     * @param packed    the buffer holding the record
+     * @param position  index in the buffer of the record's first byte
+     */
+    public Grid(ByteBuffer packed, int position)
+    {
+        this(3);
+        loadPacked(packed, position);
+    } // end constructor
+    
+    /**
+     * Constructor for an empty (all blank) grid with blocks of the given size,
+     * intended to be reused for a stream of puzzles through the load methods.
+     * @param boxSize  rows of cells in one block: 2, 3, 4, or 5, for a grid
+     *                 of 4 x 4, 9 x 9, 16 x 16, or 25 x 25 cells
+     */
+    public Grid(int boxSize)
+    {
+        topology = Topology.of(boxSize);  // rejects unsupported block sizes
+        this.boxSize = boxSize;
+        size = topology.getSize();
+        cellCount = topology.getCellCount();
+        peerCount = topology.getPeerCount();
+        allValues = (1 << (size + 1)) - 2;
+        
+        rowOf = topology.rowOf;
+        columnOf = topology.columnOf;
+        blockOf = topology.blockOf;
+        peers = topology.peers;
+        units = topology.units;
+        
+        values = new byte[cellCount];
+        fixedMask = new long[(cellCount + 63) / 64];
+        blankCells = new int[cellCount];
+        rowMasks = new int[size];
+        columnMasks = new int[size];
+        blockMasks = new int[size];
+        trail = new Trail(cellCount);
+        editTrail = new Trail(16);
+        savedValues = new byte[cellCount];
+        cellCounts = new int[size + 1];
+        unitCounts = new byte[3 * size * (size + 1)];
+        strategy = SolveStrategy.BACKTRACKING;
+        clear();
+    } // end constructor
+    
+    
+    
+    
+    // Private method returning the block size of a grid supplied as argument
+    // to the constructor, checking that it is square with a supported size
+    private static int getBoxSize(int[][] newGrid)
+    {
+        int boxSize = (int) Math.round(Math.sqrt(newGrid.length));
+        if (boxSize < Topology.MIN_BOX_SIZE  ||  boxSize > Topology.MAX_BOX_SIZE
+            ||  boxSize * boxSize != newGrid.length)
+        {
+            throw new IllegalArgumentException("Grid with invalid dimensions provided to constructor");
+        }
+        return boxSize;
+    } // end getBoxSize
+    
+    // Private method to check that grid supplied as argument to constructor 
+    // has the correct number of rows and columns
+    private boolean isGridSizeValid(int[][] newGrid)
+    {
+        boolean result = true;
+        
+        if (newGrid.length != size)  // check number of rows
+        {
+            result = false;
+        }
+        else  // assert: newGrid.length == size
+        {
+            // Check length of each row
+            for (int i = 0; i < size; i++)
+            {
+                if (newGrid[i].length != size)
+                {
+                    result = false;
+                }  // end if
+            } // end for
+        } // end else
+
+        return result;
+    } // end isGridSizeValid
+    
+    
+    /**
+     * Returns the number of rows (and of columns, blocks, and values) in the grid.
+     * @return  4, 9, 16, or 25
+     */
+    public int getSize()
+    {
+        return size;
+    } // end getSize
+    
+    
+    /**
+     * Returns the number of rows (and columns) of cells in one block.
+     * @return  2, 3, 4, or 5
+     */
+    public int getBoxSize()
+    {
+        return boxSize;
+    } // end getBoxSize
+    
+    
+    /**
+     * Returns the layout of the grid's cells and units, shared by all grids of its size.
+     * @return  the grid's topology
+     */
+    public Topology getTopology()
+    {
+        return topology;
+    } // end getTopology
+    
+    
+    /**
+     * Returns the number of cells in the grid.
+     * @return  the square of the grid size
+     */
+    public int getCellCount()
+    {
+        return cellCount;
+    } // end getCellCount
+    
+    
+    /**
+     * Replaces the grid's values with a new puzzle of the same size. Blank
+     * cells should be represented by 0 values.
+     * @param newGrid  The N x N integer array containing the grid's initial values.
+     */
+    public void load(int[][] newGrid)
+    {
         if (!isGridSizeValid(newGrid))
         {
-            throw new IllegalArgumentException("Grid with invalid dimensions provided to constructor");
+            throw new IllegalArgumentException("Grid with invalid dimensions provided to constructor");
+        }
+        clear();
+        for (int i = 0; i < size; i++)  // iterate through rows
+        {
+            for (int j = 0; j < size; j++) // iterate through each column in a row
+            {
+                setInitialValue(i * size + j, newGrid[i][j]);
+            } // end inner for               
+        } // end outer for
+        setBlankCells();
+    } // end load
+    
+    
+    /**
+     * Replaces the grid's values with a new puzzle read from getCellCount()
+     * consecutive bytes (81 for a 9 x 9 grid) holding the cell values (0 for
+     * blank cells) in row-major order.
+     * No objects are allocated.
+     * @param puzzle  the array holding the puzzle
+     * @param offset  index of the puzzle's first cell in the array
+     */
+    public void load(byte[] puzzle, int offset)
+    {
+        clear();
+        for (int index = 0; index < cellCount; index++)
+        {
+            setInitialValue(index, puzzle[offset + index]);
+        } // end for
+        setBlankCells();
+    } // end load
+    
+    
+    /**
+     * Replaces the grid's values with a new puzzle read from one packed
+     * record of 4-bit cell values (see PackedPuzzleFile). Only 9 x 9 grids
+     * have a packed form. No objects are allocated.
+     * @param packed    the buffer holding the record
+     * @param position  index in the buffer of the record's first byte
+     */
+    public void loadPacked(ByteBuffer packed, int position)
+    {
+        if (size != 9)
+        {
+            throw new UnsupportedOperationException("Only 9 x 9 grids have a packed form");
+        }
+        clear();
+        for (int index = 0; index < cellCount; index++)
+        {
+            setInitialValue(index, PackedPuzzleFile.getCell(packed, position, index));
+        } // end for
+        setBlankCells();
+    } // end loadPacked
+    
+    
+    // Private method to reset every cell to blank and clear all masks
+    private void clear()
+    {
+        for (int index = 0; index < cellCount; index++)
+        {
+            values[index] = 0;
+        } // end for
+        for (int i = 0; i < size; i++)
+        {
+            rowMasks[i] = 0;
+            columnMasks[i] = 0;
+            blockMasks[i] = 0;
+        } // end for
+        for (int word = 0; word < fixedMask.length; word++)
+        {
+            fixedMask[word] = 0;
+        } // end for
+        numberOfBlankCells = 0;
+        trail.clear();
+        editTrail.clear();
+        recordingEdits = false;
+        nodeCount = 0;
+        duplicateGiven = false;
+        contradictionKind = null;
+        countsValid = false;
+    } // end clear
+    
+    
+    // Private method to store the initial value of one cell, marking non-blank
+    // cells as fixed and recording their values in the masks
+    private void setInitialValue(int index, int cellValue)
+    {
+        if (cellValue < 0  ||  cellValue > size)
+        {
+            throw new IllegalArgumentException("Cell value out of range (0 to " + size + "): " + cellValue);
+        }
+        values[index] = (byte) cellValue;
+        if (cellValue != 0)  // indicates non-blank cell in initial grid
+        {
+            fixedMask[index >>> 6] |= 1L << index;
+            
+            // Check the value against the givens already stored in its units
+            if (!duplicateGiven)
+            {
+                int bit = 1 << cellValue;
+                int unit = -1;
+                if ((rowMasks[rowOf[index]] & bit) != 0)
+                {
+                    unit = rowOf[index];
+                }
+                else if ((columnMasks[columnOf[index]] & bit) != 0)
+                {
+                    unit = size + columnOf[index];
+                }
+                else if ((blockMasks[blockOf[index]] & bit) != 0)
+                {
+                    unit = 2 * size + blockOf[index];
+                }
+                if (unit >= 0)
+                {
+                    duplicateGiven = true;
+                    recordContradiction(Contradiction.Kind.DUPLICATE_GIVEN, unit, -1, cellValue);
+                }
+            }
+            markValue(cellValue, index);
+        }
+    } // end setInitialValue
+    
+    
+    // Private method to store the details of a contradiction
+    private void recordContradiction(Contradiction.Kind kind, int unit, int cell, int value)
+    {
+        contradictionKind = kind;
+        contradictionUnit = unit;
+        contradictionCell = cell;
+        contradictionValue = value;
+    } // end recordContradiction
+    
+    
+    /**
+     * Returns the reason the puzzle was found to be unsolvable without
+     * searching by the last call to load, solveGrid, countSolutions, or
+     * findContradiction: two givens in the same unit with the same value, or
+     * (before any value was guessed) a blank cell with no candidates or a
+     * missing value with no possible cell in a unit.
+     * @return  the contradiction, or null if none was found
+     */
+    public Contradiction getContradiction()
+    {
+        Contradiction result = null;
+        if (contradictionKind != null)
+        {
+            result = toContradiction(contradictionKind, contradictionUnit,
+                                     contradictionCell, contradictionValue);
+        }
+        return result;
+    } // end getContradiction
+    
+    
+    // Private method to describe a contradiction in a unit (numbered as in
+    // units, with cell -1) or in a cell (with unit -1)
+    private Contradiction toContradiction(Contradiction.Kind kind, int unit, int cell, int value)
+    {
+        Contradiction result;
+        if (cell >= 0)
+        {
+            result = new Contradiction(kind, Contradiction.UnitType.CELL, cell, value, size);
+        }
+        else if (unit < size)
+        {
+            result = new Contradiction(kind, Contradiction.UnitType.ROW, unit, value, size);
+        }
+        else if (unit < 2 * size)
+        {
+            result = new Contradiction(kind, Contradiction.UnitType.COLUMN, unit - size, value, size);
+        }
+        else  // blocks are numbered from 1, as in Cell
+        {
+            result = new Contradiction(kind, Contradiction.UnitType.BLOCK, unit - 2 * size + 1, value, size);
+        }
+        return result;
+    } // end toContradiction
+    
+    
+    /**
+     * Checks the puzzle for contradictions that can be found without guessing:
+     * duplicate givens, then blank cells with no candidates or missing values
+     * with no possible cell after filling all naked and hidden singles. The
+     * grid's values, snapshots, and node count are not changed.
+     * @return  the first contradiction found, or null if there is none
+     */
+    public Contradiction findContradiction()
+    {
+        if (!duplicateGiven)
+        {
+            contradictionKind = null;
+            long savedNodeCount = nodeCount;
+            copyValues(savedValues, 0);
+            clearBlankValues();
+            propagate();  // records the contradiction, if any
+            clearBlankValues();
+            placeBlankValues(savedValues, 0);
+            nodeCount = savedNodeCount;
+        }
+        return getContradiction();
+    } // end findContradiction
+
+    
+    // Private method to create list of blank cells from initial grid
+    private void setBlankCells()
+    {
+        // Check each cell in grid in turn and store blank cells (cells with
+        // value = 0) in blankCells
+        for (int index = 0; index < cellCount; index++)
+        {
+            if (values[index] == 0)
+            {
+                blankCells[numberOfBlankCells] = index;
+                numberOfBlankCells++;
+            }
+        } // end for
+    }  // end setBlankCells
+    
+    /**
+     * Returns the initial number of blank cells in the grid to be solved.
+     * @return  the integer number of initial blank cells
+     */
+    @Override public int getNumberOfBlankCells()
+    {
+        return numberOfBlankCells;
+    } // end getNumberOfBlankCells
+    
+    
+    /**
+     * Returns the value of the cell at the given position.
+     * @param row     the cell's row (0 to size - 1)
+     * @param column  the cell's column (0 to size - 1)
+     * @return  the cell's value, or 0 if it is blank
+     */
+    public int getValue(int row, int column)
+    {
+        return values[row * size + column];
+    } // end getValue
+    
+    
+    /**
+     * Returns whether the value of the cell at the given position was set initially.
+     * @param row     the cell's row (0 to size - 1)
+     * @param column  the cell's column (0 to size - 1)
+     * @return  true if the cell's value is fixed
+     */
+    public boolean isFixed(int row, int column)
+    {
+        int index = row * size + column;
+        return (fixedMask[index >>> 6] & (1L << index)) != 0;
+    } // end isFixed
+    
+    
+    /**
+     * Changes the value of a non-fixed cell.
+     * @param row       the cell's row (0 to size - 1)
+     * @param column    the cell's column (0 to size - 1)
+     * @param newValue  the new value (0 to size, where 0 makes the cell blank)
+     */
+    public void setValue(int row, int column, int newValue)
+    {
+        if (isFixed(row, column))
+        {
+            throw new UnsupportedOperationException("Cannot change fixed cell value");
+        }
+        if (newValue < 0  ||  newValue > size)
+        {
+            throw new IllegalArgumentException("Cell value out of range (0 to " + size + "): " + newValue);
+        }
+        int index = row * size + column;
+        if (recordingEdits  &&  values[index] != newValue)
+        {
+            editTrail.record(index, values[index]);
+        }
+        changeValue(index, newValue);
+    } // end setValue
+    
+    
+    // Private method used by setValue and restore to change a cell's value,
+    // keeping the unit counts and masks up to date
+    private void changeValue(int index, int newValue)
+    {
+        ensureCounts();
+        int oldValue = values[index];
+        if (oldValue != newValue)
+        {
+            values[index] = (byte) newValue;
+            if (oldValue != 0)
+            {
+                filledCount--;
+                removeCount(rowOf[index], oldValue, index);
+                removeCount(size + columnOf[index], oldValue, index);
+                removeCount(2 * size + blockOf[index], oldValue, index);
+            }
+            if (newValue != 0)
+            {
+                filledCount++;
+                addCount(rowOf[index], newValue, index);
+                addCount(size + columnOf[index], newValue, index);
+                addCount(2 * size + blockOf[index], newValue, index);
+            }
+        }
+    } // end changeValue
+    
+    
+    /**
+     * Marks the current values so that later changes made by setValue can be
+     * undone by restore, for example to try a hint and then revert it. Only
+     * the changes are recorded, so taking a snapshot copies nothing, and
+     * snapshots may be nested. Loading, solving, or counting solutions
+     * discards every snapshot.
+     * @return  the snapshot, to be passed to restore
+     */
+    public int snapshot()
+    {
+        recordingEdits = true;
+        return editTrail.size();
+    } // end snapshot
+    
+    
+    /**
+     * Undoes every change made by setValue since the given snapshot was taken,
+     * newest first, in time proportional to the number of changes. Conflicts
+     * made or removed along the way are reported to the conflict listener.
+     * Snapshots taken after this one are no longer valid.
+     * @param snapshot  a value returned by snapshot since the last load or solve
+     */
+    public void restore(int snapshot)
+    {
+        if (snapshot < 0  ||  snapshot > editTrail.size()  ||  !recordingEdits)
+        {
+            throw new IllegalArgumentException("Snapshot is no longer valid: " + snapshot);
+        }
+        while (editTrail.size() > snapshot)
+        {
+            int change = editTrail.removeLast();
+            int changedCell = Trail.indexOf(change);
+            int oldValue = Trail.oldValueOf(change);
+            changeValue(changedCell, oldValue);
+        } // end while
+    } // end restore
+    
+    
+    /**
+     * Returns whether the value of the cell at the given position also
+     * appears in another cell of its row, column, or block.
+     * @param row     the cell's row (0 to size - 1)
+     * @param column  the cell's column (0 to size - 1)
+     * @return  true if the cell has a value that conflicts with a peer
+     */
+    public boolean isInConflict(int row, int column)
+    {
+        ensureCounts();
+        int index = row * size + column;
+        int cellValue = values[index];
+        return cellValue != 0
+               &&  (unitCounts[rowOf[index] * (size + 1) + cellValue] > 1
+                    ||  unitCounts[(size + columnOf[index]) * (size + 1) + cellValue] > 1
+                    ||  unitCounts[(2 * size + blockOf[index]) * (size + 1) + cellValue] > 1);
+    } // end isInConflict
+    
+    
+    /**
+     * Returns whether any value appears more than once in a row, column, or block.
+     * @return  true if the grid has a conflict
+     */
+    public boolean hasConflicts()
+    {
+        ensureCounts();
+        return conflictCount > 0;
+    } // end hasConflicts
+    
+    
+    /**
+     * Sets the listener told when setValue creates or removes a conflict.
+     * Conflicts already in the grid when the listener is set, or made by
+     * loading or solving, are not reported; use isInConflict to find them.
+     * @param listener  the listener, or null for none
+     */
+    public void setConflictListener(ConflictListener listener)
+    {
+        conflictListener = listener;
+    } // end setConflictListener
+    
+    
+    // Private method that rebuilds the unit counts from the values if loading
+    // or solving has changed the values since they were built
+    private void ensureCounts()
+    {
+        if (!countsValid)
+        {
+            for (int i = 0; i < unitCounts.length; i++)
+            {
+                unitCounts[i] = 0;
+            } // end for
+            filledCount = 0;
+            conflictCount = 0;
+            for (int index = 0; index < cellCount; index++)
+            {
+                int cellValue = values[index];
+                if (cellValue != 0)
+                {
+                    filledCount++;
+                    conflictCount += (++unitCounts[rowOf[index] * (size + 1) + cellValue] == 2) ? 1 : 0;
+                    conflictCount += (++unitCounts[(size + columnOf[index]) * (size + 1) + cellValue] == 2) ? 1 : 0;
+                    conflictCount += (++unitCounts[(2 * size + blockOf[index]) * (size + 1) + cellValue] == 2) ? 1 : 0;
+                }
+            } // end for
+            countsValid = true;
+        }
+    } // end ensureCounts
+    
+    
+    // Private method used by setValue to count one more of a value in a unit,
+    // marking the unit's mask and reporting a new conflict
+    private void addCount(int unit, int value, int index)
+    {
+        int count = ++unitCounts[unit * (size + 1) + value];
+        if (count == 1)
+        {
+            setUnitMask(unit, getUnitMask(unit) | (1 << value));
+        }
+        else if (count == 2)
+        {
+            conflictCount++;
+            if (conflictListener != null)
+            {
+                conflictListener.conflictFound(toContradiction(Contradiction.Kind.DUPLICATE_VALUE,
+                                                               unit, -1, value),
+                                                 rowOf[index], columnOf[index]);
+            }
+        }
+    } // end addCount
+    
+    
+    // Private method used by setValue to count one less of a value in a unit,
+    // clearing the unit's mask and reporting a removed conflict
+    private void removeCount(int unit, int value, int index)
+    {
+        int count = --unitCounts[unit * (size + 1) + value];
+        if (count == 0)
+        {
+            setUnitMask(unit, getUnitMask(unit) & ~(1 << value));
+        }
+        else if (count == 1)
+        {
+            conflictCount--;
+            if (conflictListener != null)
+            {
+                conflictListener.conflictResolved(toContradiction(Contradiction.Kind.DUPLICATE_VALUE,
+                                                                  unit, -1, value),
+                                                    rowOf[index], columnOf[index]);
+            }
+        }
+    } // end removeCount
+    
+    
+    /**
+     * Returns a Cell view of the cell at the given position. Reading or
+     * changing the view's value reads or changes this grid.
+     * @param row     the cell's row (0 to size - 1)
+     * @param column  the cell's column (0 to size - 1)
+     * @return  a Cell backed by this grid
+     */
+    public Cell getCell(int row, int column)
+    {
+        return new Cell(this, row, column, blockOf[row * size + column] + 1);
+    } // end getCell
+    
+    
+    /**
+     * Returns the strategy used by solveGrid().
+     * @return  the current solve strategy (BACKTRACKING by default)
+     */
+    public SolveStrategy getStrategy()
+    {
+        return strategy;
+    } // end getStrategy
+    
+    
+    /**
+     * Selects the strategy used by subsequent calls to solveGrid().
+     * @param newStrategy  the solve strategy to use
+     */
+    public void setStrategy(SolveStrategy newStrategy)
+    {
+        if (newStrategy == null)
+        {
+            throw new IllegalArgumentException("Solve strategy cannot be null");
+        }
+        strategy = newStrategy;
+    } // end setStrategy
+    
+    
+    /**
+     * Returns the number of search nodes (values guessed for a blank cell)
+     * explored by the most recent call to solveGrid(). Values filled in by
+     * propagation are deductions, not guesses, and are not counted.
+     * @return  the node count of the last solve
+     */
+    public long getNodeCount()
+    {
+        return nodeCount;
+    } // end getNodeCount
+    
+    
+    /**
+     * Turns the collection of search statistics (backtracks, search depth,
+     * and elapsed time) on or off. It is off by default; when off, the search
+     * does no extra work. The node count is always kept.
+     * @param enabled  true to collect statistics for subsequent solves
+     */
+    public void setStatisticsEnabled(boolean enabled)
+    {
+        statisticsEnabled = enabled;
+        elapsedNanos = 0;
+    } // end setStatisticsEnabled
+    
+    
+    /**
+     * Returns whether search statistics are being collected.
+     * @return  true if statistics are enabled
+     */
+    public boolean isStatisticsEnabled()
+    {
+        return statisticsEnabled;
+    } // end isStatisticsEnabled
+    
+    
+    /**
+     * Copies the statistics of the most recent solve or count into the given
+     * object, so it can be reused without allocating. If statistics are not
+     * enabled, only the node count and the result are filled in.
+     * @param destination  the object to fill in
+     */
+    public void getStatistics(SolveStatistics destination)
+    {
+        if (statisticsEnabled)
+        {
+            destination.set(nodeCount, backtrackCount, maxSearchDepth, elapsedNanos, lastSolved);
+        }
+        else
+        {
+            destination.set(nodeCount, 0, 0, 0, lastSolved);
+        }
+    } // end getStatistics
+    
+    
+    /**
+     * Returns a copy of the values currently set for the grid cells.
+     * @return  a new N x N integer array of cell values (0 for blank cells)
+     */
+    @Override public int[][] getValues()
+    {
+        int[][] result = new int[size][size];
+        for (int index = 0; index < cellCount; index++)
+        {
+            result[rowOf[index]][columnOf[index]] = values[index];
+        } // end for
+        return result;
+    } // end getValues
+    
+    
+    /**
+     * Copies the values currently set for the grid cells into getCellCount()
+     * consecutive bytes in row-major order. No objects are allocated.
+     * @param destination  the array to copy the values into
+     * @param offset       index in the array for the first cell's value
+     */
+    public void copyValues(byte[] destination, int offset)
+    {
+        System.arraycopy(values, 0, destination, offset, cellCount);
+    } // end copyValues
+    
+    
+    // Package-private method used by ParallelSearch to copy the initial
+    // (fixed) values into getCellCount() consecutive bytes, with 0 for blank cells
+    void copyGivens(byte[] destination, int offset)
+    {
+        for (int index = 0; index < cellCount; index++)
+        {
+            boolean fixed = (fixedMask[index >>> 6] & (1L << index)) != 0;
+            destination[offset + index] = fixed ? values[index] : 0;
+        } // end for
+    } // end copyGivens
+    
+    
+    // Package-private method used by ParallelSearch to fill the blank cells
+    // with the values of a solution found by other grids (cells with the
+    // value 0 in the solution are left blank)
+    void fillBlankCells(byte[] solution, int offset)
+    {
+        clearBlankCells();
+        placeBlankValues(solution, offset);
+    } // end fillBlankCells
+    
+    
+    // Private method placing the non-zero values of the blank cells from the
+    // given array into the cleared blank cells
+    private void placeBlankValues(byte[] solution, int offset)
+    {
+        for (int listIndex = 0; listIndex < numberOfBlankCells; listIndex++)
+        {
+            int blankCell = blankCells[listIndex];
+            if (solution[offset + blankCell] != 0)
+            {
+                placeValue(blankCell, solution[offset + blankCell]);
+            }
+        } // end for
+    } // end placeBlankValues
+    
+    
+    /**
+     * Attempts to solve the grid and copies the resulting values into
+     * getCellCount() consecutive bytes of the given buffer, so a stream of puzzles can be
+     * solved without allocating. The buffer is written even if the puzzle
+     * cannot be solved.
+     * @param destination  the array to copy the values into
+     * @param offset       index in the array for the first cell's value
+     * @return  True if the puzzle is successfully solved; false otherwise
+     */
+    public boolean solveInto(byte[] destination, int offset)
+    {
+        boolean solved = solveGrid();
+        copyValues(destination, offset);
+        return solved;
+    } // end solveInto
+    
+    
+    /**
+     *  Displays the values of all cells in the grid in an N x N format.
+     */
+    public void displayGrid()
+    {
+        // Display the grid cell values
+        for (int i = 0; i < size; i++)
+        {
+            for (int j = 0; j < size; j++)
+            {
+                System.out.print((size > 9 && values[i * size + j] < 10 ? " " : "")
+                                 + values[i * size + j] + " ");
+            } // end inner for
+            System.out.println();
+        } // end outer for
+    } // end displayGrid
+
+    
+    /**
+     * Attempts to solve the grid based on the initial values provided,
+     * using the currently selected strategy.
+     * @return  True if the puzzle is successfully solved; false otherwise
+     *          (i.e., if puzzle cannot be solved based on initial values provided)
+     */
+    @Override public boolean solveGrid()
+    {
+        return runSearch(1);
+    } // end solveGrid
+    
+    
+    /**
+     * Attempts to solve the grid with the currently selected strategy, giving
+     * up once the given number of values has been guessed.
+     * @param nodeBudget  the most values the search may guess
+     * @return  SOLVED, UNSOLVABLE, or BUDGET_EXCEEDED if the budget ran out
+     */
+    public SolveResult solveGrid(long nodeBudget)
+    {
+        return solveGrid(nodeBudget, Long.MAX_VALUE, null);
+    } // end solveGrid
+    
+    
+    /**
+     * Attempts to solve the grid with the currently selected strategy until
+     * it is solved, shown to be unsolvable, or the given token is cancelled.
+     * @param token  the token another thread can use to stop the solve
+     * @return  SOLVED, UNSOLVABLE, or BUDGET_EXCEEDED if the solve was cancelled
+     */
+    public SolveResult solveGrid(CancellationToken token)
+    {
+        return solveGrid(Long.MAX_VALUE, Long.MAX_VALUE, token);
+    } // end solveGrid
+    
+    
+    /**
+     * Attempts to solve the grid with the currently selected strategy, within
+     * a node budget and a time limit, and stopping early if the given token is
+     * cancelled. The time limit and token are checked every few hundred search
+     * steps, so the solve may run slightly past its limit. If the solve is
+     * stopped, the grid is left holding only its givens.
+     * @param nodeBudget    the most values the search may guess (Long.MAX_VALUE for no limit)
+     * @param timeoutNanos  the most time the search may take, in nanoseconds
+     *                      (Long.MAX_VALUE for no limit)
+     * @param token         the token another thread can use to stop the solve,
+     *                      or null if it cannot be cancelled
+     * @return  SOLVED, UNSOLVABLE, or BUDGET_EXCEEDED if a limit was reached
+     *          or the solve was cancelled
+     */
+    public SolveResult solveGrid(long nodeBudget, long timeoutNanos, CancellationToken token)
+    {
+        if (nodeBudget < 0  ||  timeoutNanos < 0)
+        {
+            throw new IllegalArgumentException("Node budget and timeout must not be negative");
+        }
+        
+        bounded = true;
+        this.nodeBudget = nodeBudget;
+        this.timeoutNanos = timeoutNanos;
+        searchStartTime = System.nanoTime();
+        cancellation = token;
+        stepsUntilLimitCheck = 0;  // check the token before the first step
+        limitReached = false;
+        
+        SolveResult result;
+        try
+        {
+            boolean solved = runSearch(1);
+            if (limitReached)
+            {
+                clearBlankCells();
+                lastSolved = false;
+                result = SolveResult.BUDGET_EXCEEDED;
+            }
+            else if (solved)
+            {
+                result = SolveResult.SOLVED;
+            }
+            else
+            {
+                result = SolveResult.UNSOLVABLE;
+            }
+        }
+        finally
+        {
+            bounded = false;
+            cancellation = null;
+        }
+        return result;
+    } // end solveGrid
+    
+    
+    /**
+     * Counts the solutions of the puzzle with the currently selected strategy,
+     * stopping as soon as the given limit is reached. The grid's values are
+     * not changed.
+     * @param limit  the maximum number of solutions to count (at least 1)
+     * @return  the number of solutions found, between 0 and limit
+     */
+    @Override public int countSolutions(int limit)
+    {
+        if (limit < 1)
+        {
+            throw new IllegalArgumentException("Solution limit must be at least 1");
+        }
+        copyValues(savedValues, 0);
+        runSearch(limit);
+        fillBlankCells(savedValues, 0);
+        return solutionCount;
+    } // end countSolutions
+    
+    
+    /**
+     * Determines whether the puzzle has exactly one solution. The search stops
+     * as soon as a second solution is found. The grid's values are not changed.
+     * @return  True if the puzzle has a unique solution, False otherwise.
+     */
+    @Override public boolean hasUniqueSolution()
+    {
+        return countSolutions(2) == 1;
+    } // end hasUniqueSolution
+    
+    
+    /**
+     * Determines whether the puzzle has a solution in which the given blank
+     * cell holds a value other than the given one. If the puzzle with that
+     * value filled in has a unique solution, this tells whether the puzzle
+     * without it still has one, and stops at the first other solution instead
+     * of exhausting the search as counting solutions would. The search
+     * branches as the PROPAGATION strategy does, or as MINIMUM_REMAINING_VALUES
+     * does for the other strategies. The grid's values are not changed.
+     * @param row     the cell's row (0 to size - 1)
+     * @param column  the cell's column (0 to size - 1)
+     * @param value   the value the solution must not have in the cell
+     * @return  True if such a solution exists, False otherwise.
+     */
+    public boolean hasSolutionWithout(int row, int column, int value)
+    {
+        int index = row * size + column;
+        if (isFixed(row, column))
+        {
+            throw new IllegalArgumentException("Cell (" + row + "," + column + ") is not blank");
+        }
+        copyValues(savedValues, 0);
+        nodeCount = 0;
+        solutionLimit = 1;
+        solutionCount = 0;
+        clearBlankCells();
+        
+        boolean found = false;
+        boolean withPropagation = strategy == SolveStrategy.PROPAGATION;
+        if (!duplicateGiven  &&  (!withPropagation  ||  propagate()))
+        {
+            if (values[index] != 0)  // propagation filled the cell
+            {
+                found = values[index] != value  &&  search(withPropagation);
+            }
+            else
+            {
+                int candidates = getCandidates(index) & ~(1 << value);
+                while (!found  &&  candidates != 0)
+                {
+                    int testValue = Integer.numberOfTrailingZeros(candidates);
+                    candidates &= candidates - 1;
+                    found = guess(index, testValue, withPropagation);
+                } // end while
+            }
+        }
+        fillBlankCells(savedValues, 0);
+        return found;
+    } // end hasSolutionWithout
+    
+    
+    // Private method that clears the blank cells and runs the selected strategy
+    // until the given number of solutions is found, the search space is
+    // exhausted, or the search control stops it. Returns true if the search
+    // stopped on a solution, in which case the grid holds that solution.
+    private boolean runSearch(int limit)
+    {
+        long startTime = statisticsEnabled ? System.nanoTime() : 0;
+        backtrackCount = 0;
+        searchDepth = 0;
+        maxSearchDepth = 0;
+        
+        boolean solved = runStrategy(limit);
+        
+        if (statisticsEnabled)
+        {
+            elapsedNanos = System.nanoTime() - startTime;
+        }
+        lastSolved = solved;
+        return solved;
+    } // end runSearch
+    
+    
+    // Private method used by runSearch to check for contradictions and run
+    // the selected strategy
+    private boolean runStrategy(int limit)
+    {
+        nodeCount = 0;
+        solutionLimit = limit;
+        solutionCount = 0;
+        clearBlankCells();
+        
+        // Reject puzzles with conflicting givens, or with a blank cell or
+        // missing value that has no possibilities left, before searching.
+        // The PROPAGATION strategy finds the latter during its first propagation.
+        if (duplicateGiven)
+        {
+            return false;
+        }
+        contradictionKind = null;
+        if (strategy != SolveStrategy.PROPAGATION  &&  !checkCandidates())
+        {
+            return false;
+        }
+        
+        boolean solved;
+        if (strategy == SolveStrategy.BACKTRACKING)
+        {
+            solved = solveByBacktracking();
+        }
+        else
+        {
+            solved = search(strategy == SolveStrategy.PROPAGATION);
+        }
+        return solved;
+    } // end runStrategy
+    
+    
+    // Private method that checks, without placing any values, that every blank
+    // cell has a candidate and every value missing from a unit has a cell it
+    // can go in. Records the contradiction and returns false if not.
+    private boolean checkCandidates()
+    {
+        boolean result = true;
+        for (int listIndex = 0; result  &&  listIndex < numberOfBlankCells; listIndex++)
+        {
+            int blankCell = blankCells[listIndex];
+            if (values[blankCell] == 0  &&  getCandidates(blankCell) == 0)
+            {
+                recordContradiction(Contradiction.Kind.NO_CANDIDATES, -1, blankCell, 0);
+                result = false;
+            }
+        } // end for
+        for (int unit = 0; result  &&  unit < 3 * size; unit++)
+        {
+            int possibleValues = 0;
+            for (int k = unit * size; k < unit * size + size; k++)
+            {
+                if (values[units[k]] == 0)
+                {
+                    possibleValues |= getCandidates(units[k]);
+                }
+            } // end for
+            int unplaceable = ~getUnitMask(unit) & ~possibleValues & allValues;
+            if (unplaceable != 0)
+            {
+                recordContradiction(Contradiction.Kind.VALUE_HAS_NO_CELL, unit, -1,
+                                    Integer.numberOfTrailingZeros(unplaceable));
+                result = false;
+            }
+        } // end for
+        return result;
+    } // end checkCandidates
+    
+    
+    // Private method to clear any values left in blank cells by an earlier
+    // solve or by setValue, discarding every snapshot
+    private void clearBlankCells()
+    {
+        clearBlankValues();
+        editTrail.clear();
+        recordingEdits = false;
+    } // end clearBlankCells
+    
+    
+    // Private method to clear the values of the blank cells, keeping the
+    // snapshots. The masks are rebuilt from the givens, since a value set by
+    // setValue may repeat a given in the same unit.
+    private void clearBlankValues()
+    {
+        boolean cleared = false;
+        for (int listIndex = 0; listIndex < numberOfBlankCells; listIndex++)
+        {
+            int blankCell = blankCells[listIndex];
+            if (values[blankCell] != 0)
+            {
+                values[blankCell] = 0;
+                cleared = true;
+            }
+        } // end for
+        if (cleared)
+        {
+            rebuildMasks();
+        }
+        trail.clear();
+        countsValid = false;
+    } // end clearBlankValues
+    
+    
+    // Private method to rebuild the row, column, and block masks from the values
+    private void rebuildMasks()
+    {
+        for (int i = 0; i < size; i++)
+        {
+            rowMasks[i] = 0;
+            columnMasks[i] = 0;
+            blockMasks[i] = 0;
+        } // end for
+        for (int index = 0; index < cellCount; index++)
+        {
+            if (values[index] != 0)
+            {
+                markValue(values[index], index);
+            }
+        } // end for
+    } // end rebuildMasks
+    
+    
+    // Private method that solves the grid by chronological backtracking
+    // over blankCells in row-major order.
+    private boolean solveByBacktracking()
+    {
+        boolean solved;
+        
+        // Declare variables
+        int currentBlankCell;
+        int cellValue;
+        int listIndex;
+        int testValue;
+        
+        // Start at first cell in blankCells
+        listIndex = 0;
+        boolean searching = true;
+        
+        while (searching)
+        {
+            // Iterate through all cells in blankCells and set their values
+            // If the initial grid has no blank cells, this while loop is skipped.
+            while ( listIndex >= 0  &&  listIndex < numberOfBlankCells  &&  !isSearchStopped() )
+            {           
+                // Retrieve information for current blank cell
+                currentBlankCell = blankCells[listIndex];
+                cellValue = values[currentBlankCell];
+                
+                // If current cell is blank (value = 0), testValue is set = 1;
+                // If current cell is not blank, we have returned to it because
+                // no valid values were found for a later blank cell.  
+                // In this case, its current value is cleared from the masks and
+                // testValue is set to the cell's current value + 1.
+                if (cellValue != 0)
+                {
+                    unmarkValue(cellValue, currentBlankCell);
+                }
+                // Find the smallest valid value for the current cell above
+                // its current value. The candidate mask combines the row,
+                // column, and block masks, so every value is checked at once.
+                int untried = getCandidates(currentBlankCell) & (-2 << cellValue);
+                testValue = (untried != 0) ? Integer.numberOfTrailingZeros(untried) : 0;
+            
+                if (testValue == 0)  // all values checked without finding a valid value
+                {
+                    // Set current cell value to 0 and go back to previous blank cell
+                    values[currentBlankCell] = 0;
+                    listIndex--;
+                    if (statisticsEnabled)
+                    {
+                        backtrackCount++;
+                    }
+                }
+                else if (isBudgetSpent())  // a valid value was found but may not be guessed
+                {
+                    values[currentBlankCell] = 0;
+                }
+                else  // a valid value was found for the current cell
+                {
+                    values[currentBlankCell] = (byte) testValue;
+                    markValue(testValue, currentBlankCell);
+                    nodeCount++;
+                    listIndex++;  // increment to move to next blank cell in list
+                    if (statisticsEnabled  &&  listIndex > maxSearchDepth)
+                    {
+                        maxSearchDepth = listIndex;
+                    }
+                }
+     
+            } // end inner while (exited if listIndex < 0 or listIndex = numberOfBlankCells)
+            
+            if (listIndex == numberOfBlankCells  &&  !recordSolution())
+            {
+                // More solutions are wanted: go back to the last blank cell
+                // and continue with its next value
+                listIndex--;
+            }
+            else  // stopped on a solution, or search space exhausted, or stopped
+            {
+                searching = false;
+            }
+        } // end outer while
+        
+        if (listIndex == numberOfBlankCells)
+        {
+            solved = true;   // valid values were set for all cells in blankCells
+        }                    // and the grid as a whole is valid
+        else  // search space exhausted, or stopped by the search control
+        {
+            solved = false;
+        }  
+        return solved;
+    } // end solveByBacktracking
+    
+    
+    // Private recursive method used by runSearch for the MINIMUM_REMAINING_VALUES
+    // and PROPAGATION strategies. Optionally fills in all singles, then guesses
+    // each candidate value of the most constrained blank cell in turn. With
+    // propagation, if some value has fewer possible cells in a unit than that
+    // cell has candidates, it guesses each of those cells for the value instead.
+    // Returns true if the search should stop, with the grid holding the last
+    // solution found (or, if the search control stopped it, a partial grid);
+    // otherwise restores every cell it filled and returns false.
+    private boolean search(boolean withPropagation)
+    {
+        if (isSearchStopped())
+        {
+            return true;
+        }
+        
+        int checkpoint = trail.size();
+        if (withPropagation  &&  !propagate())
+        {
+            undoTrail(checkpoint);
+            return false;
         }
         
-        // Initialize new grid of Cells from grid of integers
-        for (int i = 0; i < 9; i++)  // iterate through rows
+        int branchCell = selectBranchCell();
+        if (branchCell < 0)  // every cell has a value
         {
-            for (int j = 0; j < 9; j++) // iterate through each column in a row
+            if (recordSolution())
             {
-                boolean hasValue = false;
-                int cellValue = newGrid[i][j];
-                if (cellValue != 0)
-                    hasValue = true;  // indicates non-blank cell in initial grid
-                    
-                // Determine block for the current cell row and column
-                int block = 0;
-                if (i <= 2)  // blocks 1, 2, or 3
+                return true;
+            }
+            undoTrail(checkpoint);
+            return false;
+        }
+        
+        int candidates = getCandidates(branchCell);
+        int branchChoice = -1;
+        int candidateCount = Integer.bitCount(candidates);
+        if (withPropagation  &&  candidateCount > 2)
+        {
+            branchChoice = selectBranchValue(candidateCount);
+        }
+        
+        if (branchChoice < 0)
+        {
+            // Try each candidate value for the branch cell
+            while (candidates != 0)
+            {
+                int testValue = Integer.numberOfTrailingZeros(candidates);
+                candidates &= candidates - 1;
+                if (guess(branchCell, testValue, withPropagation))
                 {
-                    if (j <= 2)
-                        block = 1;
-                    else if (j >= 3 && j <= 5)
-                        block = 2;
-                    else // j >= 6
-                        block = 3;
+                    return true;
                 }
-                else if (i >= 3 && i <= 5)  // blocks 4, 5, or 6
-                {
-                    if (j <= 2)
-                        block = 4;
-                    else if (j >= 3 && j <= 5)
-                        block = 5;
-                    else // j >= 6
-                        block = 6;                
-                } 
-                else // i >= 6; blocks 7, 8, or 9
+            } // end while
+        }
+        else
+        {
+            // Try each possible cell of the unit for the branch value
+            int branchUnit = branchChoice >>> 5;
+            int branchValue = branchChoice & 31;
+            for (int k = branchUnit * size; k < branchUnit * size + size; k++)
+            {
+                if (values[units[k]] == 0  &&  isCandidate(units[k], branchValue)
+                    &&  guess(units[k], branchValue, withPropagation))
                 {
-                    if (j <= 2)
-                        block = 7;
-                    else if (j >= 3 && j <= 5)
-                        block = 8;
-                    else // j >= 6
-                        block = 9;                              
+                    return true;
                 }
-                    
-                // Construct new Cell object with proper values and place in Cell grid
-                Cell newCell = new Cell(cellValue, hasValue, i, j, block);
-                grid[i][j] = newCell;
-            } // end inner for               
-        } // end outer for
-   
-        // Initialize blankCellList
-        blankCellList = new ArrayList<>();
-        setBlankCellList();
-    } // end constructor
+            } // end for
+        }
+        
+        undoTrail(checkpoint);
+        return false;
+    } // end search
     
-    // Private method to check that grid supplied as argument to constructor 
-    // has the correct number of rows and columns
-    private boolean isGridSizeValid(int[][] newGrid)
+    
+    // Private method used by search to place a guessed value and search on
+    // from there. Returns true if the search should stop; otherwise undoes
+    // the guess and everything filled after it, and returns false.
+    private boolean guess(int index, int value, boolean withPropagation)
     {
-        boolean result = true;
-        
-        if (newGrid.length != 9)  // check number of rows
+        if (isBudgetSpent())
         {
-            result = false;
+            return true;
         }
-        else  // assert: newGrid.length == 9  (there are 9 rows)
+        nodeCount++;
+        if (statisticsEnabled)
         {
-            // Check length of each row
-            for (int i = 0; i < 9; i++)
+            searchDepth++;
+            if (searchDepth > maxSearchDepth)
             {
-                if (newGrid[i].length != 9)
-                {
-                    result = false;
-                }  // end if
-            } // end for
-        } // end else
-
-        return result;
-    } // end isGridSizeValid
-
+                maxSearchDepth = searchDepth;
+            }
+        }
+        int guessCheckpoint = trail.size();
+        placeValue(index, value);
+        if (search(withPropagation))
+        {
+            return true;
+        }
+        undoTrail(guessCheckpoint);
+        if (statisticsEnabled)
+        {
+            searchDepth--;
+            backtrackCount++;
+        }
+        return false;
+    } // end guess
     
-    // Private method to create list of blank cells from initial grid
-    private void setBlankCellList()
+    
+    // Private method that finds the value missing from a unit with the fewest
+    // possible cells, if that is fewer than the given number. After propagation
+    // every missing value has at least two cells, so the scan stops at two.
+    // Returns unit * 32 + value, or -1 if no value has fewer cells.
+    private int selectBranchValue(int cellLimit)
     {
-        // Check each cell in grid in turn and store blank cells (cells with
-        // value = 0) in blankCellList
-        for (int i = 0; i < 9; i++)  // loop through each row
+        int bestChoice = -1;
+        int bestCount = cellLimit;
+        for (int unit = 0; unit < 3 * size  &&  bestCount > 2; unit++)
         {
-            for (int j = 0; j < 9; j++)  // loop through each element in a row
+            int missingValues = ~getUnitMask(unit) & allValues;
+            int remaining = missingValues;
+            while (remaining != 0)
             {
-                if (grid[i][j].getValue() == 0)
+                cellCounts[Integer.numberOfTrailingZeros(remaining)] = 0;
+                remaining &= remaining - 1;
+            } // end while
+            for (int k = unit * size; k < unit * size + size; k++)
+            {
+                if (values[units[k]] == 0)
                 {
-                    blankCellList.add(grid[i][j]);
+                    int candidates = getCandidates(units[k]);
+                    while (candidates != 0)
+                    {
+                        cellCounts[Integer.numberOfTrailingZeros(candidates)]++;
+                        candidates &= candidates - 1;
+                    } // end while
                 }
-            } // end inner for
-        } // end outer for            
-    }  // end setBlankCellList
+            } // end for
+            while (missingValues != 0)
+            {
+                int value = Integer.numberOfTrailingZeros(missingValues);
+                missingValues &= missingValues - 1;
+                if (cellCounts[value] < bestCount)
+                {
+                    bestCount = cellCounts[value];
+                    bestChoice = unit * 32 + value;
+                }
+            } // end while
+        } // end for
+        return bestChoice;
+    } // end selectBranchValue
     
-    /**
-     * Returns the initial number of blank cells in the grid to be solved.
-     * @return  the integer number of initial blank cells
-     */
-    public int getNumberOfBlankCells()
+    
+    // Private method called when every cell has a value. Counts the grid as a
+    // solution if it is valid (givens may conflict with each other), and
+    // reports it to the search control if there is one. Returns true if the
+    // search should stop here.
+    private boolean recordSolution()
     {
-        return blankCellList.size();
-    } // end getNumberOfBlankCells
+        boolean stop = false;
+        if (isEveryCellValid())
+        {
+            solutionCount++;
+            if (control != null)
+            {
+                stop = control.recordSolution(values);
+            }
+            else
+            {
+                stop = solutionCount >= solutionLimit;
+            }
+        }
+        return stop;
+    } // end recordSolution
     
     
-    /**
-     *  Displays the values of all cells in the grid in a 9 x 9 format.
-     */
-    public void displayGrid()
+    // Private method returning true if another thread has stopped the search,
+    // or a bounded solve has reached one of its limits
+    private boolean isSearchStopped()
     {
-        // Display the grid cell values
-        for (int i = 0; i < 9; i++)
+        return (control != null  &&  control.isStopped())  ||  (bounded  &&  isLimitReached());
+    } // end isSearchStopped
+    
+    
+    // Private method called before each value is guessed. Returns true, and
+    // stops a bounded solve, if its node budget has no guess left. A solve
+    // that needs no more guesses than its budget therefore always completes.
+    private boolean isBudgetSpent()
+    {
+        boolean spent = bounded  &&  nodeCount >= nodeBudget;
+        if (spent)
         {
-            for (int j = 0; j < 9; j++)
-            {
-                System.out.print(grid[i][j].getValue() + " ");
-            } // end inner for
-            System.out.println();
-        } // end outer for        
-
-        // *** For development only; delete in final version *** //
-        // Display the row and column values for every cell
-        for (int i = 0; i < 9; i++)
+            limitReached = true;
+        }
+        return spent;
+    } // end isBudgetSpent
+    
+    
+    // Private method used by isSearchStopped during a bounded solve. The clock
+    // and the cancellation token are checked every LIMIT_CHECK_INTERVAL steps,
+    // to keep the check cheap; the node budget is checked by isBudgetSpent.
+    private boolean isLimitReached()
+    {
+        if (!limitReached)
         {
-            for (int j = 0; j < 9; j++)
+            if (--stepsUntilLimitCheck <= 0)
             {
-                System.out.print("(" + grid[i][j].getRow() + ","
-                                     + grid[i][j].getColumn() + ") ");
-            } // end inner for
-            System.out.println();
-        } // end outer for           
-
-        // *** For development only; delete in final version *** //
-        // Display the 'fixed' state and block value for every cell
-        for (int i = 0; i < 9; i++)
+                stepsUntilLimitCheck = LIMIT_CHECK_INTERVAL;
+                limitReached = (cancellation != null  &&  cancellation.isCancelled())
+                               ||  System.nanoTime() - searchStartTime >= timeoutNanos;
+            }
+        }
+        return limitReached;
+    } // end isLimitReached
+    
+    
+    // Package-private method used by ParallelSearch to attach a search control
+    // shared by all the grids searching parts of the same puzzle (null to detach)
+    void setSearchControl(SearchControl newControl)
+    {
+        control = newControl;
+    } // end setSearchControl
+    
+    
+    // Package-private method used by ParallelSearch to split the search tree.
+    // Clears the blank cells, fills singles if the strategy propagates, and
+    // returns the cell the search would branch on: -1 if the grid is complete,
+    // or -2 if a contradiction was found.
+    int prepareBranch()
+    {
+        clearBlankCells();
+        int branchCell;
+        if (strategy == SolveStrategy.PROPAGATION  &&  !propagate())
         {
-            for (int j = 0; j < 9; j++)
-            {
-                System.out.print("(" + grid[i][j].getFixed() + ","
-                                     + grid[i][j].getBlock() + ") ");
-            } // end inner for
-            System.out.println();
-        } // end outer for              
-           
-    } // end displayGrid
-
+            branchCell = -2;
+        }
+        else
+        {
+            branchCell = selectBranchCell();
+        }
+        return branchCell;
+    } // end prepareBranch
     
-    /**
-     * Attempts to solve the grid based on the initial values provided.
-     * @return  True if the puzzle is successfully solved; false otherwise
-     *          (i.e., if puzzle cannot be solved based on initial values provided)
-     */
-    public boolean solveGrid()
+    
+    // Private method that picks the blank cell with the fewest candidates
+    // (minimum remaining values). Ties are broken by degree: the cell with the
+    // most blank peers is preferred, since filling it constrains the most
+    // other cells. Returns -1 if there are no blank cells left.
+    private int selectBranchCell()
     {
-        boolean solved;
-        
-        // Declare variables
-        Cell currentBlankCell;
-        int cellValue;
-        int listIndex;
-        int testValue;
+        int bestCell = -1;
+        int bestCount = size + 1;
+        int bestDegree = -1;
         
-        // Start at first Cell in blankCellList
-        listIndex = 0;
-       
-        // Iterate through all cells in blankCellList and set their values
-        // If the initial grid has no blank cells, this while loop is skipped.
-        while ( listIndex >= 0  &&  listIndex < blankCellList.size() )
-        {           
-            // Retrieve information for current blank cell
-            currentBlankCell = blankCellList.get(listIndex);
-            cellValue = currentBlankCell.getValue();
-            
-            // If current cell is blank (value = 0), testValue is set = 1;
-            // If current cell is not blank, we have returned to it because
-            // no valid values were found for a later blank cell.  
-            // In this case, testValue is set to the cell's current value + 1.
-            testValue = cellValue + 1;            
-
-            // Attempt to find a valid value for the current cell, 
-            // starting with testValue.
-            boolean valueSet = false;  // flag used in do-while loop
-            do
+        int listIndex = 0;
+        while (listIndex < numberOfBlankCells  &&  bestCount > 1)
+        {
+            int blankCell = blankCells[listIndex];
+            if (values[blankCell] == 0)
             {
-                currentBlankCell.setValue(testValue);
-                
-                // The isValidCell method checks if currentBlankCell's value 
-                // follows the sudoku rules for row, column, and block.
-                if (isValidCell(currentBlankCell))
+                int count = Integer.bitCount(getCandidates(blankCell));
+                if (count < bestCount)
                 {
-                    valueSet = true;
+                    bestCell = blankCell;
+                    bestCount = count;
+                    bestDegree = -1;  // only computed when needed to break a tie
                 }
-                else  // value conflicts with another cell
+                else if (count == bestCount)
                 {
-                    testValue++;  // increment to check next possible value
+                    if (bestDegree < 0)
+                    {
+                        bestDegree = getDegree(bestCell);
+                    }
+                    int degree = getDegree(blankCell);
+                    if (degree > bestDegree)
+                    {
+                        bestCell = blankCell;
+                        bestDegree = degree;
+                    }
                 }
-
-            } while (valueSet == false  &&  testValue <= 9);
+            }
+            listIndex++;
+        } // end while (exited early once a cell with 0 or 1 candidates is found)
         
-            // do-while loop is exited when either a valid value is found, or all
-            // possible values (1 to 9) are checked without finding a valid value
-            if (testValue == 10)  // all values checked without finding a valid value
+        return bestCell;
+    } // end selectBranchCell
+    
+    
+    // Private method returning the number of blank peers of a cell
+    private int getDegree(int index)
+    {
+        int degree = 0;
+        for (int k = index * peerCount; k < index * peerCount + peerCount; k++)
+        {
+            if (values[peers[k]] == 0)
             {
-                // Set current cell value to 0 and go back to previous blank cell
-                currentBlankCell.setValue(0);
-                listIndex--;
+                degree++;
             }
-            else  // a valid value was found and set for the current cell
+        } // end for
+        return degree;
+    } // end getDegree
+    
+    
+    // Private method that repeatedly fills naked singles (blank cells with only
+    // one candidate) and hidden singles (values with only one possible cell in a
+    // row, column, or block) until none remain. Returns false if a contradiction
+    // is found: a blank cell with no candidates, or a unit value with no cell.
+    private boolean propagate()
+    {
+        boolean changed = true;
+        while (changed)
+        {
+            changed = false;
+            
+            // Naked singles
+            for (int listIndex = 0; listIndex < numberOfBlankCells; listIndex++)
             {
-                listIndex++;  // increment to move to next blank cell in list
-            }
- 
-        } // end outer while (exited if listIndex < 0 or listIndex = blankCellList.size())
+                int blankCell = blankCells[listIndex];
+                if (values[blankCell] == 0)
+                {
+                    int candidates = getCandidates(blankCell);
+                    if (candidates == 0)
+                    {
+                        if (nodeCount == 0)  // only report contradictions found before guessing
+                        {
+                            recordContradiction(Contradiction.Kind.NO_CANDIDATES, -1, blankCell, 0);
+                        }
+                        return false;
+                    }
+                    if ((candidates & (candidates - 1)) == 0)  // exactly one bit set
+                    {
+                        placeValue(blankCell, Integer.numberOfTrailingZeros(candidates));
+                        changed = true;
+                    }
+                }
+            } // end for
+            
+            // Hidden singles
+            for (int unit = 0; unit < 3 * size; unit++)
+            {
+                // Find the values that can go in at least one blank cell of
+                // the unit, and those that can go in more than one
+                int atLeastOnce = 0;
+                int moreThanOnce = 0;
+                for (int k = unit * size; k < unit * size + size; k++)
+                {
+                    if (values[units[k]] == 0)
+                    {
+                        int candidates = getCandidates(units[k]);
+                        moreThanOnce |= atLeastOnce & candidates;
+                        atLeastOnce |= candidates;
+                    }
+                } // end for
+                
+                int missingValues = ~getUnitMask(unit) & allValues;
+                if ((atLeastOnce & missingValues) != missingValues)
+                {
+                    if (nodeCount == 0)
+                    {
+                        recordContradiction(Contradiction.Kind.VALUE_HAS_NO_CELL, unit, -1,
+                            Integer.numberOfTrailingZeros(missingValues & ~atLeastOnce));
+                    }
+                    return false;  // a missing value has nowhere to go
+                }
+                
+                int hiddenSingles = atLeastOnce & ~moreThanOnce;
+                while (hiddenSingles != 0)
+                {
+                    int value = Integer.numberOfTrailingZeros(hiddenSingles);
+                    hiddenSingles &= hiddenSingles - 1;
+                    
+                    // Place the value in the only cell of the unit that can hold it
+                    int targetCell = -1;
+                    for (int k = unit * size; k < unit * size + size; k++)
+                    {
+                        if (values[units[k]] == 0  &&  isCandidate(units[k], value))
+                        {
+                            targetCell = units[k];
+                        }
+                    } // end for
+                    if (targetCell < 0)
+                    {
+                        if (nodeCount == 0)
+                        {
+                            recordContradiction(Contradiction.Kind.VALUE_HAS_NO_CELL, unit, -1, value);
+                        }
+                        return false;  // an earlier placement took the value's only cell
+                    }
+                    placeValue(targetCell, value);
+                    changed = true;
+                } // end while
+            } // end for
+        } // end while
         
-        if (listIndex < 0  || !isValidGrid())
+        return true;
+    } // end propagate
+    
+    
+    // Package-private method returning the bitmask of values (bits 1 to size)
+    // that can still be placed in the given cell
+    int getCandidates(int index)
+    {
+        int usedValues = rowMasks[rowOf[index]]
+                       | columnMasks[columnOf[index]]
+                       | blockMasks[blockOf[index]];
+        return ~usedValues & allValues;
+    } // end getCandidates
+    
+    
+    // Private method returning the bitmask of values used in the given unit
+    // (rows, then columns, then blocks, as in units)
+    private int getUnitMask(int unit)
+    {
+        int mask;
+        if (unit < size)
         {
-            solved = false;
+            mask = rowMasks[unit];
         }
-        else  // valid values were set for all cells in blankCellList
-        {     // and the grid as a whole is valid
-            solved = true;
-        }  
-        return solved;
-    } // end solveGrid
+        else if (unit < 2 * size)
+        {
+            mask = columnMasks[unit - size];
+        }
+        else
+        {
+            mask = blockMasks[unit - 2 * size];
+        }
+        return mask;
+    } // end getUnitMask
     
     
-    // Private method to check whether a cell follows the row, column,
-    // and block rules for its cell value.
-    private boolean isValidCell(Cell testCell)
+    // Private method to replace the mask of one unit (numbered as in units)
+    private void setUnitMask(int unit, int mask)
     {
-        boolean result = true;
-        int cellValue = testCell.getValue();
-        int cellRow = testCell.getRow();
-        int cellColumn = testCell.getColumn();
-        int cellBlock = testCell.getBlock();        
-        
-        // Check for same value in other cell of the same row
-        for (int j = 0; j < 9; j++)
+        if (unit < size)
         {
-            if ( (j != cellColumn) && (grid[cellRow][j].getValue() == cellValue) )
-            {
-                result = false;
-            } 
-        } // end for
-        
-        // Check for same value in other cell of the same column
-        for (int i = 0; i < 9; i++)
+            rowMasks[unit] = mask;
+        }
+        else if (unit < 2 * size)
         {
-            if ( (i != cellRow) && (grid[i][cellColumn].getValue() == cellValue) )
-            {
-                result = false;
-            } 
-        } // end for      
-        
-        // Check for same value in other cell of the same block
-        if ( !isValidCellInBlock(cellValue, cellRow, cellColumn, cellBlock) )
+            columnMasks[unit - size] = mask;
+        }
+        else
         {
-            result = false;
+            blockMasks[unit - 2 * size] = mask;
         }
-        
-        return result;
-    } // end isValidCell
+    } // end setUnitMask
     
     
-    // Private method used by isValidCell to check whether a given cell value
-    // is valid within the cell's block. Returns false if another cell in
-    // the same block has the same cell value.  
-    private boolean isValidCellInBlock(int value, int row, int column, int block)
+    // Private method to set a blank cell's value during the recursive
+    // search and record it on the trail so it can be undone
+    private void placeValue(int index, int value)
     {
-        boolean result = true;
-        
-        // Set row and column indexes for upper-left-most cell in the given block
-        int topRow;
-        int leftColumn;
-        switch (block)
-        {
-            case 1:
-                topRow = 0;
-                leftColumn = 0;
-                break;
-            case 2:
-                topRow = 0;
-                leftColumn = 3;
-                break;
-            case 3:
-                topRow = 0;
-                leftColumn = 6;
-                break;
-            case 4:
-                topRow = 3;
-                leftColumn = 0;
-                break;
-            case 5:
-                topRow = 3;
-                leftColumn = 3;
-                break;                
-            case 6:
-                topRow = 3;
-                leftColumn = 6;
-                break;                
-            case 7:
-                topRow = 6;
-                leftColumn = 0;
-                break;                
-            case 8:
-                topRow = 6;
-                leftColumn = 3;
-                break;                
-            case 9:
-                topRow = 6;
-                leftColumn = 6;
-                break;                  
-            default:
-                topRow = -1;      // indicates error
-                leftColumn = -1;  // indicates error
-        } // end switch
-  
-        // Starting from upper-left-most cell in block, check all other cells
-        // in that block for the given value.     
-        for (int i = topRow; i <= topRow + 2; i++)  // iterate through rows
+        trail.record(index, values[index]);
+        values[index] = (byte) value;
+        markValue(value, index);
+    } // end placeValue
+    
+    
+    // Private method to undo every cell set since the given trail checkpoint,
+    // newest first, restoring each cell's old value and the masks with it
+    private void undoTrail(int checkpoint)
+    {
+        while (trail.size() > checkpoint)
         {
-            for (int j = leftColumn; j <= leftColumn + 2; j++) // iterate through columns
+            int change = trail.removeLast();
+            int changedCell = Trail.indexOf(change);
+            int oldValue = Trail.oldValueOf(change);
+            unmarkValue(values[changedCell], changedCell);
+            values[changedCell] = (byte) oldValue;
+            if (oldValue != 0)
             {
-                if ( i != row  || j != column) // i.e., not the same cell as the given cell
-                {   // check for duplication of the given cell's value
-                    if (grid[i][j].getValue() == value)
-                    {
-                        result = false;
-                    }  // end if
-                } // end if
-            } // end inner for
-        } // end outer for
-   
-        return result;
-    } // end isValidCellInBlock       
+                markValue(oldValue, changedCell);
+            }
+        } // end while
+    } // end undoTrail
+    
+    
+    // Private method to check whether a value can be placed in a blank cell
+    // without repeating a value already used in its row, column, or block.
+    private boolean isCandidate(int index, int value)
+    {
+        int usedValues = rowMasks[rowOf[index]]
+                       | columnMasks[columnOf[index]]
+                       | blockMasks[blockOf[index]];
+        return (usedValues & (1 << value)) == 0;
+    } // end isCandidate
+    
+    
+    // Private method to record a value as used in the row, column, and block of a cell
+    private void markValue(int value, int index)
+    {
+        int bit = 1 << value;
+        rowMasks[rowOf[index]] |= bit;
+        columnMasks[columnOf[index]] |= bit;
+        blockMasks[blockOf[index]] |= bit;
+    } // end markValue
+    
+    
+    // Private method to clear a value from the row, column, and block of a cell
+    private void unmarkValue(int value, int index)
+    {
+        int bit = ~(1 << value);
+        rowMasks[rowOf[index]] &= bit;
+        columnMasks[columnOf[index]] &= bit;
+        blockMasks[blockOf[index]] &= bit;
+    } // end unmarkValue
     
         
     /**
      * Determines whether the values currently set for the grid cells
-     * constitute a valid grid according to the rules of sudoku.
-     * @return  True if the grid is valid, False otherwise.
+     * constitute a valid grid according to the rules of sudoku. Answered in
+     * constant time from the unit counts kept by setValue (after loading or
+     * solving, the counts are first rebuilt in one pass over the cells).
+     * @return  True if the grid is complete and valid, False otherwise.
      */
-    public boolean isValidGrid()
+    @Override public boolean isValidGrid()
+    {
+        ensureCounts();
+        return filledCount == cellCount  &&  conflictCount == 0;
+    } // end isValidGrid
+    
+    
+    // Private method used during the search, when the unit counts are not kept
+    // up to date, to check every cell against its peers
+    private boolean isEveryCellValid()
     {
         boolean result = true;  
         
         // Check each cell in grid for a valid value
-        for (int row = 0; row < 9; row++)  // iterate through each row
+        int index = 0;
+        while (result == true  &&  index < cellCount)
         {
-            // Check each cell in a given row
-            int column = 0;
-            Cell currentCell;
-            int cellValue;
-            while (result == true  &&  column < 9)
+            int cellValue = values[index];
+            if (cellValue < 1  ||  cellValue > size)  // check for valid numeric range
             {
-                currentCell = grid[row][column];
-                cellValue = currentCell.getValue();
-
-                if (cellValue < 1  ||  cellValue > 9)  // check for valid numeric range
-                {
-                    result = false;
-                }
-                else  // check for adherence to row, column, and block rules
+                result = false;
+            }
+            else  // check for the same value in a peer (same row, column, or block)
+            {
+                for (int k = index * peerCount; k < index * peerCount + peerCount; k++)
                 {
-                    if (!isValidCell(currentCell))
+                    if (values[peers[k]] == cellValue)
                     {
                         result = false;
                     }
-                }
-                
-                column++;  // check next cell in row
-            } // end while (exits loop if reach end of row, or result == false)
-        } // end for
+                } // end for
+            }
+            
+            index++;  // check next cell
+        } // end while (exits loop if reach end of grid, or result == false)
         
         return result;
-    } // end isValidGrid
+    } // end isEveryCellValid
     
    
       
@@ -432,6 +1899,156 @@ public class Grid
         // Test solveGrid() method
         System.out.println("Successfully solved? " + testGrid.solveGrid());
         testGrid.displayGrid();
+        System.out.println("Nodes explored by backtracking: " + testGrid.getNodeCount());
+        
+        // Test solveGrid() method with the propagation strategy
+        Grid propagationGrid = new Grid(intGrid);
+        propagationGrid.setStrategy(SolveStrategy.PROPAGATION);
+        System.out.println("\nSuccessfully solved with propagation? " + propagationGrid.solveGrid());
+        System.out.println("Nodes explored by propagation: " + propagationGrid.getNodeCount());
+        
+        // Test solveGrid() method with minimum-remaining-values branching
+        Grid mrvGrid = new Grid(intGrid);
+        mrvGrid.setStrategy(SolveStrategy.MINIMUM_REMAINING_VALUES);
+        System.out.println("\nSuccessfully solved with MRV branching? " + mrvGrid.solveGrid());
+        System.out.println("Nodes explored by MRV branching: " + mrvGrid.getNodeCount());
+        
+        // Test search statistics
+        SolveStatistics statistics = new SolveStatistics();
+        Grid statisticsGrid = new Grid(intGrid);
+        statisticsGrid.setStatisticsEnabled(true);
+        statisticsGrid.solveGrid();
+        statisticsGrid.getStatistics(statistics);
+        System.out.println("\nBacktracking statistics: " + statistics);
+        
+        // Test bounded solves: this hard puzzle needs far more than 100
+        // guesses by backtracking, and a cancelled token stops a solve at once
+        int[][] hardGrid = { {8,0,0,0,0,0,0,0,0},
+                             {0,0,3,6,0,0,0,0,0},
+                             {0,7,0,0,9,0,2,0,0},
+                             {0,5,0,0,0,7,0,0,0},
+                             {0,0,0,0,4,5,7,0,0},
+                             {0,0,0,1,0,0,0,3,0},
+                             {0,0,1,0,0,0,0,6,8},
+                             {0,0,8,5,0,0,0,1,0},
+                             {0,9,0,0,0,0,4,0,0} };
+        Grid boundedGrid = new Grid(hardGrid);
+        System.out.println("\nBacktracking with a budget of 100 nodes: " + boundedGrid.solveGrid(100));
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        System.out.println("Backtracking with a cancelled token: " + boundedGrid.solveGrid(token));
+        boundedGrid.setStrategy(SolveStrategy.PROPAGATION);
+        System.out.println("Propagation within 1 second: "
+                           + boundedGrid.solveGrid(Long.MAX_VALUE, 1_000_000_000L, null));
+        
+        // A budget of exactly the guesses a solve needs is enough for every
+        // strategy, and one less is not; propagation needs no guesses at all
+        // for the easy puzzle, so a budget of 0 solves it
+        for (SolveStrategy strategy : SolveStrategy.values())
+        {
+            Grid budgetGrid = new Grid(strategy == SolveStrategy.BACKTRACKING ? intGrid : hardGrid);
+            budgetGrid.setStrategy(strategy);
+            budgetGrid.solveGrid();
+            long needed = budgetGrid.getNodeCount();
+            System.out.println(strategy + " with a budget of " + needed + " nodes (as needed): "
+                               + budgetGrid.solveGrid(needed) + ", with " + (needed - 1) + ": "
+                               + budgetGrid.solveGrid(needed - 1));
+        } // end for
+        Grid singlesGrid = new Grid(intGrid);
+        singlesGrid.setStrategy(SolveStrategy.PROPAGATION);
+        System.out.println("Propagation of the easy puzzle with a budget of 0 nodes: "
+                           + singlesGrid.solveGrid(0));
+        System.out.println("Full grid with a budget of 0 nodes: "
+                           + new Grid(singlesGrid.getValues()).solveGrid(0));
+        
+        // Test solution counting and uniqueness
+        System.out.println("\nPuzzle has a unique solution? " + propagationGrid.hasUniqueSolution());
+        int[][] sparseGrid = new int[9][9];
+        sparseGrid[0] = intGrid[0].clone();
+        Grid sparseTestGrid = new Grid(sparseGrid);
+        sparseTestGrid.setStrategy(SolveStrategy.PROPAGATION);
+        System.out.println("Solutions of grid with only the top row (limit 50): "
+                           + sparseTestGrid.countSolutions(50));
+        
+        // Test reusing one grid for a stream of puzzles, solving into a buffer
+        byte[] puzzles = new byte[81 * 2];
+        for (int index = 0; index < 81; index++)
+        {
+            puzzles[index] = (byte) intGrid[index / 9][index % 9];
+            puzzles[81 + index] = (byte) intGrid[8 - index / 9][8 - index % 9];  // rotated copy
+        } // end for
+        byte[] solutions = new byte[81 * 2];
+        Grid reusableGrid = new Grid();
+        reusableGrid.setStrategy(SolveStrategy.PROPAGATION);
+        for (int puzzle = 0; puzzle < 2; puzzle++)
+        {
+            reusableGrid.load(puzzles, puzzle * 81);
+            System.out.println("\nSolved puzzle " + puzzle + " into buffer? "
+                               + reusableGrid.solveInto(solutions, puzzle * 81));
+        } // end for
+        
+        // Test grids of every size: blank out about 45% of the cells of a
+        // patterned solution, and solve the puzzle with propagation
+        java.util.Random random = new java.util.Random(42);
+        for (int boxSize = 2; boxSize <= 5; boxSize++)
+        {
+            int size = boxSize * boxSize;
+            int[][] largeGrid = new int[size][size];
+            for (int row = 0; row < size; row++)
+            {
+                for (int column = 0; column < size; column++)
+                {
+                    int shift = (row % boxSize) * boxSize + row / boxSize;
+                    largeGrid[row][column] = random.nextInt(100) < 45 ? 0
+                                             : (shift + column) % size + 1;
+                } // end inner for
+            } // end outer for
+            Grid largeTestGrid = new Grid(largeGrid);
+            largeTestGrid.setStrategy(SolveStrategy.PROPAGATION);
+            long startTime = System.nanoTime();
+            boolean solved = largeTestGrid.solveGrid();
+            System.out.printf("%n%d x %d grid with %d blank cells solved? %b valid? %b "
+                              + "nodes: %d time: %.1f ms%n", size, size,
+                              largeTestGrid.getNumberOfBlankCells(), solved,
+                              largeTestGrid.isValidGrid(), largeTestGrid.getNodeCount(),
+                              (System.nanoTime() - startTime) / 1e6);
+        } // end for
+        
+        // Test Cell views of grid cells
+        Cell cornerCell = testGrid.getCell(0, 0);
+        Cell blankCell = mrvGrid.getCell(0, 1);
+        System.out.println("\nCell view of upper-left corner cell: " + cornerCell);
+        System.out.println("Cell view of solved blank cell: " + blankCell);
+        blankCell.setValue(0);
+        System.out.println("Grid value after clearing the view: " + mrvGrid.getValue(0, 1));
+        
+        // Test conflicts reported as values are entered
+        mrvGrid.setConflictListener(new ConflictListener() {
+            @Override public void conflictFound(Contradiction conflict, int row, int column)
+            {
+                System.out.println("Conflict at (" + row + "," + column + "): " + conflict);
+            }
+            @Override public void conflictResolved(Contradiction conflict, int row, int column)
+            {
+                System.out.println("Conflict resolved at (" + row + "," + column + "): " + conflict);
+            }
+        });
+        blankCell.setValue(2);
+        System.out.println("Cell in conflict? " + mrvGrid.isInConflict(0, 1)
+                           + "  Grid valid? " + mrvGrid.isValidGrid());
+        blankCell.setValue(0);
+        System.out.println("Cell in conflict? " + mrvGrid.isInConflict(0, 1)
+                           + "  Grid has conflicts? " + mrvGrid.hasConflicts());
+
+        // Test trying values after a snapshot and reverting them
+        int snapshot = mrvGrid.snapshot();
+        blankCell.setValue(2);
+        mrvGrid.getCell(0, 2).setValue(0);
+        System.out.println("Values after edits: " + mrvGrid.getValue(0, 1) + " " + mrvGrid.getValue(0, 2));
+        System.out.println("Contradiction after edits: " + mrvGrid.findContradiction());  // keeps the snapshot
+        mrvGrid.restore(snapshot);
+        System.out.println("Values after restore: " + mrvGrid.getValue(0, 1) + " " + mrvGrid.getValue(0, 2)
+                           + "  Grid has conflicts? " + mrvGrid.hasConflicts());
 
  
         // Directly test public isValidGrid() method with a complete inputted grid //
@@ -508,6 +2125,23 @@ public class Grid
  
         // Test solveGrid() method
         System.out.println("Successfully solved? " + testGrid4.solveGrid());      
+        System.out.println("Reason: " + testGrid4.getContradiction());
+        
+        // Test contradiction found by propagation: the top row needs a 3, but
+        // every blank cell in it sees a 3 in its column
+        int[][] intGrid5 = { {1,2,0,4,5,6,7,8,0},
+                             {0,0,0,0,0,0,0,0,0},
+                             {0,0,3,0,0,0,0,0,0},
+                             {0,0,0,0,0,0,0,0,3},
+                             {0,0,0,0,0,0,0,0,0},
+                             {0,0,0,0,0,0,0,0,0},
+                             {0,0,0,0,0,0,0,0,0},
+                             {0,0,0,0,0,0,0,0,0},
+                             {0,0,0,0,0,0,0,0,0} };
+        Grid testGrid5 = new Grid(intGrid5);
+        System.out.println("\nContradiction found before search: " + testGrid5.findContradiction());
+        System.out.println("Successfully solved? " + testGrid5.solveGrid());
+        System.out.println("Bounded solve result: " + testGrid5.solveGrid(1000));
         
     } // end test main    
       
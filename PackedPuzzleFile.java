@@ -0,0 +1,276 @@
+package SudokuSolver;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The packed binary format for files of 9 x 9 puzzles or solutions. Each
+ * cell value (0 for blank cells) takes 4 bits, so a record of 81 cells takes
+ * 41 bytes instead of the 82 of a text line: cell 2i is the high half of
+ * byte i and cell 2i + 1 the low half, and the low half of the last byte is 0.
+ *
+ * The records follow a 16-byte header holding, in big-endian order, the int
+ * MAGIC (which includes the format version), an int of flags, and the long
+ * record count. A file written by a solver has FLAG_SOLUTIONS set; as with
+ * text output, a puzzle that could not be solved is written back unchanged.
+ *
+ * Records are read and written in place in a ByteBuffer (normally a
+ * MappedByteBuffer), so no object is created per puzzle.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class PackedPuzzleFile
+{
+    /** The first four header bytes: "SPZ" followed by the format version. */
+    public static final int MAGIC = 0x53505A01;
+
+    /** Size in bytes of the header before the first record. */
+    public static final int HEADER_SIZE = 16;
+
+    /** Size in bytes of one packed 9 x 9 record. */
+    public static final int RECORD_SIZE = 41;
+
+    /** Header flag set when the records are solver output. */
+    public static final int FLAG_SOLUTIONS = 1;
+
+    /** The file name extension of packed files. */
+    public static final String EXTENSION = ".spz";
+
+    /** Most records mapped at a time, keeping each mapping well under 2 GB. */
+    public static final int CHUNK_RECORDS = 1 << 20;
+
+    private static final int CELL_COUNT = 81;
+
+
+    /**
+     * Returns one cell value of a packed record.
+     * @param buffer    the buffer holding the record
+     * @param position  index in the buffer of the record's first byte
+     * @param index     the cell's index (0 to 80) in row-major order
+     * @return  the cell value, 0 for a blank cell (up to 15 in a corrupt record)
+     */
+    public static int getCell(ByteBuffer buffer, int position, int index)
+    {
+        int packed = buffer.get(position + (index >>> 1));
+        return ((index & 1) == 0) ? (packed >>> 4) & 0xF : packed & 0xF;
+    } // end getCell
+
+
+    /**
+     * Packs 81 cell values into one record.
+     * @param values    the array holding the cell values (0 to 9)
+     * @param offset    index in the array of the first cell's value
+     * @param buffer    the buffer to write the record into
+     * @param position  index in the buffer to write the record's first byte at
+     */
+    public static void pack(byte[] values, int offset, ByteBuffer buffer, int position)
+    {
+        for (int index = 0; index < CELL_COUNT - 1; index += 2)
+        {
+            buffer.put(position + (index >>> 1),
+                       (byte) ((values[offset + index] << 4) | values[offset + index + 1]));
+        } // end for
+        buffer.put(position + RECORD_SIZE - 1, (byte) (values[offset + CELL_COUNT - 1] << 4));
+    } // end pack
+
+
+    /**
+     * Unpacks one record into 81 cell values.
+     * @param buffer    the buffer holding the record
+     * @param position  index in the buffer of the record's first byte
+     * @param values    the array to write the cell values into
+     * @param offset    index in the array to write the first cell's value at
+     */
+    public static void unpack(ByteBuffer buffer, int position, byte[] values, int offset)
+    {
+        for (int index = 0; index < CELL_COUNT - 1; index += 2)
+        {
+            int packed = buffer.get(position + (index >>> 1));
+            values[offset + index] = (byte) ((packed >>> 4) & 0xF);
+            values[offset + index + 1] = (byte) (packed & 0xF);
+        } // end for
+        values[offset + CELL_COUNT - 1] = (byte) ((buffer.get(position + RECORD_SIZE - 1) >>> 4) & 0xF);
+    } // end unpack
+
+
+    /**
+     * Reads and checks the header of a packed file.
+     * @param channel  the file, of which the first HEADER_SIZE bytes are read
+     * @return  the number of records in the file
+     * @throws IOException  if the file cannot be read, is not a packed file of
+     *                      a supported version, or is shorter than its header says
+     */
+    public static long readHeader(FileChannel channel) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        int bytesRead = 0;
+        while (header.hasRemaining()  &&  bytesRead >= 0)
+        {
+            bytesRead = channel.read(header, header.position());
+        } // end while (header read, or end of file reached)
+        if (header.hasRemaining()  ||  header.getInt(0) != MAGIC)
+        {
+            throw new IOException("Not a packed puzzle file (version " + (MAGIC & 0xFF) + ")");
+        }
+        long count = header.getLong(8);
+        if (count < 0  ||  count > (channel.size() - HEADER_SIZE) / RECORD_SIZE)
+        {
+            throw new IOException("Packed puzzle file is truncated: header says " + count + " records");
+        }
+        return count;
+    } // end readHeader
+
+
+    /**
+     * Writes the header of a packed file at the start of the file.
+     * @param channel  the file to write to
+     * @param flags    the header flags, such as FLAG_SOLUTIONS
+     * @param count    the number of records in the file
+     * @throws IOException  if the file cannot be written
+     */
+    public static void writeHeader(FileChannel channel, int flags, long count) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(flags).putLong(count).flip();
+        while (header.hasRemaining())
+        {
+            channel.write(header, header.position());
+        } // end while
+    } // end writeHeader
+
+
+    /**
+     * Converts a stream of puzzle lines (see PuzzleReader) to a packed file.
+     * The stream is not closed.
+     * @param in      the stream of puzzle lines
+     * @param output  the packed file to create or replace
+     * @return  the number of puzzles written
+     * @throws IOException  if the stream or file fails, or a line is not an 81-character puzzle
+     */
+    public static long fromText(InputStream in, Path output) throws IOException
+    {
+        PuzzleReader reader = new PuzzleReader(in);
+        byte[] values = new byte[CELL_COUNT];
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 1000);
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.WRITE,
+                 StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            channel.position(HEADER_SIZE);
+            while (reader.next(values, 0))
+            {
+                if (buffer.position() == buffer.capacity())
+                {
+                    writeAll(channel, buffer);
+                }
+                pack(values, 0, buffer, buffer.position());
+                buffer.position(buffer.position() + RECORD_SIZE);
+                count++;
+            } // end while (exited at end of input stream)
+            writeAll(channel, buffer);
+            writeHeader(channel, 0, count);
+        }
+        return count;
+    } // end fromText
+
+
+    /**
+     * Converts a packed file to puzzle lines (see PuzzleReader), reading the
+     * records out of a mapping of the file. The stream is flushed but not closed.
+     * @param input  the packed file
+     * @param out    the stream the lines are written to
+     * @return  the number of records read
+     * @throws IOException  if the file or stream fails, or the file is not a valid packed file
+     */
+    public static long toText(Path input, OutputStream out) throws IOException
+    {
+        byte[] values = new byte[CELL_COUNT];
+        byte[] lines = new byte[82 * 1000];
+        int lineSize = 0;
+        long count;
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ))
+        {
+            count = readHeader(channel);
+            for (long first = 0; first < count; first += CHUNK_RECORDS)
+            {
+                int records = (int) Math.min(CHUNK_RECORDS, count - first);
+                MappedByteBuffer source = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_SIZE + first * RECORD_SIZE, (long) records * RECORD_SIZE);
+                for (int position = 0; position < records * RECORD_SIZE; position += RECORD_SIZE)
+                {
+                    if (lineSize == lines.length)
+                    {
+                        out.write(lines, 0, lineSize);
+                        lineSize = 0;
+                    }
+                    unpack(source, position, values, 0);
+                    PuzzleReader.formatLine(values, 0, lines, lineSize);
+                    lineSize += 82;
+                } // end for
+            } // end for
+        }
+        out.write(lines, 0, lineSize);
+        out.flush();
+        return count;
+    } // end toText
+
+
+    // Private method writing out and then clearing the buffer
+    private static void writeAll(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        } // end while
+        buffer.clear();
+    } // end writeAll
+
+
+    /**
+     * Command-line entry point converting between text and packed files.
+     * Usage: PackedPuzzleFile pack text-file packed-file
+     *        PackedPuzzleFile unpack packed-file [text-file]
+     * @param args  the direction and the file names
+     * @throws IOException  if a file cannot be read or written, or is malformed
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length >= 3  &&  args[0].equals("pack"))
+        {
+            try (InputStream in = new FileInputStream(args[1]))
+            {
+                long count = fromText(in, Paths.get(args[2]));
+                System.err.println("Packed " + count + " puzzles");
+            }
+        }
+        else if (args.length >= 2  &&  args[0].equals("unpack"))
+        {
+            OutputStream out = (args.length > 2) ? new FileOutputStream(args[2]) : System.out;
+            try
+            {
+                toText(Paths.get(args[1]), out);
+            }
+            finally
+            {
+                if (args.length > 2)
+                {
+                    out.close();
+                }
+            }
+        }
+        else
+        {
+            System.err.println("Usage: PackedPuzzleFile pack text-file packed-file");
+            System.err.println("       PackedPuzzleFile unpack packed-file [text-file]");
+        }
+    } // end main
+
+} // end PackedPuzzleFile
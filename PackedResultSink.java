@@ -0,0 +1,88 @@
+package SudokuSolver;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes each result as one record of a packed file (see PackedPuzzleFile):
+ * the solution, or the puzzle unchanged if it was not solved. The header,
+ * with FLAG_SOLUTIONS set and the record count, is written by close, so the
+ * file is only complete once the sink is closed.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class PackedResultSink implements ResultSink
+{
+    private static final int BUFFER_RECORDS = 2048;  // records written at a time
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;  // records waiting to be written
+    private long recordCount;         // records received
+
+    /**
+     * Constructor for a sink writing the given file.
+     * @param output  the packed file to create or replace
+     * @throws IOException  if the file cannot be opened
+     */
+    public PackedResultSink(Path output) throws IOException
+    {
+        channel = FileChannel.open(output, StandardOpenOption.WRITE,
+                                   StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        channel.position(PackedPuzzleFile.HEADER_SIZE);
+        buffer = ByteBuffer.allocate(BUFFER_RECORDS * PackedPuzzleFile.RECORD_SIZE);
+    } // end constructor
+
+
+    @Override public void accept(byte[] puzzle, int puzzleOffset, byte[] solution, int solutionOffset,
+                                 boolean solved, SolveStatistics statistics) throws IOException
+    {
+        if (!buffer.hasRemaining())
+        {
+            writeBuffer();
+        }
+        if (solved)
+        {
+            PackedPuzzleFile.pack(solution, solutionOffset, buffer, buffer.position());
+        }
+        else
+        {
+            PackedPuzzleFile.pack(puzzle, puzzleOffset, buffer, buffer.position());
+        }
+        buffer.position(buffer.position() + PackedPuzzleFile.RECORD_SIZE);
+        recordCount++;
+    } // end accept
+
+
+    @Override public void flush() throws IOException
+    {
+        writeBuffer();
+    } // end flush
+
+
+    @Override public void close() throws IOException
+    {
+        try
+        {
+            writeBuffer();
+            PackedPuzzleFile.writeHeader(channel, PackedPuzzleFile.FLAG_SOLUTIONS, recordCount);
+        }
+        finally
+        {
+            channel.close();
+        }
+    } // end close
+
+
+    // Private method writing out and then clearing the buffer
+    private void writeBuffer() throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        } // end while
+        buffer.clear();
+    } // end writeBuffer
+
+} // end PackedResultSink
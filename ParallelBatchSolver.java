@@ -0,0 +1,633 @@
+package SudokuSolver;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Solves a stream of puzzles in the standard line format (see PuzzleReader)
+ * on all cores. The input is read in chunks of puzzles, and each chunk is
+ * solved by a task on a work-stealing ForkJoinPool that splits the chunk
+ * among idle workers. Every worker thread reuses its own Grid. Chunks are
+ * recycled, and the results are given to a ResultSink in input order, one
+ * chunk at a time, from the thread that called solve. Any sink can be used,
+ * as with BatchSolver; by default solution lines are written in the same
+ * format as BatchSolver. With a SolvedPuzzleIndex set, puzzles solved by
+ * earlier runs are answered from the index without solving, and new
+ * puzzles are added to it, all from that same thread.
+ *
+ * Files in the packed binary format (see PackedPuzzleFile) are mapped a
+ * region at a time, and each chunk is a range of records in the mapping
+ * that the workers unpack as they solve them, so the input is never copied
+ * by a single thread.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class ParallelBatchSolver implements AutoCloseable
+{
+    private static final int CHUNK_SIZE = 4096;  // puzzles per chunk
+    private static final int SPLIT_SIZE = 64;    // puzzles below which a task is not split
+
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Grid> workerGrid;  // one reusable grid per worker thread
+    private final int maxChunksInFlight;         // chunks read ahead of the writer
+    private final StatisticsHistogram statistics;  // statistics of every puzzle of the batch
+    private volatile boolean statisticsEnabled;
+    private SolvedPuzzleIndex index;               // puzzles already solved (null if none)
+
+    private long puzzleCount;   // puzzles read by the last solve call
+    private long solvedCount;   // puzzles solved by the last solve call
+    private long knownCount;    // puzzles found in the index by the last solve call
+    private long elapsedNanos;  // wall time of the last solve call
+
+    // A block of puzzles read together, with their results
+    private static class Chunk
+    {
+        final byte[] puzzles = new byte[CHUNK_SIZE * 81];    // cell values of each puzzle
+        final byte[] solutions = new byte[CHUNK_SIZE * 81];  // cell values of each solution
+        final boolean[] solved = new boolean[CHUNK_SIZE];    // whether each puzzle was solved
+        final boolean[] known = new boolean[CHUNK_SIZE];     // whether each was found in the index
+        final SolveStatistics[] statistics = new SolveStatistics[CHUNK_SIZE];  // of each solve
+        boolean collectStatistics;                           // whether statistics are filled in
+        ByteBuffer source;             // packed records still to be unpacked, or null
+        int sourcePosition;            // index in source of the chunk's first record
+        int size;                                            // puzzles in the chunk
+        ForkJoinTask<Void> task;                             // task solving the chunk
+
+        Chunk()
+        {
+            for (int k = 0; k < CHUNK_SIZE; k++)
+            {
+                statistics[k] = new SolveStatistics();
+            } // end for
+        } // end constructor
+    } // end Chunk
+
+    // Task that solves the puzzles of a chunk from index start (inclusive)
+    // to end (exclusive), splitting in half until the range is small
+    private class SolveTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        private final transient Chunk chunk;
+        private final int start;
+        private final int end;
+
+        SolveTask(Chunk chunk, int start, int end)
+        {
+            this.chunk = chunk;
+            this.start = start;
+            this.end = end;
+        } // end constructor
+
+        @Override protected void compute()
+        {
+            if (end - start <= SPLIT_SIZE)
+            {
+                solveRange(chunk, start, end);
+            }
+            else
+            {
+                int middle = (start + end) >>> 1;
+                invokeAll(new SolveTask(chunk, start, middle), new SolveTask(chunk, middle, end));
+            }
+        } // end compute
+    } // end SolveTask
+
+    /**
+     * Constructor for a parallel batch solver using the propagation strategy
+     * on every available core.
+     */
+    public ParallelBatchSolver()
+    {
+        this(Runtime.getRuntime().availableProcessors(), SolveStrategy.PROPAGATION);
+    } // end constructor
+
+    /**
+     * Constructor for a parallel batch solver with the given number of worker
+     * threads and solve strategy.
+     * @param threads   number of worker threads (at least 1)
+     * @param strategy  the solve strategy used for every puzzle
+     */
+    public ParallelBatchSolver(int threads, final SolveStrategy strategy)
+    {
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("Number of threads must be at least 1");
+        }
+        pool = new ForkJoinPool(threads);
+        workerGrid = ThreadLocal.withInitial(() -> {
+            Grid grid = new Grid();
+            grid.setStrategy(strategy);
+            return grid;
+        });
+        maxChunksInFlight = threads * 2;
+        statistics = new StatisticsHistogram();
+    } // end constructor
+
+
+    /**
+     * Turns the collection of per-puzzle search statistics on or off. It is
+     * off by default.
+     * @param enabled  true to collect statistics in subsequent solve calls
+     */
+    public void setStatisticsEnabled(boolean enabled)
+    {
+        statisticsEnabled = enabled;
+    } // end setStatisticsEnabled
+
+
+    /**
+     * Sets the index of puzzles already solved. Each puzzle of later solve
+     * calls is first looked up in the index by the thread reading the input;
+     * a puzzle found there is not given to a worker, and its stored result is
+     * used. Each puzzle not found is added by the thread writing the results,
+     * so the index is only used by one thread. A puzzle repeated within a few
+     * chunks of its first appearance may be solved again, as its first result
+     * is not yet added. The index is flushed at the end of each solve call.
+     * It is not closed.
+     * @param newIndex  the index, or null to solve every puzzle
+     */
+    public void setIndex(SolvedPuzzleIndex newIndex)
+    {
+        index = newIndex;
+    } // end setIndex
+
+
+    /**
+     * Reads every puzzle from the input stream, solves the puzzles in parallel,
+     * and writes the solution lines to the output stream in input order.
+     * Neither stream is closed; the output stream is flushed.
+     * @param in   the stream of puzzle lines
+     * @param out  the stream the solution lines are written to
+     * @return  the number of puzzles read
+     * @throws IOException  if a stream fails, or a line is not an 81-character puzzle
+     */
+    public long solve(InputStream in, OutputStream out) throws IOException
+    {
+        return solve(in, new TextResultSink(out, false));
+    } // end solve
+
+
+    /**
+     * Reads every puzzle from the input stream, solves the puzzles in parallel,
+     * and gives the results to the sink in input order, with their statistics
+     * if they are enabled. The sink is only called from this thread, so it
+     * need not be thread-safe; a VerifyingResultSink moves the checking off
+     * this thread as well. The stream is not closed; the sink is flushed but
+     * not closed.
+     * @param in    the stream of puzzle lines
+     * @param sink  the sink the results are given to
+     * @return  the number of puzzles read
+     * @throws IOException  if the stream or sink fails, or a line is not an 81-character puzzle
+     */
+    public long solve(InputStream in, ResultSink sink) throws IOException
+    {
+        return solveChunks(new PuzzleReader(in), null, sink);
+    } // end solve
+
+
+    /**
+     * Solves every record of a packed puzzle file (see PackedPuzzleFile) in
+     * parallel, and gives the results to the sink in input order, as
+     * solve(InputStream, ResultSink) does. The file is mapped a region at a
+     * time, and the workers unpack the records of their own part of a chunk
+     * straight from the mapping. The sink is flushed but not closed.
+     * @param input  the packed puzzle file
+     * @param sink   the sink the results are given to
+     * @return  the number of puzzles read
+     * @throws IOException  if the file or sink fails, or the input is not a valid packed file
+     */
+    public long solve(Path input, ResultSink sink) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ))
+        {
+            return solveChunks(null, channel, sink);
+        }
+    } // end solve
+
+
+    // Private method reading the puzzles in chunks, from the lines of the
+    // reader or, if it is null, from the records of the packed file, and
+    // solving the chunks on the pool while the oldest are written to the sink
+    private long solveChunks(PuzzleReader reader, FileChannel packed, ResultSink sink) throws IOException
+    {
+        long startTime = System.nanoTime();
+        puzzleCount = 0;
+        solvedCount = 0;
+        knownCount = 0;
+        statistics.clear();
+
+        int recordSize = PackedPuzzleFile.RECORD_SIZE;
+        long recordCount = (packed != null) ? PackedPuzzleFile.readHeader(packed) : 0;
+        long nextRecord = 0;             // first record not yet given to a chunk
+        MappedByteBuffer region = null;  // mapped records, shared by the chunks in it
+        int regionRecords = 0;           // records in region
+        int regionNext = 0;              // first record of region not yet given to a chunk
+
+        ArrayDeque<Chunk> pending = new ArrayDeque<>();  // chunks being solved, in input order
+        ArrayDeque<Chunk> free = new ArrayDeque<>();     // written chunks ready for reuse
+        boolean endOfInput = false;
+        try
+        {
+            while (!endOfInput)
+            {
+                // Read the next chunk of puzzles
+                Chunk chunk = free.isEmpty() ? new Chunk() : free.pop();
+                chunk.size = 0;
+                chunk.collectStatistics = statisticsEnabled;
+                chunk.source = null;
+                if (reader != null)
+                {
+                    while (chunk.size < CHUNK_SIZE  &&  !endOfInput)
+                    {
+                        if (reader.next(chunk.puzzles, chunk.size * 81))
+                        {
+                            chunk.size++;
+                        }
+                        else
+                        {
+                            endOfInput = true;
+                        }
+                    } // end inner while
+                }
+                else if (nextRecord < recordCount)
+                {
+                    if (regionNext == regionRecords)
+                    {
+                        regionRecords = (int) Math.min(PackedPuzzleFile.CHUNK_RECORDS,
+                                                       recordCount - nextRecord);
+                        region = packed.map(FileChannel.MapMode.READ_ONLY,
+                                            PackedPuzzleFile.HEADER_SIZE + nextRecord * recordSize,
+                                            (long) regionRecords * recordSize);
+                        regionNext = 0;
+                    }
+                    chunk.size = Math.min(CHUNK_SIZE, regionRecords - regionNext);
+                    chunk.source = region;
+                    chunk.sourcePosition = regionNext * recordSize;
+                    regionNext += chunk.size;
+                    nextRecord += chunk.size;
+                    endOfInput = nextRecord == recordCount;
+                }
+                else
+                {
+                    endOfInput = true;
+                }
+
+                if (chunk.size > 0)
+                {
+                    lookUpChunk(chunk);
+                    chunk.task = pool.submit(new SolveTask(chunk, 0, chunk.size));
+                    pending.add(chunk);
+                }
+
+                // Write the oldest chunks once enough are in flight
+                while (pending.size() >= maxChunksInFlight  ||  (endOfInput && !pending.isEmpty()))
+                {
+                    Chunk oldest = pending.poll();
+                    writeChunk(oldest, sink);
+                    free.push(oldest);
+                } // end inner while
+            } // end outer while
+        }
+        finally
+        {
+            // Do not leave tasks running on the pool if reading or writing failed
+            for (Chunk chunk : pending)
+            {
+                chunk.task.cancel(false);
+            }
+        }
+
+        sink.flush();
+        if (index != null)
+        {
+            index.flush();
+        }
+        elapsedNanos = System.nanoTime() - startTime;
+        return puzzleCount;
+    } // end solveChunks
+
+
+    // Private method looking up each puzzle of a chunk in the index, filling
+    // in the results of those found. A packed chunk is unpacked here first,
+    // as the index needs the cell values.
+    private void lookUpChunk(Chunk chunk) throws IOException
+    {
+        if (index != null)
+        {
+            for (int puzzle = 0; puzzle < chunk.size; puzzle++)
+            {
+                if (chunk.source != null)
+                {
+                    unpackPuzzle(chunk, puzzle);
+                }
+                boolean found = index.lookup(chunk.puzzles, puzzle * 81, chunk.solutions, puzzle * 81,
+                                             chunk.statistics[puzzle]);
+                chunk.known[puzzle] = found;
+                if (found)
+                {
+                    chunk.solved[puzzle] = chunk.statistics[puzzle].isSolved();
+                    if (!chunk.solved[puzzle])
+                    {
+                        System.arraycopy(chunk.puzzles, puzzle * 81, chunk.solutions, puzzle * 81, 81);
+                    }
+                }
+            } // end for
+            chunk.source = null;  // every puzzle is unpacked
+        }
+        else
+        {
+            Arrays.fill(chunk.known, 0, chunk.size, false);
+        }
+    } // end lookUpChunk
+
+
+    // Private method unpacking one puzzle of a packed chunk into its cell values
+    private static void unpackPuzzle(Chunk chunk, int puzzle)
+    {
+        PackedPuzzleFile.unpack(chunk.source, chunk.sourcePosition + puzzle * PackedPuzzleFile.RECORD_SIZE,
+                                chunk.puzzles, puzzle * 81);
+    } // end unpackPuzzle
+
+
+    // Private method to wait for a chunk to be solved and give its results to
+    // the sink, adding the puzzles not found in the index to it
+    private void writeChunk(Chunk chunk, ResultSink sink) throws IOException
+    {
+        chunk.task.join();
+        for (int puzzle = 0; puzzle < chunk.size; puzzle++)
+        {
+            SolveStatistics solveStatistics = null;
+            if (chunk.collectStatistics)
+            {
+                solveStatistics = chunk.statistics[puzzle];
+            }
+            if (chunk.known[puzzle])
+            {
+                knownCount++;
+            }
+            else
+            {
+                if (solveStatistics != null)
+                {
+                    statistics.record(solveStatistics);
+                }
+                if (index != null)
+                {
+                    index.add(chunk.puzzles, puzzle * 81, chunk.solutions, puzzle * 81,
+                              chunk.solved[puzzle], solveStatistics);
+                }
+            }
+            if (chunk.solved[puzzle])
+            {
+                solvedCount++;
+            }
+            sink.accept(chunk.puzzles, puzzle * 81, chunk.solutions, puzzle * 81,
+                        chunk.solved[puzzle], solveStatistics);
+        } // end for
+        puzzleCount += chunk.size;
+    } // end writeChunk
+
+
+    // Private method run by worker threads to solve part of a chunk with the
+    // worker's own grid
+    private void solveRange(Chunk chunk, int start, int end)
+    {
+        Grid grid = workerGrid.get();
+        grid.setStatisticsEnabled(chunk.collectStatistics);
+        for (int puzzle = start; puzzle < end; puzzle++)
+        {
+            if (!chunk.known[puzzle])
+            {
+                if (chunk.source != null)
+                {
+                    unpackPuzzle(chunk, puzzle);
+                }
+                grid.load(chunk.puzzles, puzzle * 81);
+                chunk.solved[puzzle] = grid.solveInto(chunk.solutions, puzzle * 81);
+                if (chunk.collectStatistics)
+                {
+                    grid.getStatistics(chunk.statistics[puzzle]);
+                }
+            }
+        } // end for
+    } // end solveRange
+
+
+    /**
+     * Returns the number of puzzles read by the last call to solve().
+     * @return  the puzzle count
+     */
+    public long getPuzzleCount()
+    {
+        return puzzleCount;
+    } // end getPuzzleCount
+
+
+    /**
+     * Returns the number of puzzles successfully solved by the last call to solve().
+     * @return  the solved puzzle count
+     */
+    public long getSolvedCount()
+    {
+        return solvedCount;
+    } // end getSolvedCount
+
+
+    /**
+     * Returns the number of puzzles the last call to solve() found in the
+     * index instead of solving. These are included in the puzzle and solved
+     * counts, but not in the statistics histogram.
+     * @return  the count of puzzles found in the index
+     */
+    public long getKnownCount()
+    {
+        return knownCount;
+    } // end getKnownCount
+
+
+    /**
+     * Returns the wall time taken by the last call to solve().
+     * @return  the elapsed time in nanoseconds
+     */
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    } // end getElapsedNanos
+
+
+    /**
+     * Returns the statistics of every puzzle of the last call to solve(). The
+     * histogram is empty unless statistics are enabled, and is reused by the
+     * next call.
+     * @return  the batch statistics
+     */
+    public StatisticsHistogram getStatistics()
+    {
+        return statistics;
+    } // end getStatistics
+
+
+    /**
+     * Returns the throughput of the last call to solve().
+     * @return  puzzles read per second of wall time
+     */
+    public double getPuzzlesPerSecond()
+    {
+        double result = 0.0;
+        if (elapsedNanos > 0)
+        {
+            result = puzzleCount * 1e9 / elapsedNanos;
+        }
+        return result;
+    } // end getPuzzlesPerSecond
+
+
+    /**
+     * Shuts down the worker threads.
+     */
+    @Override public void close()
+    {
+        pool.shutdown();
+    } // end close
+
+
+    /**
+     * Command-line entry point. Reads puzzles from the input file (or standard
+     * input) and writes solutions to the output file (or standard output).
+     * An input file ending in PackedPuzzleFile.EXTENSION is read as a packed
+     * file. As with BatchSolver, the output format follows the output file name:
+     * packed (see PackedPuzzleFile) for that extension, CSV with per-puzzle
+     * statistics for ".csv", and text lines otherwise.
+     * A summary with the puzzles/sec rate and the search statistics is printed
+     * to standard error. A number as an option sets the thread count; an
+     * option of "verify" checks every solution on a separate thread and
+     * prints the number found invalid; "index=FILE" skips the puzzles found
+     * in the solved puzzle index in that log file (created if needed) and
+     * adds the others to it.
+     * Usage: ParallelBatchSolver [input-file [output-file [threads] [verify] [index=FILE]]]
+     * @param args  optional input and output file names and options
+     * @throws IOException  if a file cannot be read or written, or a line is malformed
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean verify = false;
+        String indexFile = null;
+        for (int k = 2; k < args.length; k++)
+        {
+            verify |= args[k].equals("verify");
+            if (args[k].startsWith("index="))
+            {
+                indexFile = args[k].substring("index=".length());
+            }
+            if (!args[k].isEmpty()  &&  Character.isDigit(args[k].charAt(0)))
+            {
+                threads = Integer.parseInt(args[k]);
+            }
+        } // end for
+        boolean packedOutput = args.length > 1  &&  args[1].endsWith(PackedPuzzleFile.EXTENSION);
+        boolean csvOutput = args.length > 1  &&  args[1].endsWith(".csv");
+
+        ResultSink sink;
+        if (packedOutput)
+        {
+            sink = new PackedResultSink(Paths.get(args[1]));
+        }
+        else if (csvOutput)
+        {
+            sink = new CsvResultSink(new FileOutputStream(args[1]));
+        }
+        else if (args.length > 1)
+        {
+            sink = new TextResultSink(new FileOutputStream(args[1]));
+        }
+        else
+        {
+            sink = new TextResultSink(System.out, false);
+        }
+        VerifyingResultSink verifier = null;
+        if (verify)
+        {
+            verifier = new VerifyingResultSink(sink);
+            sink = verifier;
+        }
+
+        SolvedPuzzleIndex index = null;
+        if (indexFile != null)
+        {
+            index = new SolvedPuzzleIndex(Paths.get(indexFile));
+            if (index.getDroppedBytes() > 0)
+            {
+                System.err.println("Dropped " + index.getDroppedBytes()
+                                   + " bytes of a damaged record from the end of the index log");
+            }
+            if (index.getSkippedCount() > 0)
+            {
+                System.err.println("Skipped " + index.getSkippedCount()
+                                   + " damaged records of the index log; their puzzles will be solved again");
+            }
+        }
+
+        boolean packedInput = args.length > 0  &&  args[0].endsWith(PackedPuzzleFile.EXTENSION);
+        InputStream in = (args.length > 0  &&  !packedInput) ? new FileInputStream(args[0]) : System.in;
+        try (ParallelBatchSolver batchSolver = new ParallelBatchSolver(threads, SolveStrategy.PROPAGATION))
+        {
+            batchSolver.setStatisticsEnabled(true);
+            batchSolver.setIndex(index);
+            try
+            {
+                if (packedInput)
+                {
+                    batchSolver.solve(Paths.get(args[0]), sink);
+                }
+                else
+                {
+                    batchSolver.solve(in, sink);
+                }
+            }
+            finally
+            {
+                sink.close();
+                if (index != null)
+                {
+                    index.close();
+                }
+            }
+            System.err.printf("Solved %d of %d puzzles on %d threads in %.1f ms (%.0f puzzles/sec)%n",
+                              batchSolver.getSolvedCount(), batchSolver.getPuzzleCount(), threads,
+                              batchSolver.getElapsedNanos() / 1e6,
+                              batchSolver.getPuzzlesPerSecond());
+            if (index != null)
+            {
+                System.err.println("Found " + batchSolver.getKnownCount() + " puzzles in the index, which now holds "
+                                   + index.size());
+            }
+            if (verifier != null)
+            {
+                System.err.println("Verified " + verifier.getVerifiedCount() + " solutions, "
+                                   + verifier.getInvalidCount() + " invalid");
+            }
+            System.err.println(batchSolver.getStatistics());
+        }
+        finally
+        {
+            if (args.length > 0  &&  !packedInput)
+            {
+                in.close();
+            }
+        }
+    } // end main
+
+} // end ParallelBatchSolver
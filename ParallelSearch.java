@@ -0,0 +1,284 @@
+package SudokuSolver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Solves a single puzzle on several threads by splitting its search tree.
+ * The first few branching cells are expanded breadth-first into subtrees,
+ * and the subtrees are searched concurrently, each by a worker thread's own
+ * Grid. As soon as one worker finds a solution (or, when counting solutions,
+ * the solution limit is reached), the other workers stop cooperatively at
+ * their next search node.
+ *
+ * This is meant for very hard puzzles, where latency is bounded by a single
+ * search thread; easy puzzles are solved faster by Grid.solveGrid() alone.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class ParallelSearch implements AutoCloseable
+{
+    private static final int SUBTREES_PER_THREAD = 8;  // splitting stops at this many per thread
+    private static final int MAX_SPLIT_DEPTH = 6;      // splitting stops after this many cells
+
+    private final int threads;
+    private final ExecutorService pool;
+    private final ThreadLocal<Grid> workerGrid;  // one reusable grid per worker thread
+    private final AtomicLong nodeCount;          // nodes explored by the last solve
+
+    /**
+     * Constructor for a parallel search using the given number of worker threads.
+     * @param threads  number of worker threads (at least 1)
+     */
+    public ParallelSearch(int threads)
+    {
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("Number of threads must be at least 1");
+        }
+        this.threads = threads;
+        pool = Executors.newFixedThreadPool(threads);
+        workerGrid = ThreadLocal.withInitial(Grid::new);
+        nodeCount = new AtomicLong();
+    } // end constructor
+
+
+    /**
+     * Attempts to solve the grid's puzzle, using the grid's strategy in every
+     * worker. On success the grid's blank cells are filled with the solution.
+     * @param grid  the grid holding the puzzle
+     * @return  True if the puzzle is successfully solved; false otherwise
+     */
+    public boolean solve(Grid grid)
+    {
+        SearchControl control = new SearchControl(1, grid.getCellCount());
+        run(grid, control);
+        boolean solved = control.getSolutionCount() > 0;
+        if (solved)
+        {
+            grid.fillBlankCells(control.getFirstSolution(), 0);
+        }
+        return solved;
+    } // end solve
+
+
+    /**
+     * Counts the solutions of the grid's puzzle, stopping every worker as soon
+     * as the given limit is reached. The grid's values are not changed.
+     * @param grid   the grid holding the puzzle
+     * @param limit  the maximum number of solutions to count (at least 1)
+     * @return  the number of solutions found, between 0 and limit
+     */
+    public int countSolutions(Grid grid, int limit)
+    {
+        if (limit < 1)
+        {
+            throw new IllegalArgumentException("Solution limit must be at least 1");
+        }
+        SearchControl control = new SearchControl(limit, grid.getCellCount());
+        run(grid, control);
+        return control.getSolutionCount();
+    } // end countSolutions
+
+
+    /**
+     * Determines whether the grid's puzzle has exactly one solution, stopping
+     * every worker as soon as a second solution is found.
+     * @param grid  the grid holding the puzzle
+     * @return  True if the puzzle has a unique solution, False otherwise.
+     */
+    public boolean hasUniqueSolution(Grid grid)
+    {
+        return countSolutions(grid, 2) == 1;
+    } // end hasUniqueSolution
+
+
+    /**
+     * Returns the total number of search nodes explored by all workers (and
+     * while splitting) during the last solve or count.
+     * @return  the node count of the last search
+     */
+    public long getNodeCount()
+    {
+        return nodeCount.get();
+    } // end getNodeCount
+
+
+    // Private method that splits the puzzle into subtrees and searches them
+    // concurrently, reporting every solution to the control
+    private void run(Grid grid, SearchControl control)
+    {
+        nodeCount.set(0);
+        byte[] givens = new byte[grid.getCellCount()];
+        grid.copyGivens(givens, 0);
+        final SolveStrategy strategy = grid.getStrategy();
+        final int boxSize = grid.getBoxSize();
+
+        // Submit one task per subtree
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (final byte[] subtree : split(givens, boxSize, strategy, control))
+        {
+            tasks.add(() -> {
+                searchSubtree(subtree, boxSize, strategy, control);
+                return null;
+            });
+        } // end for
+
+        try
+        {
+            for (Future<Void> result : pool.invokeAll(tasks))
+            {
+                result.get();
+            } // end for
+        }
+        catch (InterruptedException e)
+        {
+            control.stop();
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            control.stop();
+            throw new IllegalStateException("Search of a subtree failed", e.getCause());
+        }
+    } // end run
+
+
+    // Private method that expands the search tree breadth-first, one branching
+    // cell per level, and returns the grid values at the root of each subtree.
+    // Grids completed while splitting are reported to the control directly.
+    private List<byte[]> split(byte[] givens, int boxSize, SolveStrategy strategy,
+                               SearchControl control)
+    {
+        Grid splitter = new Grid(boxSize);
+        splitter.setStrategy(strategy);
+        byte[] state = new byte[givens.length];
+
+        List<byte[]> frontier = new ArrayList<>();
+        frontier.add(givens);
+        int depth = 0;
+        while (depth < MAX_SPLIT_DEPTH  &&  !frontier.isEmpty()
+               && frontier.size() < threads * SUBTREES_PER_THREAD  &&  !control.isStopped())
+        {
+            List<byte[]> nextLevel = new ArrayList<>();
+            for (byte[] subtree : frontier)
+            {
+                splitter.load(subtree, 0);
+                int branchCell = splitter.prepareBranch();
+                splitter.copyValues(state, 0);
+                if (branchCell == -1)  // complete grid
+                {
+                    if (splitter.isValidGrid())
+                    {
+                        control.recordSolution(state);
+                    }
+                }
+                else if (branchCell >= 0)  // one child subtree for each candidate value
+                {
+                    int candidates = splitter.getCandidates(branchCell);
+                    while (candidates != 0)
+                    {
+                        byte[] child = state.clone();
+                        child[branchCell] = (byte) Integer.numberOfTrailingZeros(candidates);
+                        candidates &= candidates - 1;
+                        nextLevel.add(child);
+                        nodeCount.incrementAndGet();
+                    } // end while
+                }
+            } // end for (a subtree with a contradiction has no children)
+            frontier = nextLevel;
+            depth++;
+        } // end while
+
+        if (control.isStopped())
+        {
+            frontier.clear();
+        }
+        return frontier;
+    } // end split
+
+
+    // Private method run by a worker thread to search one subtree
+    private void searchSubtree(byte[] subtree, int boxSize, SolveStrategy strategy,
+                               SearchControl control)
+    {
+        Grid grid = workerGrid.get();
+        if (grid.getBoxSize() != boxSize)  // the worker's last puzzle had another size
+        {
+            grid = new Grid(boxSize);
+            workerGrid.set(grid);
+        }
+        grid.setStrategy(strategy);
+        grid.load(subtree, 0);
+        grid.setSearchControl(control);
+        try
+        {
+            grid.solveGrid();
+            nodeCount.addAndGet(grid.getNodeCount());
+        }
+        finally
+        {
+            grid.setSearchControl(null);
+        }
+    } // end searchSubtree
+
+
+    /**
+     * Shuts down the worker threads.
+     */
+    @Override public void close()
+    {
+        pool.shutdown();
+    } // end close
+
+
+
+    // Test stub for ParallelSearch class
+    public static void main(String[] args)
+    {
+        // A puzzle built to defeat row-major backtracking
+        int[][] intGrid = { {0,0,0,0,0,0,0,0,0},
+                            {0,0,0,0,0,3,0,8,5},
+                            {0,0,1,0,2,0,0,0,0},
+                            {0,0,0,5,0,7,0,0,0},
+                            {0,0,4,0,0,0,1,0,0},
+                            {0,9,0,0,0,0,0,0,0},
+                            {5,0,0,0,0,0,0,7,3},
+                            {0,0,2,0,1,0,0,0,0},
+                            {0,0,0,0,4,0,0,0,9} };
+
+        try (ParallelSearch parallelSearch = new ParallelSearch(4))
+        {
+            for (SolveStrategy strategy : SolveStrategy.values())
+            {
+                if (strategy != SolveStrategy.BACKTRACKING)  // far too slow on this puzzle
+                {
+                    Grid testGrid = new Grid(intGrid);
+                    testGrid.setStrategy(strategy);
+                    long startTime = System.nanoTime();
+                    boolean solved = parallelSearch.solve(testGrid);
+                    long elapsed = System.nanoTime() - startTime;
+                    System.out.println(strategy + ": solved? " + solved + " valid? "
+                                       + testGrid.isValidGrid() + " nodes: "
+                                       + parallelSearch.getNodeCount() + " time: "
+                                       + elapsed / 1000 + " us");
+                }
+            } // end for
+
+            // Count solutions of a unique puzzle and of a puzzle with many solutions
+            Grid uniqueGrid = new Grid(intGrid);
+            uniqueGrid.setStrategy(SolveStrategy.PROPAGATION);
+            System.out.println("\nSolutions of puzzle (limit 2): "
+                               + parallelSearch.countSolutions(uniqueGrid, 2));
+            Grid emptyGrid = new Grid(new int[9][9]);
+            emptyGrid.setStrategy(SolveStrategy.PROPAGATION);
+            System.out.println("Solutions of empty grid (limit 100): "
+                               + parallelSearch.countSolutions(emptyGrid, 100));
+        }
+    } // end test main
+
+} // end ParallelSearch
@@ -0,0 +1,78 @@
+package SudokuSolver;
+
+/**
+ * Fixed sets of puzzles of known difficulty, used to measure and compare
+ * solver performance. Every puzzle has a unique solution.
+ * @author Tze-Hei "Zee" Yong
+ */
+public enum PuzzleCorpus
+{
+    /**
+     * Puzzles with many givens that need little or no guessing.
+     */
+    EASY("200006754007904180384007020500082070038700400009600005005370090870060001013058000",
+         "003020600900305001001806400008102900700000008006708200002609500800203009005010300",
+         "200080300060070084030500209000105408000000000402706000301007040720040060004010003",
+         "000000907000420180000705026100904000050000040000507009920108000034059000507000000",
+         "030050040008010500460000012070502080000603000040109030250000098001020600080060020"),
+
+    /**
+     * Well-known hard puzzles that need deep guessing.
+     */
+    HARD("800000000003600000070090200050007000000045700000100030001000068008500010090000400",
+         "000000012000000003002300400001800005060070800000009000008500000900040500470006000",
+         "000000039000001005003050800008090006070002000100400000009080050020000600400700000"),
+
+    /**
+     * Puzzles with 17 givens, the minimum for a unique solution.
+     */
+    MINIMUM_17_CLUE("520006000000000701300000000000400800600000050000000000041800000000030020008700000",
+                    "000000010400000000020000000000050407008000300001090000300400200050100000000806000",
+                    "000000010400000000020000000000050604008000300001090000300400200050100000000807000",
+                    "000000012000035000000600070700000300000400800100000000000120000080000040050000600",
+                    "000000012003600000000007000410020000000500300700000600280000040000300500000000000",
+                    "000000012008030000000000040120500000000004700060000000507000300000620000000100000"),
+
+    /**
+     * Puzzles built against row-major backtracking: the solution of the top
+     * row is 9 8 7 6 5 4 3 2 1, and at least its first seven cells are blank
+     * (all nine in the first puzzle), so the values of those cells are tried
+     * in the worst possible order.
+     */
+    ADVERSARIAL("000000000000003085001020000000507000004000100090000000500000073002010000000040009",
+                "000000021000073000000900080800000700000400600200000000000210000060000040030000900",
+                "000000021005900000000008000320010000000400500800000900160000030000500400000000000",
+                "000000021003090000000000080210400000000008600070000000406000900000710000000200000");
+
+    private final String[] puzzles;  // 81 digits each, 0 for blank cells
+
+    PuzzleCorpus(String... puzzles)
+    {
+        this.puzzles = puzzles;
+    } // end constructor
+
+    /**
+     * Returns the number of puzzles in the corpus.
+     * @return  the puzzle count
+     */
+    public int size()
+    {
+        return puzzles.length;
+    } // end size
+
+    /**
+     * Returns one puzzle of the corpus as a grid of initial values.
+     * @param number  the puzzle's position in the corpus (0 to size() - 1)
+     * @return  a new 9 x 9 integer array, with 0 for blank cells
+     */
+    public int[][] getPuzzle(int number)
+    {
+        int[][] result = new int[9][9];
+        for (int index = 0; index < 81; index++)
+        {
+            result[index / 9][index % 9] = puzzles[number].charAt(index) - '0';
+        } // end for
+        return result;
+    } // end getPuzzle
+
+} // end PuzzleCorpus
@@ -0,0 +1,361 @@
+package SudokuSolver;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Generates puzzles with a unique solution. Each puzzle starts from a random
+ * complete grid, made by filling the diagonal blocks with random permutations
+ * and solving the rest. Clues are then removed in random order, each removal
+ * kept only if the solution stays unique, until the target clue count or
+ * target difficulty is reached or no more clues can be removed.
+ *
+ * A puzzle depends only on its seed, so generation is reproducible whatever
+ * the number of threads. Many puzzles are generated in parallel on a
+ * ForkJoinPool, each worker thread reusing its own Grid and buffers.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class PuzzleGenerator implements AutoCloseable
+{
+    private static final int CHUNK_SIZE = 256;  // puzzles generated between writes
+    private static final int SPLIT_SIZE = 4;    // puzzles below which a task is not split
+
+    private final Topology topology;
+    private final int boxSize;
+    private final int size;       // rows, columns, and values
+    private final int cellCount;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Worker> worker;  // one grid and set of buffers per thread
+
+    private int targetClues;      // removal stops at this many clues
+    private long targetGuesses;   // removal stops once solving needs this many guesses (0 for none)
+
+    // The grid and buffers used by one thread to generate puzzles
+    private class Worker
+    {
+        final Grid grid = new Grid(boxSize);
+        final byte[] solution = new byte[cellCount];  // the complete grid
+        final byte[] puzzle = new byte[cellCount];    // the puzzle being reduced
+        final int[] order = new int[cellCount];       // cells in the order they are tried
+
+        Worker()
+        {
+            grid.setStrategy(SolveStrategy.PROPAGATION);
+        } // end constructor
+    } // end Worker
+
+    // Task that generates the puzzles with seeds firstSeed + start (inclusive)
+    // to firstSeed + end (exclusive) into a buffer, splitting in half until
+    // the range is small
+    private class GenerateTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        private final long firstSeed;
+        private final int start;
+        private final int end;
+        private final transient byte[] destination;  // cellCount values per puzzle, from index 0
+
+        GenerateTask(long firstSeed, int start, int end, byte[] destination)
+        {
+            this.firstSeed = firstSeed;
+            this.start = start;
+            this.end = end;
+            this.destination = destination;
+        } // end constructor
+
+        @Override protected void compute()
+        {
+            if (end - start <= SPLIT_SIZE)
+            {
+                for (int puzzle = start; puzzle < end; puzzle++)
+                {
+                    generateInto(firstSeed + puzzle, destination, puzzle * cellCount);
+                } // end for
+            }
+            else
+            {
+                int middle = (start + end) >>> 1;
+                invokeAll(new GenerateTask(firstSeed, start, middle, destination),
+                          new GenerateTask(firstSeed, middle, end, destination));
+            }
+        } // end compute
+    } // end GenerateTask
+
+    /**
+     * Constructor for a generator of 9 x 9 puzzles on every available core.
+     */
+    public PuzzleGenerator()
+    {
+        this(3, Runtime.getRuntime().availableProcessors());
+    } // end constructor
+
+    /**
+     * Constructor for a generator of puzzles with blocks of the given size,
+     * using the given number of worker threads for generate(long, int, OutputStream).
+     * @param boxSize  rows of cells in one block (2 to 5)
+     * @param threads  number of worker threads (at least 1)
+     */
+    public PuzzleGenerator(int boxSize, int threads)
+    {
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("Number of threads must be at least 1");
+        }
+        topology = Topology.of(boxSize);  // rejects unsupported block sizes
+        this.boxSize = boxSize;
+        size = topology.getSize();
+        cellCount = topology.getCellCount();
+        pool = new ForkJoinPool(threads);
+        worker = ThreadLocal.withInitial(Worker::new);
+        targetClues = 0;
+        targetGuesses = 0;
+    } // end constructor
+
+
+    /**
+     * Sets the number of clues at which removal stops. Removal also stops
+     * when no clue can be removed without losing uniqueness, so puzzles may
+     * have more clues than the target. The default, 0, removes as many clues
+     * as possible.
+     * @param clues  the target clue count
+     */
+    public void setTargetClues(int clues)
+    {
+        if (clues < 0  ||  clues > cellCount)
+        {
+            throw new IllegalArgumentException("Target clue count out of range (0 to "
+                                               + cellCount + "): " + clues);
+        }
+        targetClues = clues;
+    } // end setTargetClues
+
+
+    /**
+     * Sets the difficulty at which removal stops: the number of values the
+     * PROPAGATION strategy has to guess to solve the puzzle. Puzzles that
+     * cannot reach it end with as few clues as possible. The default, 0,
+     * sets no target difficulty.
+     * @param guesses  the target number of guesses
+     */
+    public void setTargetGuesses(long guesses)
+    {
+        if (guesses < 0)
+        {
+            throw new IllegalArgumentException("Target guesses must not be negative");
+        }
+        targetGuesses = guesses;
+    } // end setTargetGuesses
+
+
+    /**
+     * Generates the puzzle for the given seed on the calling thread.
+     * @param seed  the seed; the same seed always gives the same puzzle
+     * @return  a new N x N integer array of the puzzle's clues, with 0 for blank cells
+     */
+    public int[][] generate(long seed)
+    {
+        Worker current = worker.get();
+        generateInto(seed, current.puzzle, 0);
+        int[][] result = new int[size][size];
+        for (int index = 0; index < cellCount; index++)
+        {
+            result[index / size][index % size] = current.puzzle[index];
+        } // end for
+        return result;
+    } // end generate
+
+
+    /**
+     * Generates the puzzles for seeds firstSeed to firstSeed + count - 1 in
+     * parallel, and writes them to the output stream in seed order in the
+     * standard line format (see PuzzleReader). Only 9 x 9 puzzles have a line
+     * format. The stream is flushed but not closed.
+     * @param firstSeed  the seed of the first puzzle
+     * @param count      the number of puzzles
+     * @param out        the stream the puzzle lines are written to
+     * @throws IOException  if the stream fails
+     */
+    public void generate(long firstSeed, int count, OutputStream out) throws IOException
+    {
+        if (size != 9)
+        {
+            throw new UnsupportedOperationException("Only 9 x 9 puzzles can be written as lines");
+        }
+        byte[] puzzles = new byte[CHUNK_SIZE * cellCount];
+        byte[] lines = new byte[CHUNK_SIZE * 82];
+        for (int done = 0; done < count; done += CHUNK_SIZE)
+        {
+            int chunkSize = Math.min(CHUNK_SIZE, count - done);
+            pool.invoke(new GenerateTask(firstSeed + done, 0, chunkSize, puzzles));
+            for (int puzzle = 0; puzzle < chunkSize; puzzle++)
+            {
+                PuzzleReader.formatLine(puzzles, puzzle * cellCount, lines, puzzle * 82);
+            } // end for
+            out.write(lines, 0, chunkSize * 82);
+        } // end for
+        out.flush();
+    } // end generate
+
+
+    // Private method that generates the puzzle for the given seed with the
+    // calling thread's worker, and copies its clues into the destination
+    private void generateInto(long seed, byte[] destination, int offset)
+    {
+        Worker current = worker.get();
+        SplittableRandom random = new SplittableRandom(seed);
+        makeCompleteGrid(current, random);
+
+        // Try the cells in random order
+        byte[] puzzle = current.puzzle;
+        int[] order = current.order;
+        System.arraycopy(current.solution, 0, puzzle, 0, cellCount);
+        for (int index = 0; index < cellCount; index++)
+        {
+            order[index] = index;
+        } // end for
+        shuffle(order, cellCount, random);
+
+        int clues = cellCount;
+        boolean targetReached = clues <= targetClues;
+        for (int k = 0; k < cellCount  &&  !targetReached; k++)
+        {
+            int cell = order[k];
+            if (hasOnlySolution(current, cell))
+            {
+                puzzle[cell] = 0;
+                clues--;
+                targetReached = clues <= targetClues
+                                ||  (targetGuesses > 0  &&  countGuesses(current) >= targetGuesses);
+            }
+            else
+            {
+                puzzle[cell] = current.solution[cell];
+            }
+        } // end for
+
+        if (destination != puzzle  ||  offset != 0)
+        {
+            System.arraycopy(puzzle, 0, destination, offset, cellCount);
+        }
+    } // end generateInto
+
+
+    // Private method that fills the worker's solution with a random complete
+    // grid: the diagonal blocks, which share no row or column, are filled with
+    // random permutations of the values, and the grid is solved from there.
+    // Any such start can be completed in a 9 x 9 grid, but not always in a
+    // 4 x 4 one, so new diagonal blocks are drawn until the solve succeeds.
+    private void makeCompleteGrid(Worker current, SplittableRandom random)
+    {
+        byte[] solution = current.solution;
+        int[] values = current.order;  // reused as a permutation of the values
+        boolean complete = false;
+        while (!complete)
+        {
+            for (int index = 0; index < cellCount; index++)
+            {
+                solution[index] = 0;
+            } // end for
+            for (int block = 0; block < boxSize; block++)
+            {
+                for (int value = 0; value < size; value++)
+                {
+                    values[value] = value + 1;
+                } // end for
+                shuffle(values, size, random);
+                int unit = 2 * size + block * (boxSize + 1);  // block on the diagonal
+                for (int k = 0; k < size; k++)
+                {
+                    solution[topology.getUnitCell(unit, k)] = (byte) values[k];
+                } // end for
+            } // end for
+
+            current.grid.load(solution, 0);
+            complete = current.grid.solveInto(solution, 0);
+        } // end while
+    } // end makeCompleteGrid
+
+
+    // Private method that checks whether the puzzle, with the given cell made
+    // blank, still has only the worker's solution. Since the puzzle with the
+    // cell filled in has only that solution, any other solution must put a
+    // different value in the cell, so the search can stop at the first
+    // solution found instead of exhausting the tree as counting to two would.
+    private boolean hasOnlySolution(Worker current, int cell)
+    {
+        current.puzzle[cell] = 0;
+        current.grid.load(current.puzzle, 0);
+        return !current.grid.hasSolutionWithout(cell / size, cell % size, current.solution[cell]);
+    } // end hasOnlySolution
+
+
+    // Private method returning the number of values the PROPAGATION strategy
+    // guesses to solve the worker's puzzle
+    private long countGuesses(Worker current)
+    {
+        current.grid.load(current.puzzle, 0);
+        current.grid.solveGrid();
+        return current.grid.getNodeCount();
+    } // end countGuesses
+
+
+    // Private method to shuffle the first length entries of an array
+    private static void shuffle(int[] array, int length, SplittableRandom random)
+    {
+        for (int i = length - 1; i > 0; i--)
+        {
+            int j = random.nextInt(i + 1);
+            int swap = array[i];
+            array[i] = array[j];
+            array[j] = swap;
+        } // end for
+    } // end shuffle
+
+
+    /**
+     * Shuts down the worker threads.
+     */
+    @Override public void close()
+    {
+        pool.shutdown();
+    } // end close
+
+
+    /**
+     * Command-line entry point. Generates 9 x 9 puzzles in the standard line
+     * format to the output file (or standard output), and prints the rate
+     * to standard error.
+     * Usage: PuzzleGenerator count [first-seed [target-clues [output-file [threads]]]]
+     * @param args  the puzzle count, and optional seed, clue target, file name, and thread count
+     * @throws IOException  if the file cannot be written
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+        long firstSeed = (args.length > 1) ? Long.parseLong(args[1]) : 1;
+        int clues = (args.length > 2) ? Integer.parseInt(args[2]) : 0;
+        OutputStream out = (args.length > 3) ? new FileOutputStream(args[3]) : System.out;
+        int threads = (args.length > 4) ? Integer.parseInt(args[4])
+                                        : Runtime.getRuntime().availableProcessors();
+        try (PuzzleGenerator generator = new PuzzleGenerator(3, threads))
+        {
+            generator.setTargetClues(clues);
+            long startTime = System.nanoTime();
+            generator.generate(firstSeed, count, out);
+            long elapsed = System.nanoTime() - startTime;
+            System.err.printf("Generated %d puzzles on %d threads in %.1f ms (%.0f puzzles/sec)%n",
+                              count, threads, elapsed / 1e6, count * 1e9 / elapsed);
+        }
+        finally
+        {
+            if (args.length > 3)
+            {
+                out.close();
+            }
+        }
+    } // end main
+
+} // end PuzzleGenerator
@@ -0,0 +1,134 @@
+package SudokuSolver;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads puzzles in the standard line format from a byte stream: one puzzle
+ * per line, 81 characters in row-major order, with '1' to '9' for given values
+ * and '0' or '.' for blank cells. LF and CRLF line endings are accepted, and
+ * empty lines are skipped. Puzzles are decoded straight from a byte buffer
+ * into cell values (0 to 9) in the caller's array, so nothing is allocated
+ * per puzzle.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class PuzzleReader
+{
+    private static final int BUFFER_SIZE = 1 << 16;  // bytes read at a time
+
+    private final InputStream in;
+    private final byte[] buffer;  // raw bytes read from the input stream
+    private int position;         // index of the next unread byte in buffer
+    private int limit;            // number of valid bytes in buffer
+    private long lineNumber;      // line number of the last puzzle read
+
+    /**
+     * Constructor takes the stream to read puzzle lines from.
+     * @param in  the input stream; it is not closed by the reader
+     */
+    public PuzzleReader(InputStream in)
+    {
+        this.in = in;
+        buffer = new byte[BUFFER_SIZE];
+        position = 0;
+        limit = 0;
+        lineNumber = 0;
+    } // end constructor
+
+
+    /**
+     * Reads the next puzzle and stores its 81 cell values (0 for blank cells)
+     * in the given array.
+     * @param destination  the array to store the cell values in
+     * @param offset       index in the array for the first cell's value
+     * @return  true if a puzzle was read; false at the end of the stream
+     * @throws IOException  if the stream fails, or a line is not an 81-character puzzle
+     */
+    public boolean next(byte[] destination, int offset) throws IOException
+    {
+        int lineLength = 0;  // characters read so far on the current line
+        boolean lineValid = true;
+        boolean endOfLine = false;
+        boolean endOfStream = false;
+        while (!endOfLine  &&  !endOfStream)
+        {
+            if (position == limit)  // refill the buffer
+            {
+                limit = in.read(buffer);
+                position = 0;
+                if (limit < 0)
+                {
+                    limit = 0;
+                    endOfStream = true;
+                }
+            }
+            else
+            {
+                int character = buffer[position];
+                position++;
+                if (character == '\n')
+                {
+                    lineNumber++;
+                    endOfLine = (lineLength > 0);  // skip empty lines
+                }
+                else if (character != '\r')
+                {
+                    if (lineLength < 81)
+                    {
+                        if (character >= '1'  &&  character <= '9')
+                        {
+                            destination[offset + lineLength] = (byte) (character - '0');
+                        }
+                        else if (character == '0'  ||  character == '.')
+                        {
+                            destination[offset + lineLength] = 0;
+                        }
+                        else
+                        {
+                            lineValid = false;
+                        }
+                    }
+                    lineLength++;
+                }
+            }
+        } // end while (exited at the end of a non-empty line or of the stream)
+
+        if (endOfStream  &&  lineLength > 0)
+        {
+            lineNumber++;  // the last line need not end with a line break
+        }
+        if (lineLength > 0  &&  (!lineValid  ||  lineLength != 81))
+        {
+            throw new IOException("Line " + lineNumber + " is not an 81-character puzzle");
+        }
+        return lineLength > 0;
+    } // end next
+
+
+    /**
+     * Returns the line number of the last puzzle read.
+     * @return  the line number, counting from 1 (0 if nothing has been read)
+     */
+    public long getLineNumber()
+    {
+        return lineNumber;
+    } // end getLineNumber
+
+
+    /**
+     * Writes one puzzle or solution line in the standard format: 81 digit
+     * characters ('0' for blank cells) followed by a line break.
+     * @param values       the array holding the 81 cell values
+     * @param offset       index in the array of the first cell's value
+     * @param destination  the array to write the 82 line bytes into
+     * @param position     index in the destination array to start writing at
+     */
+    public static void formatLine(byte[] values, int offset, byte[] destination, int position)
+    {
+        for (int index = 0; index < 81; index++)
+        {
+            destination[position + index] = (byte) ('0' + values[offset + index]);
+        } // end for
+        destination[position + 81] = '\n';
+    } // end formatLine
+
+} // end PuzzleReader
@@ -0,0 +1,43 @@
+package SudokuSolver;
+import java.io.IOException;
+
+/**
+ * The last stage of a batch: receives each puzzle with its solution and
+ * writes it somewhere. Sinks buffer their output, so results are written in
+ * large blocks; nothing is guaranteed to be written until flush or close.
+ * Results are given as 81 cell values of a 9 x 9 grid in row-major order
+ * (0 for blank cells), as read by PuzzleReader. A sink is used by one
+ * thread at a time.
+ * @author Tze-Hei "Zee" Yong
+ */
+public interface ResultSink extends AutoCloseable
+{
+    /**
+     * Receives the result of one puzzle. The arrays are only read during the
+     * call, so the caller may reuse them.
+     * @param puzzle          the array holding the puzzle's cell values
+     * @param puzzleOffset    index in the array of the puzzle's first cell
+     * @param solution        the array holding the solution's cell values
+     *                        (not read if the puzzle was not solved)
+     * @param solutionOffset  index in the array of the solution's first cell
+     * @param solved          whether the puzzle was solved
+     * @param statistics      the statistics of the solve, or null if not collected
+     * @throws IOException  if the result cannot be written
+     */
+    void accept(byte[] puzzle, int puzzleOffset, byte[] solution, int solutionOffset,
+                boolean solved, SolveStatistics statistics) throws IOException;
+
+    /**
+     * Writes out every result received so far.
+     * @throws IOException  if the results cannot be written
+     */
+    void flush() throws IOException;
+
+    /**
+     * Writes out every result received so far and releases the sink's
+     * output. No result may be given to the sink afterwards.
+     * @throws IOException  if the results cannot be written
+     */
+    @Override void close() throws IOException;
+
+} // end ResultSink
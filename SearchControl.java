@@ -0,0 +1,68 @@
+package SudokuSolver;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coordinates several grids searching different parts of the same puzzle's
+ * search tree on different threads. Solutions found by any grid are counted
+ * here, and once the solution limit is reached every grid is told to stop.
+ * @author Tze-Hei "Zee" Yong
+ */
+class SearchControl
+{
+    private final int solutionLimit;          // stop once this many solutions are found
+    private final AtomicInteger solutionCount;
+    private final byte[] firstSolution;       // values of the first solution found
+    private volatile boolean stopped;         // checked by every grid at each search node
+
+    // Constructor takes the number of solutions after which all searches stop,
+    // and the number of cells in the grid
+    SearchControl(int solutionLimit, int cellCount)
+    {
+        this.solutionLimit = solutionLimit;
+        solutionCount = new AtomicInteger();
+        firstSolution = new byte[cellCount];
+        stopped = false;
+    } // end constructor
+
+    // Records a solution found by one of the grids, keeping a copy if it is
+    // the first. Returns true if the grid should stop searching.
+    boolean recordSolution(byte[] values)
+    {
+        int count = solutionCount.incrementAndGet();
+        if (count == 1)
+        {
+            System.arraycopy(values, 0, firstSolution, 0, firstSolution.length);
+        }
+        if (count >= solutionLimit)
+        {
+            stopped = true;
+        }
+        return stopped;
+    } // end recordSolution
+
+    // Tells every grid to stop searching
+    void stop()
+    {
+        stopped = true;
+    } // end stop
+
+    // Returns true once the searches should stop
+    boolean isStopped()
+    {
+        return stopped;
+    } // end isStopped
+
+    // Returns the number of solutions found, at most the solution limit
+    int getSolutionCount()
+    {
+        return Math.min(solutionCount.get(), solutionLimit);
+    } // end getSolutionCount
+
+    // Returns the values of the first solution found (valid only if the
+    // solution count is above 0 and all searches have finished)
+    byte[] getFirstSolution()
+    {
+        return firstSolution;
+    } // end getFirstSolution
+
+} // end SearchControl
@@ -0,0 +1,287 @@
+package SudokuSolver;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size-capped cache of 9 x 9 solutions, keyed by the canonical form of the
+ * puzzle (see Canonicalizer), so a puzzle is solved once for itself and all
+ * of its relabeled, reordered, and transposed variants. The canonical
+ * puzzle's solution is stored, and mapped back through the inverse transform
+ * for each puzzle that hits it. When the cache is full, the least recently
+ * used solution is dropped.
+ *
+ * The cache may be shared by many threads; each thread gets its own
+ * Canonicalizer and buffers.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class SolutionCache
+{
+    private final int capacity;
+    private final LinkedHashMap<PuzzleKey, byte[]> solutions;  // in least recently used order
+    private final ThreadLocal<Worker> worker;
+
+    private long hitCount;
+    private long missCount;
+
+    // The canonicalizer and buffers used by one thread
+    private static class Worker
+    {
+        final Canonicalizer canonicalizer = new Canonicalizer();
+        final byte[] puzzle = new byte[81];     // givens of the grid being solved
+        final byte[] canonical = new byte[81];  // the puzzle or its solution in canonical form
+        final byte[] solution = new byte[81];   // the solution of the grid being solved
+    } // end Worker
+
+    // A canonical puzzle used as a map key
+    private static class PuzzleKey
+    {
+        private final byte[] values;
+        private final int hash;
+
+        PuzzleKey(byte[] values)
+        {
+            this.values = values;
+            hash = Arrays.hashCode(values);
+        } // end constructor
+
+        @Override public int hashCode()
+        {
+            return hash;
+        } // end hashCode
+
+        @Override public boolean equals(Object other)
+        {
+            return other instanceof PuzzleKey  &&  Arrays.equals(values, ((PuzzleKey) other).values);
+        } // end equals
+    } // end PuzzleKey
+
+    /**
+     * Constructor for a cache holding up to the given number of solutions.
+     * @param capacity  the most solutions kept (at least 1)
+     */
+    public SolutionCache(int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Cache capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        solutions = new LinkedHashMap<PuzzleKey, byte[]>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override protected boolean removeEldestEntry(Map.Entry<PuzzleKey, byte[]> eldest)
+            {
+                return size() > SolutionCache.this.capacity;
+            } // end removeEldestEntry
+        };
+        worker = ThreadLocal.withInitial(Worker::new);
+    } // end constructor
+
+
+    /**
+     * Solves the grid, taking the solution from the cache if the puzzle or
+     * one of its variants has been solved before, and adding it otherwise.
+     * Grids that are not 9 x 9, and nearly empty puzzles with too many
+     * symmetries to canonicalize, are solved directly. A grid answered from
+     * the cache does no search, so its node count and statistics are not updated.
+     * @param grid  the grid to solve
+     * @return  True if the puzzle is successfully solved; false otherwise
+     */
+    public boolean solve(Grid grid)
+    {
+        if (grid.getSize() != 9)
+        {
+            return grid.solveGrid();
+        }
+        Worker current = worker.get();
+        grid.copyGivens(current.puzzle, 0);
+        if (!current.canonicalizer.canonicalize(current.puzzle, 0, current.canonical, 0))
+        {
+            return grid.solveGrid();
+        }
+        PuzzleKey key = new PuzzleKey(current.canonical.clone());
+
+        byte[] cached;
+        synchronized (this)
+        {
+            cached = solutions.get(key);
+            if (cached != null)
+            {
+                hitCount++;
+            }
+            else
+            {
+                missCount++;
+            }
+        }
+        if (cached != null)
+        {
+            current.canonicalizer.fromCanonical(cached, 0, current.solution, 0);
+            grid.fillBlankCells(current.solution, 0);
+            return true;
+        }
+
+        boolean solved = grid.solveInto(current.solution, 0);
+        if (solved)
+        {
+            byte[] canonicalSolution = new byte[81];
+            current.canonicalizer.toCanonical(current.solution, 0, canonicalSolution, 0);
+            synchronized (this)
+            {
+                solutions.put(key, canonicalSolution);
+            }
+        }
+        return solved;
+    } // end solve
+
+
+    /**
+     * Removes every solution and resets the hit and miss counts.
+     */
+    public synchronized void clear()
+    {
+        solutions.clear();
+        hitCount = 0;
+        missCount = 0;
+    } // end clear
+
+
+    public int getCapacity()
+    {
+        return capacity;
+    } // end getCapacity
+
+    public synchronized int size()
+    {
+        return solutions.size();
+    } // end size
+
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    } // end getHitCount
+
+    public synchronized long getMissCount()
+    {
+        return missCount;
+    } // end getMissCount
+
+
+    /**
+     * Test method. Solves a few puzzles, then random symmetric variants
+     * of it, and checks that every variant is answered from the cache with a
+     * valid solution that keeps its givens.
+     * @param args  not used
+     */
+    public static void main(String[] args)
+    {
+        SolutionCache cache = new SolutionCache(1000);
+        Grid grid = new Grid();
+        grid.setStrategy(SolveStrategy.PROPAGATION);
+        java.util.Random random = new java.util.Random(1);
+        int variants = 0;
+        int failures = 0;
+        String[] lines = {
+            "200006754007904180384007020500082070038700400009600005005370090870060001013058000",  // easy
+            "800000000003600000070090200050007000000045700000100030001000068008500010090000400",  // hard
+            "000000010400000000020000000000050407008000300001090000300400200050100000000806000",  // 17 givens
+            "000000000000003085001020000000507000004000100090000000500000073002010000000040009"   // top row 9 to 1
+        };
+        for (String line : lines)
+        {
+            int[][] puzzle = new int[9][9];
+            for (int index = 0; index < 81; index++)
+            {
+                puzzle[index / 9][index % 9] = line.charAt(index) - '0';
+            } // end for
+            grid.load(puzzle);
+            cache.solve(grid);
+            for (int k = 0; k < 20; k++)
+            {
+                int[][] variant = shuffleSymmetries(puzzle, random);
+                grid.load(variant);
+                boolean solved = cache.solve(grid);
+                boolean keepsGivens = true;
+                for (int row = 0; row < 9; row++)
+                {
+                    for (int column = 0; column < 9; column++)
+                    {
+                        int given = variant[row][column];
+                        keepsGivens &= given == 0  ||  grid.getValue(row, column) == given;
+                    } // end for
+                } // end for
+                if (!solved  ||  !grid.isValidGrid()  ||  !keepsGivens)
+                {
+                    failures++;
+                }
+                variants++;
+            } // end for
+        } // end for
+        System.out.println("Variants solved: " + variants + ", failures: " + failures);
+        System.out.println("Hits: " + cache.getHitCount() + ", misses: " + cache.getMissCount()
+                           + ", cached solutions: " + cache.size());
+    } // end main
+
+
+    // Private test helper returning a copy of a puzzle with its digits
+    // relabeled, bands, rows, stacks, and columns reordered, and maybe transposed
+    private static int[][] shuffleSymmetries(int[][] puzzle, java.util.Random random)
+    {
+        int[] digits = randomOrder(10, 1, random);
+        int[] rows = randomBandOrder(random);
+        int[] columns = randomBandOrder(random);
+        boolean transpose = random.nextBoolean();
+        int[][] variant = new int[9][9];
+        for (int row = 0; row < 9; row++)
+        {
+            for (int column = 0; column < 9; column++)
+            {
+                int value = transpose ? puzzle[columns[column]][rows[row]]
+                                      : puzzle[rows[row]][columns[column]];
+                variant[row][column] = (value == 0) ? 0 : digits[value];
+            } // end for
+        } // end for
+        return variant;
+    } // end shuffleSymmetries
+
+
+    // Private test helper returning an order of the nine rows (or columns)
+    // that keeps each band (or stack) together
+    private static int[] randomBandOrder(java.util.Random random)
+    {
+        int[] bands = randomOrder(3, 0, random);
+        int[] order = new int[9];
+        for (int band = 0; band < 3; band++)
+        {
+            int[] within = randomOrder(3, 0, random);
+            for (int k = 0; k < 3; k++)
+            {
+                order[band * 3 + k] = bands[band] * 3 + within[k];
+            } // end for
+        } // end for
+        return order;
+    } // end randomBandOrder
+
+
+    // Private test helper returning a random order of the values first to
+    // length - 1, indexed from first (entries below first are left as is)
+    private static int[] randomOrder(int length, int first, java.util.Random random)
+    {
+        int[] order = new int[length];
+        for (int k = 0; k < length; k++)
+        {
+            order[k] = k;
+        } // end for
+        for (int k = length - 1; k > first; k--)
+        {
+            int j = first + random.nextInt(k - first + 1);
+            int swap = order[k];
+            order[k] = order[j];
+            order[j] = swap;
+        } // end for
+        return order;
+    } // end randomOrder
+
+} // end SolutionCache
@@ -0,0 +1,27 @@
+package SudokuSolver;
+
+/**
+ * The outcome of a bounded solve.
+ * @author Tze-Hei "Zee" Yong
+ */
+public enum SolveResult 
+{
+    /**
+     * A solution was found; the grid holds it.
+     */
+    SOLVED,
+    
+    /**
+     * The whole search space was explored without finding a solution, so the
+     * puzzle has none.
+     */
+    UNSOLVABLE,
+    
+    /**
+     * The search was stopped before it finished, because the node budget or
+     * time limit ran out or the solve was cancelled. The puzzle may or may
+     * not have a solution; the grid holds only its givens.
+     */
+    BUDGET_EXCEEDED
+    
+} // end SolveResult
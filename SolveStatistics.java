@@ -0,0 +1,67 @@
+package SudokuSolver;
+
+/**
+ * The work done by one solve: guesses, backtracks, deepest guess nesting,
+ * and elapsed time. A SolveStatistics object is filled in by
+ * Grid.getStatistics, so one object can be reused for every solve of a
+ * batch without allocating.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class SolveStatistics
+{
+    private long nodeCount;       // values guessed for blank cells
+    private long backtrackCount;  // guesses undone because they led to no solution
+    private int maxDepth;         // most guesses on one search path at the same time
+    private long elapsedNanos;    // wall time of the solve
+    private boolean solved;       // whether the solve found a solution
+
+    /**
+     * Stores the results of one solve. Called by Grid.getStatistics.
+     * @param nodeCount       values guessed for blank cells
+     * @param backtrackCount  guesses undone because they led to no solution
+     * @param maxDepth        most guesses on one search path at the same time
+     * @param elapsedNanos    wall time of the solve in nanoseconds
+     * @param solved          whether the solve found a solution
+     */
+    public void set(long nodeCount, long backtrackCount, int maxDepth,
+                    long elapsedNanos, boolean solved)
+    {
+        this.nodeCount = nodeCount;
+        this.backtrackCount = backtrackCount;
+        this.maxDepth = maxDepth;
+        this.elapsedNanos = elapsedNanos;
+        this.solved = solved;
+    } // end set
+
+    public long getNodeCount()
+    {
+        return nodeCount;
+    } // end getNodeCount
+
+    public long getBacktrackCount()
+    {
+        return backtrackCount;
+    } // end getBacktrackCount
+
+    public int getMaxDepth()
+    {
+        return maxDepth;
+    } // end getMaxDepth
+
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    } // end getElapsedNanos
+
+    public boolean isSolved()
+    {
+        return solved;
+    } // end isSolved
+
+    @Override public String toString()
+    {
+        return "nodes:" + nodeCount + " backtracks:" + backtrackCount + " maxDepth:" + maxDepth
+               + " elapsed:" + elapsedNanos + "ns solved:" + solved;
+    } // end toString
+
+} // end SolveStatistics
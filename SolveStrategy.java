@@ -0,0 +1,32 @@
+package SudokuSolver;
+
+/**
+ * The search strategies a Grid can use to solve itself.
+ * @author Tze-Hei "Zee" Yong
+ */
+public enum SolveStrategy 
+{
+    /**
+     * Chronological backtracking over the blank cells in row-major order,
+     * trying values 1 through N in turn. No deductions are made.
+     */
+    BACKTRACKING,
+    
+    /**
+     * Backtracking that branches at every step on the blank cell with the
+     * fewest legal candidates, breaking ties in favour of the cell with the
+     * most blank peers. No deductions are made.
+     */
+    MINIMUM_REMAINING_VALUES,
+    
+    /**
+     * Fills naked singles and hidden singles in every row, column, and block
+     * until no more can be found, before search starts and after every guess.
+     * Guessing only happens when propagation gets stuck, and branches on
+     * cells in the same order as MINIMUM_REMAINING_VALUES, unless some value
+     * has fewer possible cells in a row, column, or block than that cell has
+     * candidates; then each of those cells is tried for the value instead.
+     */
+    PROPAGATION
+    
+} // end SolveStrategy
@@ -0,0 +1,479 @@
+package SudokuSolver;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent index of solved 9 x 9 puzzles, so a batch run can skip the
+ * puzzles solved by earlier runs. Each puzzle is stored with its solution
+ * (or as unsolvable) and the statistics of its solve.
+ *
+ * The index lives in one append-only log file: a 16-byte header, then one
+ * fixed-size record per puzzle holding the packed puzzle and solution (see
+ * PackedPuzzleFile), the solved flag, the statistics, and a CRC-32 of the
+ * record. Records are never changed once written, so the log is always a
+ * valid index up to its last complete record. Opening the index rebuilds
+ * the in-memory table from the log, cutting off a torn or corrupt record
+ * left at the end by a crash. A corrupt record anywhere else is skipped and
+ * kept in the log: its puzzle is simply not found, so it is solved again and
+ * appended. The log is locked while the index is open, so two runs cannot
+ * append to it at once.
+ *
+ * The in-memory table maps a 64-bit hash of each puzzle to its record
+ * number, using 12 bytes per slot and no object per puzzle, so a puzzle not
+ * in the index is rejected without touching the disk. A hit reads the
+ * record and compares the stored puzzle, so hash collisions never give a
+ * wrong answer. New records are buffered and appended in blocks.
+ *
+ * An index is not thread-safe.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class SolvedPuzzleIndex implements AutoCloseable
+{
+    /** The first four header bytes: "SPX" followed by the format version. */
+    public static final int MAGIC = 0x53505801;
+
+    /** Size in bytes of the header before the first record. */
+    public static final int HEADER_SIZE = 16;
+
+    /** Size in bytes of one record. */
+    public static final int RECORD_SIZE = 115;
+
+    // Offsets of the fields of a record
+    private static final int PUZZLE_AT = 0;
+    private static final int SOLUTION_AT = PUZZLE_AT + PackedPuzzleFile.RECORD_SIZE;
+    private static final int FLAGS_AT = SOLUTION_AT + PackedPuzzleFile.RECORD_SIZE;
+    private static final int NODES_AT = FLAGS_AT + 1;
+    private static final int BACKTRACKS_AT = NODES_AT + 8;
+    private static final int DEPTH_AT = BACKTRACKS_AT + 8;
+    private static final int NANOS_AT = DEPTH_AT + 4;
+    private static final int CRC_AT = NANOS_AT + 8;
+
+    private static final int FLAG_SOLVED = 1;
+    private static final int WRITE_RECORDS = 1024;  // records buffered before appending
+    private static final int READ_RECORDS = 8192;   // records read at a time while opening
+
+    private final FileChannel channel;
+    private final ByteBuffer pending;  // records not yet appended to the log
+    private final ByteBuffer record;   // one record read back from the log
+    private final CRC32 crc;
+    private final byte[] cells;        // one unpacked puzzle
+    private long writtenCount;         // records in the log file
+    private int recordCount;           // records in the log and in pending
+    private long droppedBytes;         // bytes of a torn record dropped on opening
+    private int skippedCount;          // corrupt records skipped on opening
+
+    // Open-addressing hash table: a key of 0 marks an empty slot
+    private long[] keys;      // puzzle hash of each slot
+    private int[] records;    // record number of each slot
+    private int mask;         // table length - 1
+
+    /**
+     * Constructor opening the index in the given log file, creating the file
+     * if it does not exist, and locking it. The in-memory table is rebuilt
+     * from the log.
+     * @param log  the log file
+     * @throws IOException  if the file cannot be opened, locked, read, or
+     *                      repaired, or is not an index log
+     */
+    public SolvedPuzzleIndex(Path log) throws IOException
+    {
+        channel = FileChannel.open(log, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                   StandardOpenOption.CREATE);
+        pending = ByteBuffer.allocate(WRITE_RECORDS * RECORD_SIZE);
+        record = ByteBuffer.allocate(RECORD_SIZE);
+        crc = new CRC32();
+        cells = new byte[81];
+        keys = new long[1024];
+        records = new int[1024];
+        mask = keys.length - 1;
+        try
+        {
+            FileLock lock = null;
+            try
+            {
+                lock = channel.tryLock();
+            }
+            catch (OverlappingFileLockException e)
+            {
+                // Locked by another index in this program: reported below
+            }
+            if (lock == null)
+            {
+                throw new IOException("Solved puzzle index is already open in another run: " + log);
+            }
+            if (channel.size() == 0)
+            {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(RECORD_SIZE).putLong(0).flip();
+                writeFully(header, 0);
+            }
+            rebuild();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+    } // end constructor
+
+
+    // Private method that checks the header, then reads every record of the
+    // log into the table, skipping corrupt ones. An incomplete record at the
+    // end, or a corrupt last record, is cut from the log.
+    private void rebuild() throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        if (header.hasRemaining()  ||  header.getInt(0) != MAGIC  ||  header.getInt(4) != RECORD_SIZE)
+        {
+            throw new IOException("Not a solved puzzle index (version " + (MAGIC & 0xFF) + ")");
+        }
+
+        ByteBuffer block = ByteBuffer.allocate(READ_RECORDS * RECORD_SIZE);
+        long position = HEADER_SIZE;
+        boolean lastIntact = true;  // whether the last complete record read is intact
+        boolean more = true;
+        while (more)
+        {
+            block.clear();
+            readFully(block, position);
+            int complete = block.position() / RECORD_SIZE;
+            for (int k = 0; k < complete; k++)
+            {
+                lastIntact = isIntact(block, k * RECORD_SIZE);
+                if (lastIntact)
+                {
+                    PackedPuzzleFile.unpack(block, k * RECORD_SIZE + PUZZLE_AT, cells, 0);
+                    insert(hash(cells, 0), recordCount);
+                }
+                else
+                {
+                    skippedCount++;
+                }
+                recordCount++;
+                position += RECORD_SIZE;
+            } // end for
+            more = complete == READ_RECORDS;  // a short block is the end of the log
+        } // end while
+        if (!lastIntact)
+        {
+            // Most likely torn by a crash while it was appended
+            skippedCount--;
+            recordCount--;
+            position -= RECORD_SIZE;
+        }
+        writtenCount = recordCount;
+        droppedBytes = channel.size() - position;
+        if (droppedBytes > 0)
+        {
+            channel.truncate(position);
+        }
+        channel.position(position);
+    } // end rebuild
+
+
+    /**
+     * Looks a puzzle up in the index.
+     * @param puzzle          the array holding the puzzle's cell values
+     * @param offset          index in the array of the puzzle's first cell
+     * @param solution        the array the stored solution is copied into,
+     *                        if the puzzle was solved
+     * @param solutionOffset  index in that array to copy the first cell to
+     * @param statistics      filled in with the stored statistics, including
+     *                        whether the puzzle was solved
+     * @return  true if the puzzle is in the index; false otherwise
+     * @throws IOException  if the log cannot be read
+     */
+    public boolean lookup(byte[] puzzle, int offset, byte[] solution, int solutionOffset,
+                          SolveStatistics statistics) throws IOException
+    {
+        int found = find(puzzle, offset, hash(puzzle, offset));
+        if (found >= 0)
+        {
+            ByteBuffer source = readRecord(found);
+            int start = source.position();
+            boolean solved = (source.get(start + FLAGS_AT) & FLAG_SOLVED) != 0;
+            if (solved)
+            {
+                PackedPuzzleFile.unpack(source, start + SOLUTION_AT, solution, solutionOffset);
+            }
+            statistics.set(source.getLong(start + NODES_AT), source.getLong(start + BACKTRACKS_AT),
+                           source.getInt(start + DEPTH_AT), source.getLong(start + NANOS_AT), solved);
+        }
+        return found >= 0;
+    } // end lookup
+
+
+    /**
+     * Adds a puzzle to the index, unless it is already there. The record is
+     * appended to the log by the next flush, or once enough records are waiting.
+     * @param puzzle          the array holding the puzzle's cell values
+     * @param offset          index in the array of the puzzle's first cell
+     * @param solution        the array holding the solution (not read if not solved)
+     * @param solutionOffset  index in that array of the solution's first cell
+     * @param solved          whether the puzzle was solved
+     * @param statistics      the statistics of the solve, or null if not collected
+     * @return  true if the puzzle was added; false if it was already in the index
+     * @throws IOException  if the log cannot be read or written
+     */
+    public boolean add(byte[] puzzle, int offset, byte[] solution, int solutionOffset,
+                       boolean solved, SolveStatistics statistics) throws IOException
+    {
+        long key = hash(puzzle, offset);
+        if (find(puzzle, offset, key) >= 0)
+        {
+            return false;
+        }
+        if (!pending.hasRemaining())
+        {
+            appendPending();
+        }
+        int start = pending.position();
+        PackedPuzzleFile.pack(puzzle, offset, pending, start + PUZZLE_AT);
+        if (solved)
+        {
+            PackedPuzzleFile.pack(solution, solutionOffset, pending, start + SOLUTION_AT);
+        }
+        else
+        {
+            for (int k = 0; k < PackedPuzzleFile.RECORD_SIZE; k++)
+            {
+                pending.put(start + SOLUTION_AT + k, (byte) 0);
+            } // end for
+        }
+        pending.put(start + FLAGS_AT, (byte) (solved ? FLAG_SOLVED : 0));
+        pending.putLong(start + NODES_AT, (statistics == null) ? 0 : statistics.getNodeCount());
+        pending.putLong(start + BACKTRACKS_AT, (statistics == null) ? 0 : statistics.getBacktrackCount());
+        pending.putInt(start + DEPTH_AT, (statistics == null) ? 0 : statistics.getMaxDepth());
+        pending.putLong(start + NANOS_AT, (statistics == null) ? 0 : statistics.getElapsedNanos());
+        crc.reset();
+        crc.update(pending.array(), start, CRC_AT);
+        pending.putInt(start + CRC_AT, (int) crc.getValue());
+        pending.position(start + RECORD_SIZE);
+
+        insert(key, recordCount);
+        recordCount++;
+        return true;
+    } // end add
+
+
+    /**
+     * Appends every waiting record to the log and forces it to the disk, so
+     * the records survive a crash.
+     * @throws IOException  if the log cannot be written
+     */
+    public void flush() throws IOException
+    {
+        appendPending();
+        channel.force(false);
+    } // end flush
+
+
+    /**
+     * Flushes the index and closes the log.
+     * @throws IOException  if the log cannot be written
+     */
+    @Override public void close() throws IOException
+    {
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            channel.close();
+        }
+    } // end close
+
+
+    /**
+     * Returns the number of puzzles in the index.
+     * @return  the count of intact records
+     */
+    public int size()
+    {
+        return recordCount - skippedCount;
+    } // end size
+
+
+    /**
+     * Returns the number of bytes of a torn or corrupt record cut from the
+     * end of the log when the index was opened.
+     * @return  the bytes dropped, 0 if the log was intact
+     */
+    public long getDroppedBytes()
+    {
+        return droppedBytes;
+    } // end getDroppedBytes
+
+
+    /**
+     * Returns the number of corrupt records, other than the last, skipped
+     * when the index was opened. They stay in the log.
+     * @return  the records skipped, 0 if every record was intact
+     */
+    public int getSkippedCount()
+    {
+        return skippedCount;
+    } // end getSkippedCount
+
+
+    // Private method returning a 64-bit hash of a puzzle (FNV-1a, then mixed
+    // so that the low bits index the table well). Never returns 0.
+    private static long hash(byte[] puzzle, int offset)
+    {
+        long h = 0xCBF29CE484222325L;
+        for (int index = 0; index < 81; index++)
+        {
+            h = (h ^ puzzle[offset + index]) * 0x100000001B3L;
+        } // end for
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (h == 0) ? 1 : h;
+    } // end hash
+
+
+    // Private method returning the record number of the puzzle, or -1 if it
+    // is not in the index. Slots with the same hash are checked against the
+    // stored puzzle.
+    private int find(byte[] puzzle, int offset, long key) throws IOException
+    {
+        int found = -1;
+        for (int slot = (int) key & mask; found < 0  &&  keys[slot] != 0; slot = (slot + 1) & mask)
+        {
+            if (keys[slot] == key  &&  isStoredPuzzle(records[slot], puzzle, offset))
+            {
+                found = records[slot];
+            }
+        } // end for
+        return found;
+    } // end find
+
+
+    // Private method that adds a record number to the table, doubling the
+    // table when it is half full
+    private void insert(long key, int recordNumber)
+    {
+        if (2 * (recordCount + 1) > keys.length)
+        {
+            long[] oldKeys = keys;
+            int[] oldRecords = records;
+            keys = new long[2 * oldKeys.length];
+            records = new int[2 * oldKeys.length];
+            mask = keys.length - 1;
+            for (int k = 0; k < oldKeys.length; k++)
+            {
+                if (oldKeys[k] != 0)
+                {
+                    place(oldKeys[k], oldRecords[k]);
+                }
+            } // end for
+        }
+        place(key, recordNumber);
+    } // end insert
+
+
+    // Private method storing a key in the first empty slot from its home slot
+    private void place(long key, int recordNumber)
+    {
+        int slot = (int) key & mask;
+        while (keys[slot] != 0)
+        {
+            slot = (slot + 1) & mask;
+        } // end while
+        keys[slot] = key;
+        records[slot] = recordNumber;
+    } // end place
+
+
+    // Private method checking whether a record holds the given puzzle
+    private boolean isStoredPuzzle(int recordNumber, byte[] puzzle, int offset) throws IOException
+    {
+        ByteBuffer source = readRecord(recordNumber);
+        PackedPuzzleFile.unpack(source, source.position() + PUZZLE_AT, cells, 0);
+        boolean result = true;
+        for (int index = 0; index < 81  &&  result; index++)
+        {
+            result = cells[index] == puzzle[offset + index];
+        } // end for
+        return result;
+    } // end isStoredPuzzle
+
+
+    // Private method returning a buffer whose position is the start of the
+    // record: the pending buffer if the record is not yet in the log
+    private ByteBuffer readRecord(int recordNumber) throws IOException
+    {
+        ByteBuffer result;
+        if (recordNumber >= writtenCount)
+        {
+            result = pending.duplicate();
+            result.position((int) (recordNumber - writtenCount) * RECORD_SIZE);
+        }
+        else
+        {
+            record.clear();
+            readFully(record, HEADER_SIZE + (long) recordNumber * RECORD_SIZE);
+            if (record.hasRemaining())
+            {
+                throw new IOException("Solved puzzle index log is shorter than its table");
+            }
+            record.position(0);
+            result = record;
+        }
+        return result;
+    } // end readRecord
+
+
+    // Private method checking the CRC of the record starting at the given
+    // index of the buffer
+    private boolean isIntact(ByteBuffer buffer, int start)
+    {
+        crc.reset();
+        crc.update(buffer.array(), start, CRC_AT);
+        return buffer.getInt(start + CRC_AT) == (int) crc.getValue();
+    } // end isIntact
+
+
+    // Private method appending the pending records to the end of the log
+    private void appendPending() throws IOException
+    {
+        pending.flip();
+        while (pending.hasRemaining())
+        {
+            channel.write(pending);
+        } // end while
+        pending.clear();
+        writtenCount = recordCount;
+    } // end appendPending
+
+
+    // Private method reading from the given file position until the buffer
+    // is full or the end of the file is reached
+    private void readFully(ByteBuffer buffer, long position) throws IOException
+    {
+        int bytesRead = 0;
+        while (buffer.hasRemaining()  &&  bytesRead >= 0)
+        {
+            bytesRead = channel.read(buffer, position + buffer.position());
+        } // end while
+    } // end readFully
+
+
+    // Private method writing the whole buffer at the given file position
+    private void writeFully(ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer, position + buffer.position());
+        } // end while
+    } // end writeFully
+
+} // end SolvedPuzzleIndex
@@ -0,0 +1,54 @@
+package SudokuSolver;
+
+/**
+ * The common contract of every sudoku solving engine. An engine is constructed
+ * from an N x N integer array of initial values (0 for blank cells), and
+ * knows how to solve itself and how to check whether its values form a valid
+ * complete grid. Grid accepts sizes from 4 x 4 to 25 x 25; the other engines
+ * only 9 x 9.
+ * @author Tze-Hei "Zee" Yong
+ */
+public interface Solver
+{
+    /**
+     * Returns the initial number of blank cells in the grid to be solved.
+     * @return  the integer number of initial blank cells
+     */
+    int getNumberOfBlankCells();
+
+    /**
+     * Attempts to solve the grid based on the initial values provided.
+     * @return  True if the puzzle is successfully solved; false otherwise
+     *          (i.e., if puzzle cannot be solved based on initial values provided)
+     */
+    boolean solveGrid();
+
+    /**
+     * Counts the solutions of the puzzle, stopping as soon as the given limit
+     * is reached. The grid's values are not changed.
+     * @param limit  the maximum number of solutions to count (at least 1)
+     * @return  the number of solutions found, between 0 and limit
+     */
+    int countSolutions(int limit);
+
+    /**
+     * Determines whether the puzzle has exactly one solution. The search stops
+     * as soon as a second solution is found. The grid's values are not changed.
+     * @return  True if the puzzle has a unique solution, False otherwise.
+     */
+    boolean hasUniqueSolution();
+
+    /**
+     * Determines whether the values currently set for the grid cells
+     * constitute a valid grid according to the rules of sudoku.
+     * @return  True if the grid is valid, False otherwise.
+     */
+    boolean isValidGrid();
+
+    /**
+     * Returns a copy of the values currently set for the grid cells.
+     * @return  a new N x N integer array of cell values (0 for blank cells)
+     */
+    int[][] getValues();
+
+} // end Solver
@@ -0,0 +1,194 @@
+package SudokuSolver;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark suite for grid construction, solving, and validation over the
+ * fixed puzzle corpora. Each benchmark is warmed up, then timed over whole
+ * passes of its corpus, and reports time per operation, bytes allocated per
+ * operation by the benchmark thread, and search nodes explored per operation
+ * ("n/a" for operations that do not search, or engines that do not count nodes).
+ *
+ * Usage: SolverBenchmark [corpus ...]   (default: every corpus)
+ * @author Tze-Hei "Zee" Yong
+ */
+public class SolverBenchmark
+{
+    private static final long WARMUP_NANOS = 500_000_000L;    // minimum warmup time
+    private static final long MEASURE_NANOS = 1_000_000_000L; // minimum measured time
+
+    private static final long NO_NODE_COUNT = -1;  // returned by operations that count no nodes
+
+    private static long sink;  // results are folded in here so no work is optimized away
+
+    // One benchmarked operation on the puzzles of a corpus
+    private interface Operation
+    {
+        // Runs the operation on one puzzle and returns the nodes it explored,
+        // or NO_NODE_COUNT if it does not count them
+        long run(int puzzle);
+    } // end Operation
+
+
+    // Private method that warms up an operation, then runs whole passes over
+    // the corpus until the measuring time is used, and prints the results
+    private static void measure(String name, PuzzleCorpus corpus, Operation operation)
+    {
+        runPasses(corpus, operation, WARMUP_NANOS);
+
+        long allocatedBefore = getAllocatedBytes();
+        long startTime = System.nanoTime();
+        long[] result = runPasses(corpus, operation, MEASURE_NANOS);
+        long elapsed = System.nanoTime() - startTime;
+        long allocated = getAllocatedBytes() - allocatedBefore;
+
+        long operations = result[0];
+        String nodes = (result[1] < 0) ? "n/a" : String.format("%.1f", (double) result[1] / operations);
+        System.out.printf("%-36s %-16s %14.0f %12.1f %14s%n", name, corpus,
+                          (double) elapsed / operations,
+                          allocated < 0 ? Double.NaN : (double) allocated / operations,
+                          nodes);
+    } // end measure
+
+
+    // Private method that runs whole passes over the corpus until at least the
+    // given time has passed. Returns the operation count and total node count
+    // (NO_NODE_COUNT if the operation does not count nodes).
+    private static long[] runPasses(PuzzleCorpus corpus, Operation operation, long minimumNanos)
+    {
+        long operations = 0;
+        long nodes = 0;
+        long startTime = System.nanoTime();
+        do
+        {
+            for (int puzzle = 0; puzzle < corpus.size(); puzzle++)
+            {
+                long explored = operation.run(puzzle);
+                nodes = (explored == NO_NODE_COUNT) ? NO_NODE_COUNT : nodes + explored;
+                operations++;
+            } // end for
+        } while (System.nanoTime() - startTime < minimumNanos);
+        return new long[] { operations, nodes };
+    } // end runPasses
+
+
+    // Private method returning the bytes allocated so far by the current
+    // thread, or -1 if the JVM does not report it
+    private static long getAllocatedBytes()
+    {
+        long result = -1;
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+        {
+            result = ((com.sun.management.ThreadMXBean) bean)
+                     .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return result;
+    } // end getAllocatedBytes
+
+
+    // Private method that runs every benchmark on one corpus
+    private static void runCorpus(final PuzzleCorpus corpus)
+    {
+        // Prepare the puzzles, a reusable grid, and a solved grid for each puzzle
+        final int[][][] puzzles = new int[corpus.size()][][];
+        final Grid[] unsolvedGrids = new Grid[corpus.size()];
+        final Grid[] solvedGrids = new Grid[corpus.size()];
+        for (int puzzle = 0; puzzle < corpus.size(); puzzle++)
+        {
+            puzzles[puzzle] = corpus.getPuzzle(puzzle);
+            unsolvedGrids[puzzle] = new Grid(puzzles[puzzle]);
+            solvedGrids[puzzle] = new Grid(puzzles[puzzle]);
+            solvedGrids[puzzle].setStrategy(SolveStrategy.PROPAGATION);
+            solvedGrids[puzzle].solveGrid();
+        } // end for
+        final Grid reusableGrid = new Grid();
+        final BitboardSolver bitboardSolver = new BitboardSolver();
+        final byte[] solution = new byte[81];
+        final byte[][] puzzleBytes = new byte[corpus.size()][81];
+        for (int puzzle = 0; puzzle < corpus.size(); puzzle++)
+        {
+            for (int index = 0; index < 81; index++)
+            {
+                puzzleBytes[puzzle][index] = (byte) puzzles[puzzle][index / 9][index % 9];
+            } // end for
+        } // end for
+
+        measure("new Grid(int[][])", corpus, (puzzle) -> {
+            Grid grid = new Grid(puzzles[puzzle]);
+            sink += grid.getNumberOfBlankCells();
+            return NO_NODE_COUNT;
+        });
+
+        for (final SolveStrategy strategy : SolveStrategy.values())
+        {
+            measure("solveGrid " + strategy, corpus, (puzzle) -> {
+                reusableGrid.setStrategy(strategy);
+                reusableGrid.load(puzzles[puzzle]);
+                sink += reusableGrid.solveGrid() ? 1 : 0;
+                return reusableGrid.getNodeCount();
+            });
+        } // end for
+
+        measure("DancingLinks solveGrid", corpus, (puzzle) -> {
+            DancingLinks solver = new DancingLinks(puzzles[puzzle]);
+            sink += solver.solveGrid() ? 1 : 0;
+            return NO_NODE_COUNT;
+        });
+
+        measure("BitboardSolver solveInto", corpus, (puzzle) -> {
+            bitboardSolver.load(puzzleBytes[puzzle], 0);
+            sink += bitboardSolver.solveInto(solution, 0) ? 1 : 0;
+            return NO_NODE_COUNT;
+        });
+
+        measure("hasUniqueSolution PROPAGATION", corpus, (puzzle) -> {
+            reusableGrid.setStrategy(SolveStrategy.PROPAGATION);
+            reusableGrid.load(puzzles[puzzle]);
+            sink += reusableGrid.hasUniqueSolution() ? 1 : 0;
+            return reusableGrid.getNodeCount();
+        });
+
+        measure("isValidGrid (solved)", corpus, (puzzle) -> {
+            sink += solvedGrids[puzzle].isValidGrid() ? 1 : 0;
+            return NO_NODE_COUNT;
+        });
+
+        measure("isValidGrid (unsolved)", corpus, (puzzle) -> {
+            sink += unsolvedGrids[puzzle].isValidGrid() ? 1 : 0;
+            return NO_NODE_COUNT;
+        });
+    } // end runCorpus
+
+
+    /**
+     * Runs the benchmarks on the corpora named in the arguments, or on every
+     * corpus if there are none.
+     * @param args  names of PuzzleCorpus constants
+     */
+    public static void main(String[] args)
+    {
+        List<PuzzleCorpus> corpora = new ArrayList<>();
+        for (String name : args)
+        {
+            corpora.add(PuzzleCorpus.valueOf(name));
+        } // end for
+        if (corpora.isEmpty())
+        {
+            for (PuzzleCorpus corpus : PuzzleCorpus.values())
+            {
+                corpora.add(corpus);
+            } // end for
+        }
+
+        System.out.printf("%-36s %-16s %14s %12s %14s%n",
+                          "Benchmark", "Corpus", "ns/op", "B/op", "nodes/op");
+        for (PuzzleCorpus corpus : corpora)
+        {
+            runCorpus(corpus);
+        } // end for
+        System.out.println("(checksum " + sink + ")");
+    } // end main
+
+} // end SolverBenchmark
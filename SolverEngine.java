@@ -0,0 +1,53 @@
+package SudokuSolver;
+
+/**
+ * The available sudoku solving engines. Each engine can create a Solver for
+ * a given puzzle, so callers can route puzzles to whichever engine suits them.
+ * @author Tze-Hei "Zee" Yong
+ */
+public enum SolverEngine
+{
+    /**
+     * The Grid engine: a search over a flat array of cell values, with a
+     * bitmask of the values used in each row, column, and block, using the
+     * grid's selected SolveStrategy.
+     */
+    GRID
+    {
+        @Override public Solver createSolver(int[][] newGrid)
+        {
+            return new Grid(newGrid);
+        }
+    },
+
+    /**
+     * The Dancing Links engine: an exact-cover search (Algorithm X).
+     */
+    DANCING_LINKS
+    {
+        @Override public Solver createSolver(int[][] newGrid)
+        {
+            return new DancingLinks(newGrid);
+        }
+    },
+
+    /**
+     * The bitboard engine: propagation and search on packed candidate words,
+     * a band of the grid at a time.
+     */
+    BITBOARD
+    {
+        @Override public Solver createSolver(int[][] newGrid)
+        {
+            return new BitboardSolver(newGrid);
+        }
+    };
+
+    /**
+     * Creates a new solver for the given puzzle.
+     * @param newGrid  The 9 x 9 integer array containing the grid's initial values.
+     * @return  a solver ready to solve the puzzle
+     */
+    public abstract Solver createSolver(int[][] newGrid);
+
+} // end SolverEngine
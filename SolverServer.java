@@ -0,0 +1,551 @@
+package SudokuSolver;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An embedded HTTP server that solves puzzles. A POST to /solve carries one
+ * or more puzzles in the standard line format (see PuzzleReader), and the
+ * response holds one solution line per puzzle in the same format; as with
+ * BatchSolver, a puzzle that cannot be solved is sent back unchanged. A GET
+ * of /stats returns the request counts and the p50 and p99 latency.
+ *
+ * Each request is handled on its own virtual thread when the JDK has them
+ * (on older JDKs, on a cached pool of platform threads). The solving itself
+ * runs on a fixed pool of one platform thread per core, each reusing its own
+ * Grid. A request's body is read in full before it asks for admission, and
+ * at most a bounded number of requests are admitted at a time: those being
+ * solved plus a short queue. A request arriving when the solvers have fallen
+ * that far behind is shed at once with 503 Service Unavailable rather than
+ * queued. Each puzzle is solved within a node budget, and is sent back
+ * unchanged if the budget runs out; a request still unanswered at its time
+ * limit is cancelled and answered with 503, so no request can hold a solver
+ * thread or its admission for long.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class SolverServer implements AutoCloseable
+{
+    /** Most puzzles accepted in one request. */
+    public static final int MAX_PUZZLES_PER_REQUEST = 10000;
+
+    /** Most values the search may guess for one puzzle before giving up on it. */
+    public static final long PUZZLE_NODE_BUDGET = 1000000;
+
+    /** Longest a request may wait for and use the solvers before it is answered with 503. */
+    public static final long REQUEST_TIMEOUT_MILLIS = 5000;
+
+    private static final int LATENCY_SAMPLES = 8192;  // most recent latencies kept
+
+    private final HttpServer server;
+    private final ExecutorService requestExecutor;  // runs the HTTP handlers
+    private final boolean virtualThreads;           // true if requestExecutor makes virtual threads
+    private final ExecutorService solverPool;       // runs the solving, one thread per core
+    private final ThreadLocal<Grid> workerGrid;     // one reusable grid per solver thread
+    private final Semaphore admission;              // one permit per admitted request
+
+    private final AtomicLong requestCount = new AtomicLong();   // requests answered with 200
+    private final AtomicLong rejectedCount = new AtomicLong();  // requests shed with 503
+    private final AtomicLong timedOutCount = new AtomicLong();  // requests stopped at the time limit
+    private final AtomicLong puzzleCount = new AtomicLong();    // puzzles solved or attempted
+    private final long[] latencies = new long[LATENCY_SAMPLES];  // ring of recent latencies, guarded by itself
+    private long latencyCount;                                   // latencies ever recorded, guarded by latencies
+
+    /**
+     * Constructor for a server on the given address with one solver thread
+     * per core and an admission limit of four requests per solver thread.
+     * The server is not started.
+     * @param address  the address to listen on (port 0 picks a free port)
+     * @throws IOException  if the address cannot be bound
+     */
+    public SolverServer(InetSocketAddress address) throws IOException
+    {
+        this(address, Runtime.getRuntime().availableProcessors(),
+             4 * Runtime.getRuntime().availableProcessors());
+    } // end constructor
+
+    /**
+     * Constructor for a server on the given address. The server is not started.
+     * @param address      the address to listen on (port 0 picks a free port)
+     * @param threads      number of solver threads (at least 1)
+     * @param maxAdmitted  most requests admitted at a time, being solved or
+     *                     waiting for a solver thread (at least threads)
+     * @throws IOException  if the address cannot be bound
+     */
+    public SolverServer(InetSocketAddress address, int threads, int maxAdmitted) throws IOException
+    {
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("Number of threads must be at least 1");
+        }
+        if (maxAdmitted < threads)
+        {
+            throw new IllegalArgumentException("Admission limit must be at least the number of threads");
+        }
+        server = HttpServer.create(address, 0);
+        ExecutorService virtualExecutor = newVirtualThreadExecutor();
+        virtualThreads = virtualExecutor != null;
+        requestExecutor = virtualThreads ? virtualExecutor : Executors.newCachedThreadPool();
+        solverPool = Executors.newFixedThreadPool(threads);
+        workerGrid = ThreadLocal.withInitial(() -> {
+            Grid grid = new Grid();
+            grid.setStrategy(SolveStrategy.PROPAGATION);
+            return grid;
+        });
+        admission = new Semaphore(maxAdmitted);
+        server.setExecutor(requestExecutor);
+        server.createContext("/solve", this::handleSolve);
+        server.createContext("/stats", this::handleStats);
+    } // end constructor
+
+
+    // Private method returning an executor that starts a virtual thread per
+    // task, or null if the JDK has no virtual threads
+    private static ExecutorService newVirtualThreadExecutor()
+    {
+        ExecutorService result = null;
+        try
+        {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            result = (ExecutorService) factory.invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            // No virtual threads before JDK 21: the caller falls back to platform threads
+        }
+        return result;
+    } // end newVirtualThreadExecutor
+
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start()
+    {
+        server.start();
+    } // end start
+
+
+    /**
+     * Returns the port the server listens on.
+     * @return  the bound port number
+     */
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    } // end getPort
+
+
+    /**
+     * Returns whether requests are handled on virtual threads.
+     * @return  true on JDKs with virtual threads; false if platform threads are used
+     */
+    public boolean isUsingVirtualThreads()
+    {
+        return virtualThreads;
+    } // end isUsingVirtualThreads
+
+
+    // Private method handling POST /solve: reads the puzzles, solves them on
+    // the solver pool if admitted, and writes the solution lines
+    private void handleSolve(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            if (!exchange.getRequestMethod().equals("POST"))
+            {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                sendText(exchange, 405, "Use POST with puzzle lines in the body\n");
+                return;
+            }
+
+            // Read the whole body before asking for admission, so a slow
+            // client does not hold a solver slot while it uploads
+            final byte[] puzzles;
+            final int count;
+            try (InputStream in = exchange.getRequestBody())
+            {
+                PuzzleReader reader = new PuzzleReader(in);
+                byte[] buffer = new byte[81 * 16];
+                int read = 0;
+                boolean more = true;
+                while (more  &&  read < MAX_PUZZLES_PER_REQUEST)
+                {
+                    if ((read + 1) * 81 > buffer.length)
+                    {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
+                    more = reader.next(buffer, read * 81);
+                    if (more)
+                    {
+                        read++;
+                    }
+                } // end while (exited at end of body or at the puzzle limit)
+                if (more  &&  reader.next(new byte[81], 0))
+                {
+                    sendText(exchange, 413, "At most " + MAX_PUZZLES_PER_REQUEST + " puzzles per request\n");
+                    return;
+                }
+                puzzles = buffer;
+                count = read;
+            }
+            catch (IOException e)
+            {
+                sendText(exchange, 400, e.getMessage() + "\n");
+                return;
+            }
+
+            if (!admission.tryAcquire())
+            {
+                rejectedCount.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendText(exchange, 503, "Solver is overloaded, try again later\n");
+                return;
+            }
+            long startTime = System.nanoTime();
+            byte[] output;
+            try
+            {
+                final long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(REQUEST_TIMEOUT_MILLIS);
+                final CancellationToken token = new CancellationToken();
+                Future<byte[]> result = solverPool.submit(() -> solveAll(puzzles, count, deadline, token));
+                try
+                {
+                    output = result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+                catch (TimeoutException e)
+                {
+                    // Stop the solve, or keep it from starting if it is still queued
+                    token.cancel();
+                    result.cancel(false);
+                    output = null;
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                sendText(exchange, 503, "Server is shutting down\n");
+                return;
+            }
+            catch (ExecutionException e)
+            {
+                sendText(exchange, 500, e.getCause() + "\n");
+                return;
+            }
+            finally
+            {
+                admission.release();
+            }
+            if (output == null)
+            {
+                timedOutCount.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendText(exchange, 503, "Solving took longer than " + REQUEST_TIMEOUT_MILLIS + " ms\n");
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=US-ASCII");
+            exchange.sendResponseHeaders(200, output.length);
+            try (OutputStream out = exchange.getResponseBody())
+            {
+                out.write(output);
+            }
+            requestCount.incrementAndGet();
+            recordLatency(System.nanoTime() - startTime);
+        }
+        finally
+        {
+            exchange.close();
+        }
+    } // end handleSolve
+
+
+    // Private method run on a solver thread returning the solution lines of
+    // the first count puzzles in the array, or null if the deadline passes or
+    // the token is cancelled first. A puzzle that runs out of its node budget
+    // is sent back unchanged, as an unsolvable one is.
+    private byte[] solveAll(byte[] puzzles, int count, long deadline, CancellationToken token)
+    {
+        Grid grid = workerGrid.get();
+        byte[] solution = new byte[81];
+        byte[] output = new byte[count * 82];
+        boolean stopped = false;
+        int puzzle = 0;
+        while (puzzle < count  &&  !stopped)
+        {
+            long remaining = deadline - System.nanoTime();
+            stopped = remaining <= 0  ||  token.isCancelled();
+            if (!stopped)
+            {
+                grid.load(puzzles, puzzle * 81);
+                SolveResult result = grid.solveGrid(PUZZLE_NODE_BUDGET, remaining, token);
+                if (result == SolveResult.SOLVED)
+                {
+                    grid.copyValues(solution, 0);
+                    PuzzleReader.formatLine(solution, 0, output, puzzle * 82);
+                }
+                else if (result == SolveResult.BUDGET_EXCEEDED
+                         &&  (token.isCancelled()  ||  System.nanoTime() - deadline >= 0))
+                {
+                    stopped = true;
+                }
+                else
+                {
+                    PuzzleReader.formatLine(puzzles, puzzle * 81, output, puzzle * 82);
+                }
+                puzzle++;
+            }
+        } // end while
+        puzzleCount.addAndGet(puzzle);
+        return stopped ? null : output;
+    } // end solveAll
+
+
+    // Private method handling GET /stats
+    private void handleStats(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            sendText(exchange, 200, "requests " + requestCount.get() + "\n"
+                                    + "rejected " + rejectedCount.get() + "\n"
+                                    + "timed-out " + timedOutCount.get() + "\n"
+                                    + "puzzles " + puzzleCount.get() + "\n"
+                                    + String.format("p50-ms %.3f%np99-ms %.3f%n",
+                                                    getLatencyPercentile(0.50) / 1e6,
+                                                    getLatencyPercentile(0.99) / 1e6));
+        }
+        finally
+        {
+            exchange.close();
+        }
+    } // end handleStats
+
+
+    // Private method sending a complete plain-text response
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException
+    {
+        byte[] body = text.getBytes(StandardCharsets.US_ASCII);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=US-ASCII");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody())
+        {
+            out.write(body);
+        }
+    } // end sendText
+
+
+    // Private method adding one request latency to the ring of recent latencies
+    private void recordLatency(long nanos)
+    {
+        synchronized (latencies)
+        {
+            latencies[(int) (latencyCount % LATENCY_SAMPLES)] = nanos;
+            latencyCount++;
+        }
+    } // end recordLatency
+
+
+    /**
+     * Returns a percentile of the latency of the most recent successful
+     * requests (up to 8192), from admission to the last response byte.
+     * @param fraction  the percentile as a fraction between 0 and 1 (0.99 for p99)
+     * @return  the latency in nanoseconds, or 0 if no request has been answered
+     */
+    public long getLatencyPercentile(double fraction)
+    {
+        long[] sorted;
+        synchronized (latencies)
+        {
+            sorted = Arrays.copyOf(latencies, (int) Math.min(latencyCount, LATENCY_SAMPLES));
+        }
+        long result = 0;
+        if (sorted.length > 0)
+        {
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(fraction * sorted.length) - 1;
+            result = sorted[Math.max(0, Math.min(rank, sorted.length - 1))];
+        }
+        return result;
+    } // end getLatencyPercentile
+
+
+    public long getRequestCount()
+    {
+        return requestCount.get();
+    } // end getRequestCount
+
+    public long getRejectedCount()
+    {
+        return rejectedCount.get();
+    } // end getRejectedCount
+
+    public long getTimedOutCount()
+    {
+        return timedOutCount.get();
+    } // end getTimedOutCount
+
+    public long getPuzzleCount()
+    {
+        return puzzleCount.get();
+    } // end getPuzzleCount
+
+
+    /**
+     * Stops accepting requests, waits up to a second for those in progress,
+     * and shuts down the handler and solver threads.
+     */
+    @Override public void close()
+    {
+        server.stop(1);
+        requestExecutor.shutdownNow();
+        solverPool.shutdownNow();
+    } // end close
+
+
+    /**
+     * Command-line entry point. With a port number, serves on that port until
+     * killed. Otherwise runs a loopback test: starts a server on a free
+     * loopback port, has many client threads post puzzles to it at
+     * once (so some requests are shed), checks every solution, and prints
+     * the request counts and the p50 and p99 latency.
+     * Usage: SolverServer [port]
+     * @param args  optional port number
+     * @throws Exception  if the server cannot start or a request fails
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length > 0)
+        {
+            SolverServer server = new SolverServer(new InetSocketAddress(Integer.parseInt(args[0])));
+            server.start();
+            System.err.println("Solving on port " + server.getPort()
+                               + (server.isUsingVirtualThreads() ? " (virtual threads)" : ""));
+            return;
+        }
+
+        // Request bodies: each puzzle on its own, and all of them together
+        String[] lines = {
+            "200006754007904180384007020500082070038700400009600005005370090870060001013058000",  // easy
+            "800000000003600000070090200050007000000045700000100030001000068008500010090000400",  // hard
+            "000000010400000000020000000000050407008000300001090000300400200050100000000806000",  // 17 givens
+            "000000000000003085001020000000507000004000100090000000500000073002010000000040009"   // top row 9 to 1
+        };
+        StringBuilder all = new StringBuilder();
+        java.util.List<String> bodies = new java.util.ArrayList<>();
+        for (String line : lines)
+        {
+            bodies.add(line + "\n");
+            all.append(line).append('\n');
+        } // end for
+        bodies.add(all.toString());
+
+        int clients = 64;
+        int requestsPerClient = 50;
+        try (SolverServer server = new SolverServer(
+                 new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2, 8))
+        {
+            server.start();
+            URI uri = URI.create("http://127.0.0.1:" + server.getPort() + "/solve");
+            HttpClient client = HttpClient.newHttpClient();
+            AtomicLong solved = new AtomicLong();
+            AtomicLong shed = new AtomicLong();
+            AtomicLong failures = new AtomicLong();
+            ExecutorService clientPool = Executors.newFixedThreadPool(clients);
+            for (int c = 0; c < clients; c++)
+            {
+                final int first = c;
+                clientPool.execute(() -> {
+                    for (int k = 0; k < requestsPerClient; k++)
+                    {
+                        String body = bodies.get((first + k) % bodies.size());
+                        try
+                        {
+                            HttpResponse<byte[]> response = client.send(
+                                HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                                HttpResponse.BodyHandlers.ofByteArray());
+                            if (response.statusCode() == 503)
+                            {
+                                shed.incrementAndGet();
+                            }
+                            else if (response.statusCode() == 200
+                                     &&  checkSolutions(body, response.body()))
+                            {
+                                solved.incrementAndGet();
+                            }
+                            else
+                            {
+                                failures.incrementAndGet();
+                            }
+                        }
+                        catch (IOException e)
+                        {
+                            failures.incrementAndGet();
+                        }
+                        catch (InterruptedException e)
+                        {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    } // end for
+                });
+            } // end for
+            clientPool.shutdown();
+            clientPool.awaitTermination(5, TimeUnit.MINUTES);
+
+            System.out.println("Virtual threads: " + server.isUsingVirtualThreads());
+            System.out.println("Requests solved: " + solved.get() + ", shed (503): " + shed.get()
+                               + ", failures: " + failures.get());
+            HttpResponse<String> stats = client.send(
+                HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + "/stats")).build(),
+                HttpResponse.BodyHandlers.ofString());
+            System.out.print(stats.body());
+        }
+    } // end main
+
+
+    // Private test helper checking that every response line is a valid
+    // solution that keeps the givens of the matching request line
+    private static boolean checkSolutions(String request, byte[] response) throws IOException
+    {
+        byte[] puzzles = request.getBytes(StandardCharsets.US_ASCII);
+        if (puzzles.length != response.length)
+        {
+            return false;
+        }
+        PuzzleReader reader = new PuzzleReader(new ByteArrayInputStream(response));
+        byte[] solution = new byte[81];
+        Grid grid = new Grid();
+        boolean result = true;
+        for (int line = 0; reader.next(solution, 0); line++)
+        {
+            for (int index = 0; index < 81; index++)
+            {
+                int given = puzzles[line * 82 + index] - '0';
+                result &= given == 0  ||  solution[index] == given;
+            } // end for
+            grid.load(solution, 0);
+            result &= grid.isValidGrid()  &&  grid.getNumberOfBlankCells() == 0;
+        } // end for
+        return result;
+    } // end checkSolutions
+
+} // end SolverServer
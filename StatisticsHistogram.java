@@ -0,0 +1,229 @@
+package SudokuSolver;
+import java.util.Arrays;
+
+/**
+ * Aggregates the SolveStatistics of a batch of solves into histograms of
+ * node count, backtrack count, search depth, and elapsed time. Counts and
+ * times are kept in power-of-two buckets (bucket b holds values from
+ * 2^(b-1) to 2^b - 1, bucket 0 holds 0), so recording is allocation-free and
+ * percentiles are accurate to within a factor of two and never above the
+ * largest value recorded. Depths are kept exactly.
+ *
+ * A histogram is not thread-safe; parallel solvers keep one per thread or
+ * per chunk and combine them with merge().
+ * @author Tze-Hei "Zee" Yong
+ */
+public class StatisticsHistogram
+{
+    private static final int BUCKETS = 64;
+    private static final int MAX_DEPTH =   // cells of the largest grid, so deepest possible search
+        Topology.MAX_BOX_SIZE * Topology.MAX_BOX_SIZE * Topology.MAX_BOX_SIZE * Topology.MAX_BOX_SIZE;
+
+    private long solveCount;
+    private long solvedCount;
+    private long totalNodes;
+    private long totalBacktracks;
+    private long totalNanos;
+    private long maxNodes;
+    private long maxBacktracks;
+    private long maxNanos;
+    private final long[] nodeBuckets;
+    private final long[] backtrackBuckets;
+    private final long[] nanoBuckets;
+    private final long[] depthCounts;  // index = max depth (0 to MAX_DEPTH)
+
+    public StatisticsHistogram()
+    {
+        nodeBuckets = new long[BUCKETS];
+        backtrackBuckets = new long[BUCKETS];
+        nanoBuckets = new long[BUCKETS];
+        depthCounts = new long[MAX_DEPTH + 1];
+    } // end constructor
+
+
+    /**
+     * Adds the statistics of one solve to the histograms.
+     * @param statistics  the statistics of the solve
+     */
+    public void record(SolveStatistics statistics)
+    {
+        solveCount++;
+        if (statistics.isSolved())
+        {
+            solvedCount++;
+        }
+        totalNodes += statistics.getNodeCount();
+        totalBacktracks += statistics.getBacktrackCount();
+        totalNanos += statistics.getElapsedNanos();
+        maxNodes = Math.max(maxNodes, statistics.getNodeCount());
+        maxBacktracks = Math.max(maxBacktracks, statistics.getBacktrackCount());
+        maxNanos = Math.max(maxNanos, statistics.getElapsedNanos());
+        nodeBuckets[bucketOf(statistics.getNodeCount())]++;
+        backtrackBuckets[bucketOf(statistics.getBacktrackCount())]++;
+        nanoBuckets[bucketOf(statistics.getElapsedNanos())]++;
+        depthCounts[statistics.getMaxDepth()]++;
+    } // end record
+
+
+    /**
+     * Adds every solve recorded in another histogram to this one.
+     * @param other  the histogram to add
+     */
+    public void merge(StatisticsHistogram other)
+    {
+        solveCount += other.solveCount;
+        solvedCount += other.solvedCount;
+        totalNodes += other.totalNodes;
+        totalBacktracks += other.totalBacktracks;
+        totalNanos += other.totalNanos;
+        maxNodes = Math.max(maxNodes, other.maxNodes);
+        maxBacktracks = Math.max(maxBacktracks, other.maxBacktracks);
+        maxNanos = Math.max(maxNanos, other.maxNanos);
+        for (int bucket = 0; bucket < BUCKETS; bucket++)
+        {
+            nodeBuckets[bucket] += other.nodeBuckets[bucket];
+            backtrackBuckets[bucket] += other.backtrackBuckets[bucket];
+            nanoBuckets[bucket] += other.nanoBuckets[bucket];
+        } // end for
+        for (int depth = 0; depth < depthCounts.length; depth++)
+        {
+            depthCounts[depth] += other.depthCounts[depth];
+        } // end for
+    } // end merge
+
+
+    /**
+     * Removes every recorded solve.
+     */
+    public void clear()
+    {
+        solveCount = 0;
+        solvedCount = 0;
+        totalNodes = 0;
+        totalBacktracks = 0;
+        totalNanos = 0;
+        maxNodes = 0;
+        maxBacktracks = 0;
+        maxNanos = 0;
+        Arrays.fill(nodeBuckets, 0);
+        Arrays.fill(backtrackBuckets, 0);
+        Arrays.fill(nanoBuckets, 0);
+        Arrays.fill(depthCounts, 0);
+    } // end clear
+
+
+    // Private method returning the power-of-two bucket of a non-negative value
+    private static int bucketOf(long value)
+    {
+        return Math.min(64 - Long.numberOfLeadingZeros(value), BUCKETS - 1);
+    } // end bucketOf
+
+
+    // Private method returning the upper bound of the bucket holding the
+    // given fraction of recorded values, or the largest value if smaller
+    private long percentileOf(long[] buckets, long max, double fraction)
+    {
+        long target = (long) Math.ceil(fraction * solveCount);
+        long seen = 0;
+        int bucket = 0;
+        while (bucket < buckets.length - 1  &&  seen + buckets[bucket] < target)
+        {
+            seen += buckets[bucket];
+            bucket++;
+        } // end while
+        return (bucket == 0) ? 0 : Math.min((1L << bucket) - 1, max);
+    } // end percentileOf
+
+
+    public long getSolveCount()
+    {
+        return solveCount;
+    } // end getSolveCount
+
+    public long getSolvedCount()
+    {
+        return solvedCount;
+    } // end getSolvedCount
+
+    public long getTotalNodes()
+    {
+        return totalNodes;
+    } // end getTotalNodes
+
+    public long getTotalBacktracks()
+    {
+        return totalBacktracks;
+    } // end getTotalBacktracks
+
+    public long getMaxNodes()
+    {
+        return maxNodes;
+    } // end getMaxNodes
+
+    public long getMaxBacktracks()
+    {
+        return maxBacktracks;
+    } // end getMaxBacktracks
+
+    public long getMaxNanos()
+    {
+        return maxNanos;
+    } // end getMaxNanos
+
+    /**
+     * Returns an upper bound on the node count of the given fraction of solves.
+     * @param fraction  the fraction of solves, e.g. 0.99 for the 99th percentile
+     * @return  a value at most twice the true percentile
+     */
+    public long getNodePercentile(double fraction)
+    {
+        return percentileOf(nodeBuckets, maxNodes, fraction);
+    } // end getNodePercentile
+
+    /**
+     * Returns an upper bound on the backtrack count of the given fraction of solves.
+     * @param fraction  the fraction of solves, e.g. 0.99 for the 99th percentile
+     * @return  a value at most twice the true percentile
+     */
+    public long getBacktrackPercentile(double fraction)
+    {
+        return percentileOf(backtrackBuckets, maxBacktracks, fraction);
+    } // end getBacktrackPercentile
+
+    /**
+     * Returns an upper bound on the elapsed time of the given fraction of solves.
+     * @param fraction  the fraction of solves, e.g. 0.99 for the 99th percentile
+     * @return  a time in nanoseconds at most twice the true percentile
+     */
+    public long getNanosPercentile(double fraction)
+    {
+        return percentileOf(nanoBuckets, maxNanos, fraction);
+    } // end getNanosPercentile
+
+    /**
+     * Returns the number of solves whose deepest search path had the given
+     * number of guesses.
+     * @param depth  the search depth (0 to 625, the cell count of a 25 x 25 grid)
+     * @return  the number of solves with that maximum depth
+     */
+    public long getDepthCount(int depth)
+    {
+        return depthCounts[depth];
+    } // end getDepthCount
+
+    @Override public String toString()
+    {
+        double meanNodes = (solveCount == 0) ? 0.0 : (double) totalNodes / solveCount;
+        double meanMicros = (solveCount == 0) ? 0.0 : totalNanos / 1e3 / solveCount;
+        return String.format("solves:%d solved:%d%n"
+                             + "nodes: mean %.1f p50<=%d p99<=%d max %d%n"
+                             + "backtracks: total %d p50<=%d p99<=%d%n"
+                             + "time (us): mean %.1f p50<=%.1f p99<=%.1f max %.1f",
+                             solveCount, solvedCount,
+                             meanNodes, getNodePercentile(0.5), getNodePercentile(0.99), maxNodes,
+                             totalBacktracks, getBacktrackPercentile(0.5), getBacktrackPercentile(0.99),
+                             meanMicros, getNanosPercentile(0.5) / 1e3,
+                             getNanosPercentile(0.99) / 1e3, maxNanos / 1e3);
+    } // end toString
+
+} // end StatisticsHistogram
@@ -0,0 +1,75 @@
+package SudokuSolver;
+
+/**
+ * The deduction techniques a TechniqueSolver uses, cheapest and easiest
+ * first. Each has a weight: the difficulty added each time it is used.
+ * @author Tze-Hei "Zee" Yong
+ */
+public enum Technique
+{
+    /** A blank cell has only one candidate left. */
+    NAKED_SINGLE(1),
+
+    /** A value has only one possible cell left in a row, column, or block. */
+    HIDDEN_SINGLE(2),
+
+    /**
+     * A value's candidates in a block all lie in one row or column, so it is
+     * removed from the rest of that row or column.
+     */
+    POINTING(5),
+
+    /**
+     * A value's candidates in a row or column all lie in one block, so it is
+     * removed from the rest of that block.
+     */
+    CLAIMING(5),
+
+    /** Two cells of a unit share the same two candidates, which are removed from its other cells. */
+    NAKED_PAIR(8),
+
+    /** Two values of a unit have the same two possible cells, which lose their other candidates. */
+    HIDDEN_PAIR(10),
+
+    /** Three cells of a unit have only three candidates between them. */
+    NAKED_TRIPLE(12),
+
+    /** Three values of a unit have only three possible cells between them. */
+    HIDDEN_TRIPLE(15),
+
+    /**
+     * A value's candidates in two rows lie in the same two columns, so it is
+     * removed from the rest of those columns (or the same with rows and
+     * columns swapped).
+     */
+    X_WING(20),
+
+    /** As X_WING, with three rows and three columns. */
+    SWORDFISH(30),
+
+    /**
+     * A cell with candidates x and y sees a cell with x and z and a cell with
+     * y and z, so z is removed from every cell that sees both of those.
+     */
+    XY_WING(30),
+
+    /** No technique applies, so a value is guessed and the result searched. */
+    GUESS(100);
+
+    private final int weight;
+
+    private Technique(int weight)
+    {
+        this.weight = weight;
+    } // end constructor
+
+    /**
+     * Returns the difficulty added each time the technique is used.
+     * @return  the technique's weight
+     */
+    public int getWeight()
+    {
+        return weight;
+    } // end getWeight
+
+} // end Technique
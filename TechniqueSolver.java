@@ -0,0 +1,923 @@
+package SudokuSolver;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Solves puzzles the way a person would, and rates them by the techniques
+ * they need. Every blank cell keeps a bitmask of its candidates, and the
+ * deduction stages of Technique are applied cheapest first: after any stage
+ * makes progress, the next round starts again from naked singles. A value is
+ * guessed only when no stage applies, and the search continues with every
+ * stage after each guess.
+ *
+ * The difficulty of a puzzle is the sum of the weights of every technique
+ * use, so puzzles needing harder techniques, or more of them, score higher.
+ * Candidates are kept in flat arrays indexed by cell and shared with Grid's
+ * unit tables, so rating allocates nothing once the solver is warm. A
+ * TechniqueSolver is not thread-safe; use one per thread.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class TechniqueSolver
+{
+    private final int boxSize;
+    private final int size;       // rows, columns, blocks, and values
+    private final int cellCount;
+    private final int peerCount;
+    private final int allValues;  // mask with bits 1 to size set
+
+    // Lookup tables of the topology shared with Grid
+    private final int[] rowOf;
+    private final int[] columnOf;
+    private final int[] blockOf;
+    private final int[] peers;
+    private final int[] units;
+
+    private final byte[] values;     // value of each cell, 0 for blank
+    private final int[] candidates;  // candidate mask of each blank cell, 0 once filled
+    private int filledCount;
+    private boolean contradiction;   // set when a blank cell or a value has no place left
+
+    // Values and candidates saved before each guess, one set per search depth
+    private final byte[][] savedValues;
+    private final int[][] savedCandidates;
+    private final int[] savedFilledCount;
+
+    // Working storage for one unit
+    private final int[] subsetPositions;  // positions of the cells or values tried as a subset
+    private final int[] valuePositions;   // positions in the unit of each value's candidates
+    private final int[] lineParts;        // candidates of each row or column part of a block
+    private final byte[] givens;          // givens of a grid being solved
+    private final byte[] solution;        // solution of a grid being solved
+
+    // Techniques used by the last solve
+    private final int[] useCounts;        // index = Technique ordinal
+    private int difficulty;
+    private Technique hardest;
+
+    /**
+     * Constructor for a solver of 9 x 9 puzzles.
+     */
+    public TechniqueSolver()
+    {
+        this(3);
+    } // end constructor
+
+    /**
+     * Constructor for a solver of puzzles with blocks of the given size.
+     * @param boxSize  rows of cells in one block (2 to 5)
+     */
+    public TechniqueSolver(int boxSize)
+    {
+        Topology topology = Topology.of(boxSize);  // rejects unsupported block sizes
+        this.boxSize = boxSize;
+        size = topology.getSize();
+        cellCount = topology.getCellCount();
+        peerCount = topology.getPeerCount();
+        allValues = (1 << (size + 1)) - 2;
+
+        rowOf = topology.rowOf;
+        columnOf = topology.columnOf;
+        blockOf = topology.blockOf;
+        peers = topology.peers;
+        units = topology.units;
+
+        values = new byte[cellCount];
+        candidates = new int[cellCount];
+        savedValues = new byte[cellCount][];
+        savedCandidates = new int[cellCount][];
+        savedFilledCount = new int[cellCount];
+        subsetPositions = new int[3];
+        valuePositions = new int[size + 1];
+        lineParts = new int[2 * boxSize];
+        givens = new byte[cellCount];
+        solution = new byte[cellCount];
+        useCounts = new int[Technique.values().length];
+    } // end constructor
+
+
+    /**
+     * Solves a puzzle and rates it. The destination is written even if the
+     * puzzle cannot be solved.
+     * @param puzzle       getCellCount() values (0 for blank cells) in row-major order
+     * @param offset       index in the puzzle array of the first cell's value
+     * @param destination  the array the solution is written to
+     * @param destOffset   index in the destination for the first cell's value
+     * @return  True if the puzzle is successfully solved; false otherwise
+     */
+    public boolean solve(byte[] puzzle, int offset, byte[] destination, int destOffset)
+    {
+        for (int technique = 0; technique < useCounts.length; technique++)
+        {
+            useCounts[technique] = 0;
+        } // end for
+        difficulty = 0;
+        hardest = null;
+
+        boolean solved = load(puzzle, offset)  &&  search(0);
+        System.arraycopy(values, 0, destination, destOffset, cellCount);
+        return solved;
+    } // end solve
+
+
+    /**
+     * Solves the givens of a grid and rates the puzzle, filling the grid's
+     * blank cells with the solution if one is found.
+     * @param grid  the grid to solve, with the same block size as the solver
+     * @return  True if the puzzle is successfully solved; false otherwise
+     */
+    public boolean solve(Grid grid)
+    {
+        if (grid.getBoxSize() != boxSize)
+        {
+            throw new IllegalArgumentException("Grid block size " + grid.getBoxSize()
+                                               + " does not match solver block size " + boxSize);
+        }
+        grid.copyGivens(givens, 0);
+        boolean solved = solve(givens, 0, solution, 0);
+        if (solved)
+        {
+            grid.fillBlankCells(solution, 0);
+        }
+        return solved;
+    } // end solve
+
+
+    /**
+     * Returns the difficulty of the last puzzle solved: the sum of the
+     * weights of every technique use, guesses included.
+     * @return  the difficulty score
+     */
+    public int getDifficulty()
+    {
+        return difficulty;
+    } // end getDifficulty
+
+    /**
+     * Returns the hardest technique the last puzzle needed.
+     * @return  the technique, or null if the puzzle had no blank cells
+     */
+    public Technique getHardestTechnique()
+    {
+        return hardest;
+    } // end getHardestTechnique
+
+    /**
+     * Returns the number of times the last solve used a technique.
+     * @param technique  the technique
+     * @return  its use count
+     */
+    public int getUseCount(Technique technique)
+    {
+        return useCounts[technique.ordinal()];
+    } // end getUseCount
+
+    public int getCellCount()
+    {
+        return cellCount;
+    } // end getCellCount
+
+
+    // Private method that loads the givens, removing each from its peers'
+    // candidates. Returns false if two givens conflict.
+    private boolean load(byte[] puzzle, int offset)
+    {
+        filledCount = 0;
+        contradiction = false;
+        for (int cell = 0; cell < cellCount; cell++)
+        {
+            values[cell] = 0;
+            candidates[cell] = allValues;
+        } // end for
+        for (int cell = 0; cell < cellCount  &&  !contradiction; cell++)
+        {
+            int value = puzzle[offset + cell];
+            if (value != 0)
+            {
+                if ((candidates[cell] & (1 << value)) == 0)  // a peer has the same given
+                {
+                    contradiction = true;
+                }
+                else
+                {
+                    place(cell, value);
+                }
+            }
+        } // end for
+        return !contradiction;
+    } // end load
+
+
+    // Private method that deduces as far as the techniques go, then guesses a
+    // value for the blank cell with the fewest candidates and searches on.
+    // A wrong guess is removed from the cell's candidates, which may let the
+    // techniques deduce more. Returns true once the grid is solved.
+    private boolean search(int depth)
+    {
+        while (deduce())
+        {
+            if (filledCount == cellCount)
+            {
+                return true;
+            }
+            int cell = selectGuessCell();
+            int bit = candidates[cell] & -candidates[cell];
+            record(Technique.GUESS, 1);
+            saveState(depth);
+            place(cell, Integer.numberOfTrailingZeros(bit));
+            if (search(depth + 1))
+            {
+                return true;
+            }
+            restoreState(depth);
+            removeCandidates(cell, bit);
+        } // end while
+        return false;
+    } // end search
+
+
+    // Private method that applies the techniques, cheapest first, until the
+    // grid is solved or none applies. Returns false on a contradiction.
+    private boolean deduce()
+    {
+        boolean progress = true;
+        while (progress  &&  !contradiction  &&  filledCount < cellCount)
+        {
+            progress = applyNakedSingles()
+                       ||  applyHiddenSingles()
+                       ||  applyLockedCandidates()
+                       ||  applyNakedSubsets(2, Technique.NAKED_PAIR)
+                       ||  applyHiddenSubsets(2, Technique.HIDDEN_PAIR)
+                       ||  applyNakedSubsets(3, Technique.NAKED_TRIPLE)
+                       ||  applyHiddenSubsets(3, Technique.HIDDEN_TRIPLE)
+                       ||  applyFish(2, Technique.X_WING)
+                       ||  applyFish(3, Technique.SWORDFISH)
+                       ||  applyXYWing();
+        } // end while
+        return !contradiction;
+    } // end deduce
+
+
+    // Private method that fills every blank cell with a single candidate
+    private boolean applyNakedSingles()
+    {
+        boolean progress = false;
+        for (int cell = 0; cell < cellCount  &&  !contradiction; cell++)
+        {
+            int mask = candidates[cell];
+            if (values[cell] == 0  &&  (mask & (mask - 1)) == 0)
+            {
+                if (mask == 0)
+                {
+                    contradiction = true;
+                }
+                else
+                {
+                    place(cell, Integer.numberOfTrailingZeros(mask));
+                    record(Technique.NAKED_SINGLE, 1);
+                }
+                progress = true;
+            }
+        } // end for
+        return progress;
+    } // end applyNakedSingles
+
+
+    // Private method that fills every value with a single possible cell in a
+    // unit, and finds values with no possible cell
+    private boolean applyHiddenSingles()
+    {
+        boolean progress = false;
+        for (int unit = 0; unit < 3 * size  &&  !contradiction; unit++)
+        {
+            int start = unit * size;
+            int once = 0;    // values possible in at least one cell
+            int twice = 0;   // values possible in at least two cells
+            int placed = 0;  // values already in the unit
+            for (int position = 0; position < size; position++)
+            {
+                int cell = units[start + position];
+                if (values[cell] != 0)
+                {
+                    placed |= 1 << values[cell];
+                }
+                else
+                {
+                    twice |= once & candidates[cell];
+                    once |= candidates[cell];
+                }
+            } // end for
+            if ((once | placed) != allValues)
+            {
+                contradiction = true;
+                return true;
+            }
+
+            int singles = once & ~twice;
+            while (singles != 0  &&  !contradiction)
+            {
+                int bit = singles & -singles;
+                singles ^= bit;
+                int cell = -1;
+                for (int position = 0; position < size  &&  cell < 0; position++)
+                {
+                    if ((candidates[units[start + position]] & bit) != 0)
+                    {
+                        cell = units[start + position];
+                    }
+                } // end for
+                if (cell < 0)  // its only cell was just filled with another value
+                {
+                    contradiction = true;
+                }
+                else
+                {
+                    place(cell, Integer.numberOfTrailingZeros(bit));
+                    record(Technique.HIDDEN_SINGLE, 1);
+                }
+                progress = true;
+            } // end while
+        } // end for
+        return progress;
+    } // end applyHiddenSingles
+
+
+    // Private method that finds, for every block and every row and column
+    // crossing it, values whose candidates in one of the two lie only in the
+    // crossing, and removes them from the rest of the other
+    private boolean applyLockedCandidates()
+    {
+        boolean progress = false;
+        for (int block = 0; block < size  &&  !contradiction; block++)
+        {
+            // Candidates of each row part (0 to boxSize - 1) and column part
+            // (boxSize to 2 * boxSize - 1) of the block
+            for (int part = 0; part < 2 * boxSize; part++)
+            {
+                lineParts[part] = 0;
+            } // end for
+            int blockStart = (2 * size + block) * size;
+            for (int position = 0; position < size; position++)
+            {
+                int mask = candidates[units[blockStart + position]];
+                lineParts[position / boxSize] |= mask;
+                lineParts[boxSize + position % boxSize] |= mask;
+            } // end for
+
+            for (int part = 0; part < 2 * boxSize  &&  !contradiction; part++)
+            {
+                boolean isRow = part < boxSize;
+                int line = isRow ? (block / boxSize) * boxSize + part
+                                 : (block % boxSize) * boxSize + part - boxSize;
+                int lineStart = (isRow ? line : size + line) * size;
+
+                int restOfBlock = 0;  // candidates of the block outside the line
+                for (int other = (isRow ? 0 : boxSize); other < (isRow ? boxSize : 2 * boxSize); other++)
+                {
+                    if (other != part)
+                    {
+                        restOfBlock |= lineParts[other];
+                    }
+                } // end for
+                int restOfLine = 0;   // candidates of the line outside the block
+                for (int position = 0; position < size; position++)
+                {
+                    int cell = units[lineStart + position];
+                    if (blockOf[cell] != block)
+                    {
+                        restOfLine |= candidates[cell];
+                    }
+                } // end for
+
+                int pointing = lineParts[part] & ~restOfBlock & restOfLine;
+                if (pointing != 0)
+                {
+                    for (int position = 0; position < size; position++)
+                    {
+                        int cell = units[lineStart + position];
+                        if (blockOf[cell] != block)
+                        {
+                            removeCandidates(cell, pointing);
+                        }
+                    } // end for
+                    record(Technique.POINTING, Integer.bitCount(pointing));
+                    progress = true;
+                }
+                int claiming = lineParts[part] & ~restOfLine & restOfBlock;
+                if (claiming != 0)
+                {
+                    for (int position = 0; position < size; position++)
+                    {
+                        int cell = units[blockStart + position];
+                        if ((isRow ? rowOf[cell] : columnOf[cell]) != line)
+                        {
+                            removeCandidates(cell, claiming);
+                        }
+                    } // end for
+                    record(Technique.CLAIMING, Integer.bitCount(claiming));
+                    progress = true;
+                }
+                if (pointing != 0  ||  claiming != 0)  // the parts have changed
+                {
+                    break;
+                }
+            } // end for
+        } // end for
+        return progress;
+    } // end applyLockedCandidates
+
+
+    // Private method that finds subsets of count cells in a unit whose
+    // candidates together number count, and removes those candidates from
+    // the unit's other cells
+    private boolean applyNakedSubsets(int count, Technique technique)
+    {
+        boolean progress = false;
+        for (int unit = 0; unit < 3 * size  &&  !contradiction; unit++)
+        {
+            int start = unit * size;
+            int subsetCells = 0;  // positions of cells with 2 to count candidates
+            int blankCells = 0;
+            for (int position = 0; position < size; position++)
+            {
+                int mask = candidates[units[start + position]];
+                if (mask != 0)
+                {
+                    blankCells++;
+                    int candidateCount = Integer.bitCount(mask);
+                    if (candidateCount >= 2  &&  candidateCount <= count)
+                    {
+                        subsetCells |= 1 << position;
+                    }
+                }
+            } // end for
+            if (blankCells > count  &&  Integer.bitCount(subsetCells) >= count)
+            {
+                progress |= findNakedSubset(start, subsetCells, count, 0, 0, technique);
+            }
+        } // end for
+        return progress;
+    } // end applyNakedSubsets
+
+
+    // Private method that tries every subset of the remaining positions,
+    // adding one cell at a time to the first chosen ones, and eliminates
+    // the candidates of each naked subset found
+    private boolean findNakedSubset(int start, int remaining, int count, int chosen,
+                                    int union, Technique technique)
+    {
+        if (chosen == count)
+        {
+            if (Integer.bitCount(union) != count)
+            {
+                return false;
+            }
+            boolean removed = false;
+            for (int position = 0; position < size; position++)
+            {
+                if (!isChosen(position, chosen))
+                {
+                    removed |= removeCandidates(units[start + position], union);
+                }
+            } // end for
+            if (removed)
+            {
+                record(technique, 1);
+            }
+            return removed;
+        }
+
+        boolean progress = false;
+        while (remaining != 0  &&  !contradiction)
+        {
+            int position = Integer.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            int newUnion = union | candidates[units[start + position]];
+            if (Integer.bitCount(newUnion) <= count)
+            {
+                subsetPositions[chosen] = position;
+                progress |= findNakedSubset(start, remaining, count, chosen + 1, newUnion, technique);
+            }
+        } // end while
+        return progress;
+    } // end findNakedSubset
+
+
+    // Private method that finds subsets of count values in a unit whose
+    // possible cells together number count, and removes every other
+    // candidate from those cells
+    private boolean applyHiddenSubsets(int count, Technique technique)
+    {
+        boolean progress = false;
+        for (int unit = 0; unit < 3 * size  &&  !contradiction; unit++)
+        {
+            int start = unit * size;
+            int blankCells = 0;
+            for (int value = 1; value <= size; value++)
+            {
+                valuePositions[value] = 0;
+            } // end for
+            for (int position = 0; position < size; position++)
+            {
+                int mask = candidates[units[start + position]];
+                if (mask != 0)
+                {
+                    blankCells++;
+                }
+                while (mask != 0)
+                {
+                    valuePositions[Integer.numberOfTrailingZeros(mask)] |= 1 << position;
+                    mask &= mask - 1;
+                } // end while
+            } // end for
+
+            int subsetValues = 0;  // values with 2 to count possible cells
+            for (int value = 1; value <= size; value++)
+            {
+                int possibleCells = Integer.bitCount(valuePositions[value]);
+                if (possibleCells >= 2  &&  possibleCells <= count)
+                {
+                    subsetValues |= 1 << value;
+                }
+            } // end for
+            if (blankCells > count  &&  Integer.bitCount(subsetValues) >= count)
+            {
+                progress |= findHiddenSubset(start, subsetValues, count, 0, 0, 0, technique);
+            }
+        } // end for
+        return progress;
+    } // end applyHiddenSubsets
+
+
+    // Private method that tries every subset of the remaining values, adding
+    // one value at a time, and restricts the cells of each hidden subset found
+    private boolean findHiddenSubset(int start, int remaining, int count, int chosen,
+                                     int chosenValues, int union, Technique technique)
+    {
+        if (chosen == count)
+        {
+            if (Integer.bitCount(union) != count)
+            {
+                return false;
+            }
+            boolean removed = false;
+            for (int positions = union; positions != 0; positions &= positions - 1)
+            {
+                int cell = units[start + Integer.numberOfTrailingZeros(positions)];
+                removed |= removeCandidates(cell, ~chosenValues);
+            } // end for
+            if (removed)
+            {
+                record(technique, 1);
+            }
+            return removed;
+        }
+
+        boolean progress = false;
+        while (remaining != 0  &&  !contradiction)
+        {
+            int value = Integer.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            int newUnion = union | valuePositions[value];
+            if (Integer.bitCount(newUnion) <= count)
+            {
+                progress |= findHiddenSubset(start, remaining, count, chosen + 1,
+                                             chosenValues | (1 << value), newUnion, technique);
+            }
+        } // end while
+        return progress;
+    } // end findHiddenSubset
+
+
+    // Private method returning true if a position is among the first chosen
+    // entries of subsetPositions
+    private boolean isChosen(int position, int chosen)
+    {
+        boolean found = false;
+        for (int k = 0; k < chosen  &&  !found; k++)
+        {
+            found = subsetPositions[k] == position;
+        } // end for
+        return found;
+    } // end isChosen
+
+
+    // Private method that finds, for each value, count rows whose candidates
+    // for it lie in only count columns, and removes it from the rest of those
+    // columns; then the same with rows and columns swapped (X-Wing for 2,
+    // Swordfish for 3)
+    private boolean applyFish(int count, Technique technique)
+    {
+        boolean progress = false;
+        for (int value = 1; value <= size  &&  !contradiction; value++)
+        {
+            int bit = 1 << value;
+            for (int baseType = 0; baseType < 2; baseType++)  // 0 for rows, 1 for columns
+            {
+                int baseLines = 0;  // lines with 2 to count possible cells for the value
+                for (int line = 0; line < size; line++)
+                {
+                    int start = (baseType * size + line) * size;
+                    int positions = 0;
+                    for (int position = 0; position < size; position++)
+                    {
+                        if ((candidates[units[start + position]] & bit) != 0)
+                        {
+                            positions |= 1 << position;
+                        }
+                    } // end for
+                    valuePositions[line] = positions;
+                    int possibleCells = Integer.bitCount(positions);
+                    if (possibleCells >= 2  &&  possibleCells <= count)
+                    {
+                        baseLines |= 1 << line;
+                    }
+                } // end for
+                if (Integer.bitCount(baseLines) >= count)
+                {
+                    progress |= findFish(bit, 1 - baseType, baseLines, count, 0, 0, 0, technique);
+                }
+            } // end for
+        } // end for
+        return progress;
+    } // end applyFish
+
+
+    // Private method that tries every set of count base lines, adding one
+    // line at a time, and removes the value from the cover lines of each fish
+    // found. valuePositions holds the value's positions in each base line.
+    private boolean findFish(int bit, int coverType, int remaining, int count, int chosen,
+                             int chosenLines, int union, Technique technique)
+    {
+        if (chosen == count)
+        {
+            if (Integer.bitCount(union) != count)
+            {
+                return false;
+            }
+            boolean removed = false;
+            for (int covers = union; covers != 0; covers &= covers - 1)
+            {
+                int start = (coverType * size + Integer.numberOfTrailingZeros(covers)) * size;
+                for (int position = 0; position < size; position++)
+                {
+                    if ((chosenLines & (1 << position)) == 0)
+                    {
+                        removed |= removeCandidates(units[start + position], bit);
+                    }
+                } // end for
+            } // end for
+            if (removed)
+            {
+                record(technique, 1);
+            }
+            return removed;
+        }
+
+        boolean progress = false;
+        while (remaining != 0  &&  !contradiction)
+        {
+            int line = Integer.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            int newUnion = union | valuePositions[line];
+            if (Integer.bitCount(newUnion) <= count)
+            {
+                progress |= findFish(bit, coverType, remaining, count, chosen + 1,
+                                     chosenLines | (1 << line), newUnion, technique);
+            }
+        } // end while
+        return progress;
+    } // end findFish
+
+
+    // Private method that finds a cell with two candidates x and y seeing a
+    // cell with x and z and a cell with y and z, and removes z from every
+    // cell that sees both of those
+    private boolean applyXYWing()
+    {
+        for (int pivot = 0; pivot < cellCount; pivot++)
+        {
+            int pivotMask = candidates[pivot];
+            if (Integer.bitCount(pivotMask) != 2)
+            {
+                continue;
+            }
+            for (int i = 0; i < peerCount; i++)
+            {
+                int first = peers[pivot * peerCount + i];
+                int firstMask = candidates[first];
+                int shared = firstMask & pivotMask;
+                if (Integer.bitCount(firstMask) != 2  ||  Integer.bitCount(shared) != 1)
+                {
+                    continue;
+                }
+                int z = firstMask & ~pivotMask;
+                int secondMask = (pivotMask & ~shared) | z;  // the other pincer has y and z
+                for (int j = 0; j < peerCount; j++)
+                {
+                    int second = peers[pivot * peerCount + j];
+                    if (candidates[second] != secondMask)
+                    {
+                        continue;
+                    }
+                    boolean removed = false;
+                    for (int k = 0; k < peerCount; k++)
+                    {
+                        int cell = peers[first * peerCount + k];
+                        if (cell != second  &&  isPeer(cell, second))
+                        {
+                            removed |= removeCandidates(cell, z);
+                        }
+                    } // end for
+                    if (removed)
+                    {
+                        record(Technique.XY_WING, 1);
+                        return true;
+                    }
+                } // end for
+            } // end for
+        } // end for
+        return false;
+    } // end applyXYWing
+
+
+    // Private method returning true if two different cells share a row,
+    // column, or block
+    private boolean isPeer(int cell, int other)
+    {
+        return cell != other  &&  (rowOf[cell] == rowOf[other]  ||  columnOf[cell] == columnOf[other]
+                                   ||  blockOf[cell] == blockOf[other]);
+    } // end isPeer
+
+
+    // Private method to fill a cell and remove its value from its peers'
+    // candidates, noting a contradiction if a blank peer is left with none
+    private void place(int cell, int value)
+    {
+        values[cell] = (byte) value;
+        candidates[cell] = 0;
+        filledCount++;
+        int bit = 1 << value;
+        int start = cell * peerCount;
+        for (int k = 0; k < peerCount; k++)
+        {
+            int peer = peers[start + k];
+            int mask = candidates[peer];
+            if ((mask & bit) != 0)
+            {
+                candidates[peer] = mask & ~bit;
+                if (mask == bit)
+                {
+                    contradiction = true;
+                }
+            }
+        } // end for
+    } // end place
+
+
+    // Private method to remove candidates from a blank cell, noting a
+    // contradiction if it is left with none. Returns true if any were removed.
+    private boolean removeCandidates(int cell, int mask)
+    {
+        int old = candidates[cell];
+        if ((old & mask) == 0)
+        {
+            return false;
+        }
+        candidates[cell] = old & ~mask;
+        if (candidates[cell] == 0)
+        {
+            contradiction = true;
+        }
+        return true;
+    } // end removeCandidates
+
+
+    // Private method returning the blank cell with the fewest candidates
+    private int selectGuessCell()
+    {
+        int bestCell = -1;
+        int bestCount = size + 1;
+        for (int cell = 0; cell < cellCount  &&  bestCount > 2; cell++)
+        {
+            int count = Integer.bitCount(candidates[cell]);
+            if (values[cell] == 0  &&  count < bestCount)
+            {
+                bestCell = cell;
+                bestCount = count;
+            }
+        } // end for
+        return bestCell;
+    } // end selectGuessCell
+
+
+    // Private method to save the values and candidates before a guess
+    private void saveState(int depth)
+    {
+        if (savedValues[depth] == null)
+        {
+            savedValues[depth] = new byte[cellCount];
+            savedCandidates[depth] = new int[cellCount];
+        }
+        System.arraycopy(values, 0, savedValues[depth], 0, cellCount);
+        System.arraycopy(candidates, 0, savedCandidates[depth], 0, cellCount);
+        savedFilledCount[depth] = filledCount;
+    } // end saveState
+
+
+    // Private method to undo a wrong guess and everything deduced from it
+    private void restoreState(int depth)
+    {
+        System.arraycopy(savedValues[depth], 0, values, 0, cellCount);
+        System.arraycopy(savedCandidates[depth], 0, candidates, 0, cellCount);
+        filledCount = savedFilledCount[depth];
+        contradiction = false;
+    } // end restoreState
+
+
+    // Private method to add technique uses to the rating
+    private void record(Technique technique, int uses)
+    {
+        useCounts[technique.ordinal()] += uses;
+        difficulty += technique.getWeight() * uses;
+        if (hardest == null  ||  technique.ordinal() > hardest.ordinal())
+        {
+            hardest = technique;
+        }
+    } // end record
+
+
+    /**
+     * Test method. Rates a puzzle of each kind, then, if a file is
+     * given, rates every puzzle in it (standard line format) and prints the
+     * rate and how many puzzles needed each technique at most.
+     * @param args  optional puzzle file name
+     * @throws IOException  if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException
+    {
+        TechniqueSolver solver = new TechniqueSolver();
+        Grid grid = new Grid();
+        String[] lines = {
+            "200006754007904180384007020500082070038700400009600005005370090870060001013058000",  // easy
+            "800000000003600000070090200050007000000045700000100030001000068008500010090000400",  // hard
+            "000000010400000000020000000000050407008000300001090000300400200050100000000806000",  // 17 givens
+            "000000000000003085001020000000507000004000100090000000500000073002010000000040009"   // top row 9 to 1
+        };
+        byte[] values = new byte[81];
+        for (String line : lines)
+        {
+            for (int index = 0; index < 81; index++)
+            {
+                values[index] = (byte) (line.charAt(index) - '0');
+            } // end for
+            grid.load(values, 0);
+            boolean solved = solver.solve(grid);
+            System.out.println(line + ": solved " + solved + ", valid " + grid.isValidGrid()
+                               + ", difficulty " + solver.getDifficulty()
+                               + ", hardest " + solver.getHardestTechnique());
+            for (Technique technique : Technique.values())
+            {
+                if (solver.getUseCount(technique) > 0)
+                {
+                    System.out.println("    " + technique + ": " + solver.getUseCount(technique));
+                }
+            } // end for
+        } // end for
+
+        if (args.length > 0)
+        {
+            try (InputStream in = new FileInputStream(args[0]))
+            {
+                PuzzleReader reader = new PuzzleReader(in);
+                byte[] puzzle = new byte[81];
+                byte[] solution = new byte[81];
+                int[] hardestCounts = new int[Technique.values().length + 1];  // last: no blank cells
+                long puzzleCount = 0;
+                long solvedCount = 0;
+                long totalDifficulty = 0;
+                long startTime = System.nanoTime();
+                while (reader.next(puzzle, 0))
+                {
+                    puzzleCount++;
+                    if (solver.solve(puzzle, 0, solution, 0))
+                    {
+                        solvedCount++;
+                        totalDifficulty += solver.getDifficulty();
+                        Technique hardest = solver.getHardestTechnique();
+                        hardestCounts[(hardest == null) ? hardestCounts.length - 1 : hardest.ordinal()]++;
+                    }
+                } // end while
+                long elapsed = System.nanoTime() - startTime;
+                System.out.printf("Rated %d of %d puzzles in %.1f ms (%.0f puzzles/sec), mean difficulty %.1f%n",
+                                  solvedCount, puzzleCount, elapsed / 1e6, puzzleCount * 1e9 / elapsed,
+                                  (solvedCount == 0) ? 0.0 : (double) totalDifficulty / solvedCount);
+                for (Technique technique : Technique.values())
+                {
+                    System.out.println("    hardest " + technique + ": " + hardestCounts[technique.ordinal()]);
+                } // end for
+            }
+        }
+    } // end main
+
+} // end TechniqueSolver
@@ -0,0 +1,78 @@
+package SudokuSolver;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes each result as one line in the standard format (see PuzzleReader):
+ * the solution, or the puzzle unchanged if it was not solved.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class TextResultSink implements ResultSink
+{
+    private static final int BUFFER_SIZE = 82 * 800;  // bytes written at a time
+
+    private final OutputStream out;
+    private final boolean closeStream;  // whether close also closes out
+    private final byte[] buffer;        // lines waiting to be written
+    private int bufferSize;             // number of bytes in buffer
+
+    /**
+     * Constructor for a sink writing to the given stream, which close also closes.
+     * @param out  the stream the lines are written to
+     */
+    public TextResultSink(OutputStream out)
+    {
+        this(out, true);
+    } // end constructor
+
+    /**
+     * Constructor for a sink writing to the given stream.
+     * @param out          the stream the lines are written to
+     * @param closeStream  true if close should also close the stream
+     */
+    public TextResultSink(OutputStream out, boolean closeStream)
+    {
+        this.out = out;
+        this.closeStream = closeStream;
+        buffer = new byte[BUFFER_SIZE];
+    } // end constructor
+
+
+    @Override public void accept(byte[] puzzle, int puzzleOffset, byte[] solution, int solutionOffset,
+                                 boolean solved, SolveStatistics statistics) throws IOException
+    {
+        if (bufferSize + 82 > buffer.length)
+        {
+            out.write(buffer, 0, bufferSize);
+            bufferSize = 0;
+        }
+        if (solved)
+        {
+            PuzzleReader.formatLine(solution, solutionOffset, buffer, bufferSize);
+        }
+        else
+        {
+            PuzzleReader.formatLine(puzzle, puzzleOffset, buffer, bufferSize);
+        }
+        bufferSize += 82;
+    } // end accept
+
+
+    @Override public void flush() throws IOException
+    {
+        out.write(buffer, 0, bufferSize);
+        bufferSize = 0;
+        out.flush();
+    } // end flush
+
+
+    @Override public void close() throws IOException
+    {
+        flush();
+        if (closeStream)
+        {
+            out.close();
+        }
+    } // end close
+
+} // end TextResultSink
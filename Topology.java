@@ -0,0 +1,196 @@
+package SudokuSolver;
+
+/**
+ * The fixed layout of a grid size: which row, column, and block each cell is
+ * in, the peers of each cell, the cells of each unit, and the top-left cell
+ * of each cell's block. A Topology is built once per block size, the first
+ * time it is asked for, and shared by every Grid and solver of that size, so
+ * no per-grid or per-check work goes into the layout.
+ *
+ * Cells are indexed in row-major order. Units are numbered rows first
+ * (0 to size - 1), then columns, then blocks. Every table is a flat int
+ * array indexed by cell (or by unit), and none is changed after it is built.
+ * @author Tze-Hei "Zee" Yong
+ */
+public final class Topology
+{
+    /** Smallest supported block size: a 4 x 4 grid. */
+    public static final int MIN_BOX_SIZE = 2;
+
+    /** Largest supported block size: a 25 x 25 grid, whose values 1 to 25 fit in an int mask. */
+    public static final int MAX_BOX_SIZE = 5;
+
+    private static final Topology[] TOPOLOGIES = new Topology[MAX_BOX_SIZE + 1];
+
+    private final int boxSize;    // rows (and columns) of cells in one block
+    private final int size;       // rows, columns, blocks, and values: boxSize squared
+    private final int cellCount;  // size squared
+    private final int peerCount;  // cells sharing a row, column, or block with a cell
+
+    // Tables read directly by Grid and the solvers of this package, which
+    // must not change them
+    final int[] rowOf;      // row of each cell (0 to size - 1)
+    final int[] columnOf;   // column of each cell (0 to size - 1)
+    final int[] blockOf;    // block of each cell (0 to size - 1)
+    final int[] boxOrigin;  // index of the top-left cell of each cell's block
+    final int[] peers;      // the peers of cell i are at i * peerCount, in row-major order
+    final int[] units;      // the cells of unit u are at u * size; a block's cells
+                            // are in row-major order within the block
+    final int[] cellUnits;  // the row, column, and block unit of cell i are at i * 3
+
+    // Private constructor building the tables for one block size
+    private Topology(int boxSize)
+    {
+        this.boxSize = boxSize;
+        size = boxSize * boxSize;
+        cellCount = size * size;
+        peerCount = 2 * (size - 1) + (boxSize - 1) * (boxSize - 1);
+        rowOf = new int[cellCount];
+        columnOf = new int[cellCount];
+        blockOf = new int[cellCount];
+        boxOrigin = new int[cellCount];
+        peers = new int[cellCount * peerCount];
+        units = new int[3 * size * size];
+        cellUnits = new int[3 * cellCount];
+
+        for (int index = 0; index < cellCount; index++)
+        {
+            int row = index / size;
+            int column = index % size;
+            int block = (row / boxSize) * boxSize + column / boxSize;
+            int positionInBlock = (row % boxSize) * boxSize + (column % boxSize);
+            rowOf[index] = row;
+            columnOf[index] = column;
+            blockOf[index] = block;
+            boxOrigin[index] = (row - row % boxSize) * size + (column - column % boxSize);
+            units[row * size + column] = index;
+            units[(size + column) * size + row] = index;
+            units[(2 * size + block) * size + positionInBlock] = index;
+            cellUnits[3 * index] = row;
+            cellUnits[3 * index + 1] = size + column;
+            cellUnits[3 * index + 2] = 2 * size + block;
+        } // end for
+
+        // A peer shares a row, column, or block with the cell (counted once)
+        for (int index = 0; index < cellCount; index++)
+        {
+            int count = 0;
+            for (int other = 0; other < cellCount; other++)
+            {
+                if (other != index  &&  (rowOf[other] == rowOf[index]
+                                         || columnOf[other] == columnOf[index]
+                                         || blockOf[other] == blockOf[index]))
+                {
+                    peers[index * peerCount + count] = other;
+                    count++;
+                }
+            } // end inner for
+        } // end outer for
+    } // end constructor
+
+
+    /**
+     * Returns the topology of grids with the given block size, building it
+     * the first time it is asked for.
+     * @param boxSize  rows of cells in one block: 2, 3, 4, or 5, for a grid
+     *                 of 4 x 4, 9 x 9, 16 x 16, or 25 x 25 cells
+     * @return  the shared topology
+     */
+    public static synchronized Topology of(int boxSize)
+    {
+        if (boxSize < MIN_BOX_SIZE  ||  boxSize > MAX_BOX_SIZE)
+        {
+            throw new IllegalArgumentException("Block size out of range (" + MIN_BOX_SIZE
+                                               + " to " + MAX_BOX_SIZE + "): " + boxSize);
+        }
+        if (TOPOLOGIES[boxSize] == null)
+        {
+            TOPOLOGIES[boxSize] = new Topology(boxSize);
+        }
+        return TOPOLOGIES[boxSize];
+    } // end of
+
+
+    public int getBoxSize()
+    {
+        return boxSize;
+    } // end getBoxSize
+
+    public int getSize()
+    {
+        return size;
+    } // end getSize
+
+    public int getCellCount()
+    {
+        return cellCount;
+    } // end getCellCount
+
+    public int getPeerCount()
+    {
+        return peerCount;
+    } // end getPeerCount
+
+    public int getRow(int index)
+    {
+        return rowOf[index];
+    } // end getRow
+
+    public int getColumn(int index)
+    {
+        return columnOf[index];
+    } // end getColumn
+
+    public int getBlock(int index)
+    {
+        return blockOf[index];
+    } // end getBlock
+
+
+    /**
+     * Returns the top-left cell of the block holding a cell.
+     * @param index  the cell's index
+     * @return  the index of the block's first cell
+     */
+    public int getBoxOrigin(int index)
+    {
+        return boxOrigin[index];
+    } // end getBoxOrigin
+
+
+    /**
+     * Returns one peer of a cell: a cell sharing its row, column, or block.
+     * @param index  the cell's index
+     * @param k      which peer, from 0 to getPeerCount() - 1
+     * @return  the index of the peer
+     */
+    public int getPeer(int index, int k)
+    {
+        return peers[index * peerCount + k];
+    } // end getPeer
+
+
+    /**
+     * Returns one of the three units holding a cell.
+     * @param index  the cell's index
+     * @param kind   0 for its row, 1 for its column, 2 for its block
+     * @return  the unit number (rows, then columns, then blocks)
+     */
+    public int getUnitOf(int index, int kind)
+    {
+        return cellUnits[3 * index + kind];
+    } // end getUnitOf
+
+
+    /**
+     * Returns one cell of a unit.
+     * @param unit      the unit number (rows, then columns, then blocks)
+     * @param position  the cell's position in the unit, from 0 to getSize() - 1
+     * @return  the index of the cell
+     */
+    public int getUnitCell(int unit, int position)
+    {
+        return units[unit * size + position];
+    } // end getUnitCell
+
+} // end Topology
@@ -0,0 +1,110 @@
+package SudokuSolver;
+import java.util.Arrays;
+
+/**
+ * A journal of cell changes that can be rolled back to any earlier point.
+ * Each change is recorded as the cell's index and the value it had before
+ * the change. A checkpoint is simply the trail's size at that moment, and
+ * rolling back to it undoes the changes recorded since, newest first, so
+ * the cost is proportional to the number of changes rather than to the
+ * number of cells.
+ *
+ * The trail only records; the owner undoes each change as it removes it
+ * from the trail, so whatever state it derives from the cell values
+ * (masks, counts) can be restored along with them. No objects are allocated
+ * except when the trail grows past its capacity.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class Trail
+{
+    private static final int VALUE_BITS = 8;  // low bits of an entry holding the old value
+    private static final int VALUE_MASK = (1 << VALUE_BITS) - 1;
+
+    private int[] entries;  // cell index << VALUE_BITS | old value, oldest first
+    private int size;       // number of entries in use
+
+    /**
+     * Constructor for an empty trail.
+     * @param capacity  changes the trail can hold before it must grow (at least 1)
+     */
+    public Trail(int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Trail capacity must be at least 1");
+        }
+        entries = new int[capacity];
+    } // end constructor
+
+
+    /**
+     * Records a change to a cell.
+     * @param index     the index of the cell being changed
+     * @param oldValue  the cell's value before the change (0 to 255)
+     */
+    public void record(int index, int oldValue)
+    {
+        if (size == entries.length)
+        {
+            entries = Arrays.copyOf(entries, 2 * entries.length);
+        }
+        entries[size] = (index << VALUE_BITS) | oldValue;
+        size++;
+    } // end record
+
+
+    /**
+     * Returns the number of changes recorded, which is also the checkpoint
+     * to roll back to in order to undo every change recorded from now on.
+     * @return  the trail's size
+     */
+    public int size()
+    {
+        return size;
+    } // end size
+
+
+    /**
+     * Removes the most recent change, which its owner then undoes.
+     * @return  the change, decoded by indexOf and oldValueOf (the trail must
+     *          not be empty)
+     */
+    public int removeLast()
+    {
+        size--;
+        return entries[size];
+    } // end removeLast
+
+
+    /**
+     * Returns the cell index of a change returned by removeLast.
+     * @param entry  the change
+     * @return  the index of the cell changed
+     */
+    public static int indexOf(int entry)
+    {
+        return entry >>> VALUE_BITS;
+    } // end indexOf
+
+
+    /**
+     * Returns the value the cell had before a change returned by removeLast.
+     * @param entry  the change
+     * @return  the cell's old value
+     */
+    public static int oldValueOf(int entry)
+    {
+        return entry & VALUE_MASK;
+    } // end oldValueOf
+
+
+    /**
+     * Removes every change without undoing any, making the current state the
+     * new starting point. Checkpoints taken before are no longer valid.
+     */
+    public void clear()
+    {
+        size = 0;
+    } // end clear
+
+} // end Trail
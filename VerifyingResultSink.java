@@ -0,0 +1,410 @@
+package SudokuSolver;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A sink that checks every solution before passing the results on to
+ * another sink. Each solution is checked independently of the solver that
+ * produced it, with the rules isValidGrid applies: every cell holds a value
+ * from 1 to 9, no value repeats in a row, column, or block, and every given
+ * of the puzzle is kept. Results of puzzles that were not solved are passed
+ * on unchecked, with the puzzle given as the solution.
+ *
+ * Results are copied into batches that a separate thread checks and writes
+ * to the downstream sink, so neither the checking nor the downstream output
+ * runs on the thread giving the results. That thread only waits if the
+ * checker falls a fixed number of batches behind, which bounds the memory used,
+ * and in flush, which waits for the checker to catch up.
+ * @author Tze-Hei "Zee" Yong
+ */
+public class VerifyingResultSink implements ResultSink
+{
+    private static final int BATCH_SIZE = 1024;   // results per batch
+    private static final int QUEUED_BATCHES = 8;  // batches waiting for the checker
+
+    private final ResultSink downstream;
+    private final Thread verifier;
+    private final BlockingQueue<Batch> filled;  // batches waiting to be checked
+    private final BlockingQueue<Batch> empty;   // checked batches ready for reuse
+    private final Semaphore flushed;            // released as each flush batch is written
+    private Batch current;                      // batch being filled
+    private volatile IOException failure;       // downstream error, rethrown to the caller
+    private boolean closed;
+
+    // Counts kept by the checker thread, read after close
+    private volatile long verifiedCount;  // solutions checked
+    private volatile long invalidCount;   // solutions that broke a rule
+    private volatile long firstInvalid;   // index of the first invalid solution, or -1
+
+    // Results copied for the checker thread
+    private static class Batch
+    {
+        final byte[] puzzles = new byte[BATCH_SIZE * 81];
+        final byte[] solutions = new byte[BATCH_SIZE * 81];
+        final boolean[] solved = new boolean[BATCH_SIZE];
+        final SolveStatistics[] statistics = new SolveStatistics[BATCH_SIZE];
+        final boolean[] hasStatistics = new boolean[BATCH_SIZE];
+        int size;              // results in the batch
+        long firstIndex;       // index of the batch's first result
+        boolean flush;         // true for a batch sent by flush
+        boolean last;          // true for the batch sent by close
+
+        Batch()
+        {
+            for (int k = 0; k < BATCH_SIZE; k++)
+            {
+                statistics[k] = new SolveStatistics();
+            } // end for
+        } // end constructor
+    } // end Batch
+
+    /**
+     * Constructor for a sink checking results and passing them on to the
+     * given sink, which close also closes. Starts the checker thread.
+     * @param downstream  the sink the checked results are written to
+     */
+    public VerifyingResultSink(ResultSink downstream)
+    {
+        this.downstream = downstream;
+        filled = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+        empty = new ArrayBlockingQueue<>(QUEUED_BATCHES + 1);
+        flushed = new Semaphore(0);
+        for (int k = 0; k < QUEUED_BATCHES; k++)
+        {
+            empty.add(new Batch());
+        } // end for
+        current = new Batch();
+        firstInvalid = -1;
+        verifier = new Thread(this::runVerifier, "result-verifier");
+        verifier.setDaemon(true);
+        verifier.start();
+    } // end constructor
+
+
+    @Override public void accept(byte[] puzzle, int puzzleOffset, byte[] solution, int solutionOffset,
+                                 boolean solved, SolveStatistics statistics) throws IOException
+    {
+        checkFailure();
+        Batch batch = current;
+        int k = batch.size;
+        System.arraycopy(puzzle, puzzleOffset, batch.puzzles, k * 81, 81);
+        if (solved)
+        {
+            System.arraycopy(solution, solutionOffset, batch.solutions, k * 81, 81);
+        }
+        else
+        {
+            // The puzzle stands in for the missing solution, so the slot
+            // never passes on a solution left by an earlier result
+            System.arraycopy(puzzle, puzzleOffset, batch.solutions, k * 81, 81);
+        }
+        batch.solved[k] = solved;
+        batch.hasStatistics[k] = statistics != null;
+        if (statistics != null)
+        {
+            batch.statistics[k].set(statistics.getNodeCount(), statistics.getBacktrackCount(),
+                                    statistics.getMaxDepth(), statistics.getElapsedNanos(),
+                                    statistics.isSolved());
+        }
+        batch.size++;
+        if (batch.size == BATCH_SIZE)
+        {
+            send(false);
+        }
+    } // end accept
+
+
+    /**
+     * Waits for every result received so far to be checked and written,
+     * then flushes the downstream sink.
+     * @throws IOException  if the downstream sink has failed
+     */
+    @Override public void flush() throws IOException
+    {
+        checkFailure();
+        current.flush = true;
+        send(false);
+        try
+        {
+            flushed.acquire();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for verification", e);
+        }
+        checkFailure();
+    } // end flush
+
+
+    /**
+     * Waits for every result to be checked and written, then closes the
+     * downstream sink and stops the checker thread.
+     * @throws IOException  if the downstream sink has failed
+     */
+    @Override public void close() throws IOException
+    {
+        if (!closed)
+        {
+            closed = true;
+            send(true);
+            try
+            {
+                verifier.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for verification", e);
+            }
+            checkFailure();
+        }
+    } // end close
+
+
+    /**
+     * Returns the number of solutions checked. Complete once the sink is closed.
+     * @return  the count of checked solutions
+     */
+    public long getVerifiedCount()
+    {
+        return verifiedCount;
+    } // end getVerifiedCount
+
+
+    /**
+     * Returns the number of solutions that broke a rule. Complete once the sink is closed.
+     * @return  the count of invalid solutions
+     */
+    public long getInvalidCount()
+    {
+        return invalidCount;
+    } // end getInvalidCount
+
+
+    /**
+     * Returns the index (counting results from 0) of the first invalid solution.
+     * @return  the index, or -1 if every solution checked so far is valid
+     */
+    public long getFirstInvalidIndex()
+    {
+        return firstInvalid;
+    } // end getFirstInvalidIndex
+
+
+    // Private method passing the current batch to the checker thread and
+    // taking an empty one to fill next
+    private void send(boolean last) throws IOException
+    {
+        Batch batch = current;
+        batch.last = last;
+        try
+        {
+            filled.put(batch);
+            if (!last)
+            {
+                Batch next = empty.take();
+                next.size = 0;
+                next.flush = false;
+                next.firstIndex = batch.firstIndex + batch.size;
+                current = next;
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while passing results to the verifier", e);
+        }
+    } // end send
+
+
+    // Private method rethrowing an error the checker thread got from the downstream sink
+    private void checkFailure() throws IOException
+    {
+        IOException error = failure;
+        if (error != null)
+        {
+            throw new IOException("Result output failed", error);
+        }
+    } // end checkFailure
+
+
+    // Private method run by the checker thread: checks each batch and writes
+    // it downstream until the last batch. After a downstream error, batches
+    // are only recycled and flushes only released, so the caller never waits
+    // on a failed sink.
+    private void runVerifier()
+    {
+        boolean running = true;
+        while (running)
+        {
+            Batch batch;
+            try
+            {
+                batch = filled.take();
+            }
+            catch (InterruptedException e)
+            {
+                return;  // only interrupted if the program is shutting down
+            }
+            try
+            {
+                if (failure == null)
+                {
+                    verifyAndWrite(batch);
+                    if (batch.flush)
+                    {
+                        downstream.flush();
+                    }
+                }
+                if (batch.last)
+                {
+                    downstream.close();
+                }
+            }
+            catch (IOException e)
+            {
+                setFailure(e);
+            }
+            catch (RuntimeException e)
+            {
+                setFailure(new IOException("Result output failed unexpectedly", e));
+            }
+            running = !batch.last;
+            boolean flush = batch.flush;
+            empty.offer(batch);
+            if (flush)
+            {
+                flushed.release();
+            }
+        } // end while
+    } // end runVerifier
+
+
+    // Private method keeping the first downstream error for the caller
+    private void setFailure(IOException error)
+    {
+        if (failure == null)
+        {
+            failure = error;
+        }
+    } // end setFailure
+
+
+    // Private method checking every solution of a batch and passing its
+    // results on to the downstream sink
+    private void verifyAndWrite(Batch batch) throws IOException
+    {
+        for (int k = 0; k < batch.size; k++)
+        {
+            if (batch.solved[k])
+            {
+                verifiedCount++;
+                if (!isValidSolution(batch.puzzles, batch.solutions, k * 81))
+                {
+                    invalidCount++;
+                    if (firstInvalid < 0)
+                    {
+                        firstInvalid = batch.firstIndex + k;
+                    }
+                }
+            }
+            downstream.accept(batch.puzzles, k * 81, batch.solutions, k * 81, batch.solved[k],
+                              batch.hasStatistics[k] ? batch.statistics[k] : null);
+        } // end for
+    } // end verifyAndWrite
+
+
+    /**
+     * Checks a solution with the rules of sudoku and against its puzzle,
+     * without using any solver: every cell holds a value from 1 to 9, no
+     * value repeats in a row, column, or block, and every given is kept.
+     * @param puzzles    the array holding the puzzle
+     * @param solutions  the array holding the solution
+     * @param offset     index in both arrays of the first cell
+     * @return  true if the solution is valid and solves the puzzle
+     */
+    public static boolean isValidSolution(byte[] puzzles, byte[] solutions, int offset)
+    {
+        boolean result = true;
+        for (int index = 0; index < 81  &&  result; index++)
+        {
+            int value = solutions[offset + index];
+            int given = puzzles[offset + index];
+            result = value >= 1  &&  value <= 9  &&  (given == 0  ||  given == value);
+        } // end for
+
+        // With every value from 1 to 9, a unit holds each value once exactly
+        // when its 9 values together set bits 1 to 9
+        int[] units = Topology.of(3).units;
+        for (int unit = 0; unit < 27  &&  result; unit++)
+        {
+            int usedValues = 0;
+            for (int k = unit * 9; k < unit * 9 + 9; k++)
+            {
+                usedValues |= 1 << solutions[offset + units[k]];
+            } // end for
+            result = usedValues == 0x3FE;
+        } // end for
+        return result;
+    } // end isValidSolution
+
+
+
+    /**
+     * Test method. Solves a few puzzles, gives each solution and a copy
+     * with two values swapped to a verifying sink writing text to standard
+     * output, and prints the counts of checked and invalid solutions.
+     * @param args  not used
+     * @throws IOException  if the output fails
+     */
+    public static void main(String[] args) throws IOException
+    {
+        VerifyingResultSink sink = new VerifyingResultSink(new TextResultSink(System.out, false));
+        Grid grid = new Grid();
+        grid.setStrategy(SolveStrategy.PROPAGATION);
+        byte[] puzzle = new byte[81];
+        byte[] solution = new byte[81];
+        String[] lines = {
+            "200006754007904180384007020500082070038700400009600005005370090870060001013058000",  // easy
+            "800000000003600000070090200050007000000045700000100030001000068008500010090000400",  // hard
+            "000000010400000000020000000000050407008000300001090000300400200050100000000806000",  // 17 givens
+            "000000000000003085001020000000507000004000100090000000500000073002010000000040009"   // top row 9 to 1
+        };
+        for (String line : lines)
+        {
+            for (int index = 0; index < 81; index++)
+            {
+                puzzle[index] = (byte) (line.charAt(index) - '0');
+            } // end for
+            grid.load(puzzle, 0);
+            boolean solved = grid.solveInto(solution, 0);
+            sink.accept(puzzle, 0, solution, 0, solved, null);
+
+            // Swap the first two blank cells of the solution
+            int first = -1;
+            for (int index = 0; index < 81; index++)
+            {
+                if (puzzle[index] == 0  &&  first < 0)
+                {
+                    first = index;
+                }
+                else if (puzzle[index] == 0  &&  solution[index] != solution[first])
+                {
+                    byte swap = solution[index];
+                    solution[index] = solution[first];
+                    solution[first] = swap;
+                    break;
+                }
+            } // end for
+            sink.accept(puzzle, 0, solution, 0, solved, null);
+        } // end for
+        sink.close();
+        System.out.println("Checked " + sink.getVerifiedCount() + " solutions, "
+                           + sink.getInvalidCount() + " invalid, first invalid at index "
+                           + sink.getFirstInvalidIndex());
+    } // end main
+
+} // end VerifyingResultSink